@@ -57,6 +57,15 @@ class ParseLogFileTest(unittest.TestCase):
 
         self.assertEqual(parse_log_file(log), expected_requests)
 
+    def test_relaxed_deliveries_are_skipped(self):
+        log_content = r"""2024-08-14T21:16:22.243746502 dev.agst.byzcast.replica.RequestHandler:111 INFO GID=2 SID=1 RID=e4399c01-fe39-44de-8af7-991269c44c94 source=REPLICA Request locally handled
+2024-08-14T21:16:22.440541711 dev.agst.byzcast.replica.RequestHandler:111 INFO GID=2 SID=1 RID=7f2ccf47-4b23-440e-8208-b01da770456f class=RELAXED Request locally handled"""
+        log = StringIO(log_content)
+
+        self.assertEqual(
+            parse_log_file(log), ["e4399c01-fe39-44de-8af7-991269c44c94"]
+        )
+
 
 class TestMapMessages(unittest.TestCase):
     def test_map_messages(self):
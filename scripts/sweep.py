@@ -0,0 +1,319 @@
+"""Runs the benchmark over a grid of topologies and group shapes.
+
+Every point of the grid is a tree of groups, given by its depth, fan-out and
+(optionally) number of groups, and a group shape, given by the number of
+replicas per group and the number of faults each group tolerates. For each
+point, the script generates the topology and cluster spec, starts every replica
+with the `cluster` command, runs the `benchmark` command with the same load
+profile and collects its report. Once every point has run, the throughput and
+latency percentiles of all points are written to `sweep.csv` and `sweep.json`.
+"""
+
+import argparse
+import csv
+import itertools
+import json
+import os
+import shlex
+import shutil
+import signal
+import subprocess
+import sys
+import time
+from dataclasses import asdict, dataclass
+from pathlib import Path
+
+project_dir = Path(__file__).parent.parent
+jar_path = project_dir.joinpath(
+    "target/byzcast-tcc-1.0-SNAPSHOT-jar-with-dependencies.jar"
+)
+
+REPORT_COLUMNS = [
+    "depth",
+    "fanout",
+    "groups",
+    "group_size",
+    "faults",
+    "target_rate",
+    "throughput",
+    "completed",
+    "errors",
+    "mean_us",
+    "p50_us",
+    "p99_us",
+    "p999_us",
+    "max_us",
+]
+
+
+@dataclass(frozen=True)
+class Point:
+    depth: int
+    fanout: int
+    groups: int
+    group_size: int
+    faults: int
+
+    def name(self) -> str:
+        return (
+            f"d{self.depth}-k{self.fanout}-g{self.groups}"
+            f"-n{self.group_size}-f{self.faults}"
+        )
+
+
+def tree_size(depth: int, fanout: int) -> int:
+    """Returns the number of groups of a complete tree."""
+
+    return sum(fanout**level for level in range(depth + 1))
+
+
+def tree_layout(depth: int, fanout: int, groups: int) -> list[list[int]]:
+    """Returns the topology of a tree with the given number of groups.
+
+    Groups are numbered in breadth-first order and every level is filled from
+    the left, so the tree is complete when `groups` equals `tree_size`. A group
+    at the given depth has no children.
+    """
+
+    if groups < 1 or groups > tree_size(depth, fanout):
+        raise ValueError(
+            f"A tree of depth {depth} and fan-out {fanout} cannot have {groups} groups"
+        )
+
+    layout: list[list[int]] = [[] for _ in range(groups)]
+    levels = [0]
+    next_id = 1
+    for parent in range(groups):
+        if levels[parent] == depth:
+            continue
+        for _ in range(fanout):
+            if next_id == groups:
+                return layout
+            layout[parent].append(next_id)
+            levels.append(levels[parent] + 1)
+            next_id += 1
+
+    return layout
+
+
+def sweep_points(
+    depths: list[int],
+    fanouts: list[int],
+    group_counts: list[int] | None,
+    group_sizes: list[int],
+    faults: list[int],
+) -> list[Point]:
+    """Returns every feasible point of the grid, in order.
+
+    Without group counts, every tree is complete. Points whose trees cannot
+    hold the requested number of groups, or whose groups cannot tolerate the
+    requested number of faults, are left out.
+    """
+
+    points: list[Point] = []
+    for depth, fanout in itertools.product(depths, fanouts):
+        size = tree_size(depth, fanout)
+        counts = group_counts if group_counts else [size]
+        for groups, n, f in itertools.product(counts, group_sizes, faults):
+            if groups <= size and 0 <= f and 3 * f < n:
+                points.append(Point(depth, fanout, groups, n, f))
+
+    return points
+
+
+def summary_row(point: Point, report: dict) -> dict:
+    """Flattens the overall results of a benchmark report into a row of the sweep report."""
+
+    overall = report["overall"]
+    return {
+        **asdict(point),
+        "target_rate": report["targetRate"],
+        "throughput": round(report["throughput"], 2),
+        "completed": report["completed"],
+        "errors": report["errors"],
+        "mean_us": round(overall["mean"], 2),
+        "p50_us": overall["p50"],
+        "p99_us": overall["p99"],
+        "p999_us": overall["p999"],
+        "max_us": overall["max"],
+    }
+
+
+def java_command(java_args: list[str], point_dir: Path) -> list[str]:
+    java_path = shutil.which("java")
+    assert java_path
+
+    return [
+        java_path,
+        *java_args,
+        "-jar",
+        str(jar_path),
+        "--groups-configs",
+        str(point_dir.joinpath("configs")),
+        "--topology",
+        str(point_dir.joinpath("topology.json")),
+    ]
+
+
+def wait_ready(cluster: subprocess.Popen, ready_file: Path, timeout: float):
+    deadline = time.monotonic() + timeout
+    while not ready_file.exists():
+        if cluster.poll() is not None:
+            raise RuntimeError(f"The cluster exited with code {cluster.returncode}")
+        if time.monotonic() > deadline:
+            raise RuntimeError("The cluster did not become ready in time")
+        time.sleep(0.5)
+
+
+def stop(process: subprocess.Popen):
+    if process.poll() is None:
+        os.killpg(process.pid, signal.SIGTERM)
+        try:
+            process.wait(timeout=30)
+        except subprocess.TimeoutExpired:
+            os.killpg(process.pid, signal.SIGKILL)
+            process.wait()
+
+
+def run_point(point: Point, point_dir: Path, args: argparse.Namespace) -> dict:
+    """Runs the benchmark against a fresh cluster and returns its report."""
+
+    point_dir.mkdir(parents=True)
+    layout = tree_layout(point.depth, point.fanout, point.groups)
+    with open(point_dir.joinpath("topology.json"), "w") as f:
+        json.dump(layout, f)
+
+    spec = {
+        "groupSize": point.group_size,
+        "faults": point.faults,
+        "basePort": args.base_port,
+        "systemConfig": str(project_dir.joinpath(args.system_config)),
+    }
+    spec_path = point_dir.joinpath("cluster.json")
+    with open(spec_path, "w") as f:
+        json.dump(spec, f)
+
+    base_command = java_command(shlex.split(args.java_args), point_dir)
+    ready_file = point_dir.joinpath("ready")
+    with open(point_dir.joinpath("cluster.log"), "w") as cluster_log:
+        cluster = subprocess.Popen(
+            [
+                *base_command,
+                "cluster",
+                "--spec",
+                str(spec_path),
+                "--ready-file",
+                str(ready_file),
+                *shlex.split(args.cluster_args),
+            ],
+            stdout=cluster_log,
+            stderr=cluster_log,
+            preexec_fn=os.setsid,
+        )
+
+        try:
+            wait_ready(cluster, ready_file, args.ready_timeout)
+
+            report_prefix = point_dir.joinpath("report")
+            with open(point_dir.joinpath("benchmark.log"), "w") as benchmark_log:
+                subprocess.run(
+                    [
+                        *base_command,
+                        "benchmark",
+                        "--rate",
+                        str(args.rate),
+                        "--warmup",
+                        str(args.warmup),
+                        "--duration",
+                        str(args.duration),
+                        "--report",
+                        str(report_prefix),
+                        *shlex.split(args.benchmark_args),
+                    ],
+                    stdout=benchmark_log,
+                    stderr=benchmark_log,
+                    check=True,
+                )
+        finally:
+            stop(cluster)
+
+    with open(f"{report_prefix}.json") as f:
+        return json.load(f)
+
+
+def write_reports(output_dir: Path, results: list[tuple[Point, dict]]):
+    rows = [summary_row(point, report) for point, report in results]
+    with open(output_dir.joinpath("sweep.csv"), "w", newline="") as f:
+        writer = csv.DictWriter(f, fieldnames=REPORT_COLUMNS)
+        writer.writeheader()
+        writer.writerows(rows)
+
+    with open(output_dir.joinpath("sweep.json"), "w") as f:
+        entries = [{**asdict(point), "report": report} for point, report in results]
+        json.dump(entries, f, indent=2)
+
+
+def int_list(value: str) -> list[int]:
+    return [int(item) for item in value.split(",")]
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__.splitlines()[0])
+    parser.add_argument("--depths", type=int_list, default=[1])
+    parser.add_argument("--fanouts", type=int_list, default=[2])
+    parser.add_argument(
+        "--group-counts",
+        type=int_list,
+        help="number of groups of each tree, which defaults to a complete tree",
+    )
+    parser.add_argument("--group-sizes", type=int_list, default=[4])
+    parser.add_argument("--faults", type=int_list, default=[1])
+    parser.add_argument("--rate", type=float, default=500)
+    parser.add_argument("--warmup", type=int, default=10)
+    parser.add_argument("--duration", type=int, default=60)
+    parser.add_argument("--benchmark-args", default="", help="extra benchmark options")
+    parser.add_argument("--cluster-args", default="", help="extra cluster options")
+    parser.add_argument("--java-args", default="", help="extra JVM options")
+    parser.add_argument("--base-port", type=int, default=40000)
+    parser.add_argument(
+        "--system-config", default="infra/ansutils/example_system_config.txt"
+    )
+    parser.add_argument("--ready-timeout", type=float, default=120)
+    parser.add_argument(
+        "--output", type=Path, default=Path(__file__).parent.joinpath("sweep")
+    )
+    args = parser.parse_args()
+
+    points = sweep_points(
+        args.depths, args.fanouts, args.group_counts, args.group_sizes, args.faults
+    )
+    if not points:
+        sys.exit("No feasible point in the sweep")
+
+    shutil.rmtree(args.output, ignore_errors=True)
+    args.output.mkdir(parents=True)
+
+    results: list[tuple[Point, dict]] = []
+    for index, point in enumerate(points):
+        print(f"[{index + 1}/{len(points)}] {point.name()}", flush=True)
+        try:
+            report = run_point(point, args.output.joinpath(point.name()), args)
+        except (RuntimeError, subprocess.CalledProcessError) as e:
+            print(f"  failed: {e}", flush=True)
+            continue
+
+        print(
+            f"  throughput={report['throughput']:.2f}"
+            f" p50={report['overall']['p50']}us p99={report['overall']['p99']}us",
+            flush=True,
+        )
+        results.append((point, report))
+        # Keeps partial results in case the sweep is interrupted
+        write_reports(args.output, results)
+
+    if not results:
+        sys.exit("Every point of the sweep failed")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,99 @@
+import unittest
+
+from sweep import Point, summary_row, sweep_points, tree_layout, tree_size
+
+
+class TreeLayoutTest(unittest.TestCase):
+    def test_tree_size(self):
+        self.assertEqual(tree_size(0, 3), 1)
+        self.assertEqual(tree_size(1, 2), 3)
+        self.assertEqual(tree_size(2, 2), 7)
+
+    def test_complete_tree(self):
+        self.assertEqual(
+            tree_layout(2, 2, 7),
+            [[1, 2], [3, 4], [5, 6], [], [], [], []],
+        )
+
+    def test_partial_tree(self):
+        self.assertEqual(tree_layout(2, 2, 5), [[1, 2], [3, 4], [], [], []])
+        self.assertEqual(tree_layout(2, 3, 6), [[1, 2, 3], [4, 5], [], [], [], []])
+
+    def test_single_group(self):
+        self.assertEqual(tree_layout(0, 2, 1), [[]])
+        self.assertEqual(tree_layout(3, 2, 1), [[]])
+
+    def test_too_many_groups(self):
+        with self.assertRaises(ValueError):
+            tree_layout(1, 2, 4)
+
+
+class SweepPointsTest(unittest.TestCase):
+    def test_complete_trees_by_default(self):
+        points = sweep_points([1, 2], [2], None, [4], [1])
+
+        self.assertEqual(
+            points,
+            [Point(1, 2, 3, 4, 1), Point(2, 2, 7, 4, 1)],
+        )
+
+    def test_infeasible_points_are_left_out(self):
+        points = sweep_points([1], [2], [2, 5], [4, 7], [0, 1, 2])
+
+        self.assertEqual(
+            points,
+            [
+                Point(1, 2, 2, 4, 0),
+                Point(1, 2, 2, 4, 1),
+                Point(1, 2, 2, 7, 0),
+                Point(1, 2, 2, 7, 1),
+                Point(1, 2, 2, 7, 2),
+            ],
+        )
+
+
+class SummaryRowTest(unittest.TestCase):
+    def test_summary_row(self):
+        report = {
+            "targetRate": 500.0,
+            "throughput": 498.123,
+            "warmupSeconds": 10,
+            "durationSeconds": 60,
+            "completed": 29887,
+            "errors": 2,
+            "overall": {
+                "count": 29887,
+                "mean": 1234.567,
+                "p50": 1100,
+                "p99": 4100,
+                "p999": 9000,
+                "max": 12000,
+            },
+            "byTargetSetSize": {},
+        }
+
+        row = summary_row(Point(1, 2, 3, 4, 1), report)
+
+        self.assertEqual(
+            row,
+            {
+                "depth": 1,
+                "fanout": 2,
+                "groups": 3,
+                "group_size": 4,
+                "faults": 1,
+                "target_rate": 500.0,
+                "throughput": 498.12,
+                "completed": 29887,
+                "errors": 2,
+                "mean_us": 1234.57,
+                "p50_us": 1100,
+                "p99_us": 4100,
+                "p999_us": 9000,
+                "max_us": 12000,
+            },
+        )
+
+
+if __name__ == "__main__":
+    unittest.main()
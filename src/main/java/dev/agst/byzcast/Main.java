@@ -1,33 +1,60 @@
 package dev.agst.byzcast;
 
-import bftsmart.tom.ServiceReplica;
 import dev.agst.byzcast.Logger.Attr;
+import dev.agst.byzcast.app.Application;
+import dev.agst.byzcast.bench.BenchmarkClient;
+import dev.agst.byzcast.bench.TraceReader;
+import dev.agst.byzcast.bench.TraceRecorder;
+import dev.agst.byzcast.bench.WorkloadOptions;
 import dev.agst.byzcast.client.BatchTestClient;
+import dev.agst.byzcast.client.ClientOptions;
+import dev.agst.byzcast.cluster.ClusterLauncher;
+import dev.agst.byzcast.cluster.ClusterSpec;
 import dev.agst.byzcast.group.GroupConfigFinder;
-import dev.agst.byzcast.group.GroupProxies;
+import dev.agst.byzcast.replay.BatchReader;
+import dev.agst.byzcast.replay.BatchReplayer;
+import dev.agst.byzcast.replay.CannedGroupProxies;
 import dev.agst.byzcast.replica.ReplicaInfo;
 import dev.agst.byzcast.replica.ReplicaNode;
+import dev.agst.byzcast.replica.ReplicaOptions;
 import dev.agst.byzcast.replica.ReplicaReplier;
+import dev.agst.byzcast.replica.ReplicaServer;
 import dev.agst.byzcast.topology.Topology;
+import dev.agst.byzcast.topology.TopologyLoadException;
+import dev.agst.byzcast.topology.TopologyOptimizer;
+import dev.agst.byzcast.topology.WorkloadProfile;
+import dev.agst.byzcast.verify.DeliveryVerifier;
+import dev.agst.byzcast.verify.LogReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
 
 @Command(name = "byzcast", mixinStandardHelpOptions = true)
 public class Main {
 
   @Option(
       names = {"--groups-configs"},
-      description = "Path for diretory containing all group configurations",
-      required = true)
+      description = "Path for diretory containing all group configurations")
   String configsPath;
 
   @Option(
       names = {"--topology"},
-      description = "Path for the JSON file containing the description of group connections",
-      required = true)
+      description = "Path for the JSON file containing the description of group connections")
   String topologyPath;
 
+  @Spec CommandSpec spec;
+
   @Command(name = "server", description = "Starts the server.")
   void server(
       @Option(
@@ -41,47 +68,406 @@ public class Main {
               description = "The group ID",
               type = Integer.class,
               required = true)
-          Integer groupID)
+          Integer groupID,
+      @Option(
+              names = {"--app"},
+              description = "The application run by the replica: ${COMPLETION-CANDIDATES}",
+              defaultValue = "ack")
+          Application application,
+      @Option(
+              names = {"--ready-timeout"},
+              description = "Seconds to wait for the replica to connect to its next groups",
+              defaultValue = "60")
+          long readyTimeout,
+      @Mixin ReplicaOptions replicaOptions)
       throws Exception {
 
-    var topology = new Topology(topologyPath);
-    var configFinder = new GroupConfigFinder(configsPath);
+    var topology = topology();
+    var configFinder = configFinder();
     var info = new ReplicaInfo(groupID, serverID);
+
+    var handler = application.create(groupID, topology.getGroupIDs());
+    var server = ReplicaServer.start(info, topology, configFinder, handler, replicaOptions);
+
     var logger = new Logger().with(new Attr("GID", groupID), new Attr("SID", serverID));
+    try {
+      server.awaitReady(Duration.ofSeconds(readyTimeout));
+      logger.info("Replica ready");
+    } catch (TimeoutException e) {
+      // the replica keeps reconnecting in the background, so it may still become ready later
+      logger.error("Next groups are not ready", e);
+    }
+
+    // some tests showed that we need to keep the main thread alive
+    Thread.sleep(Integer.MAX_VALUE);
+  }
+
+  @Command(
+      name = "cluster",
+      description = "Starts every replica of every group within this process.")
+  void cluster(
+      @Option(
+              names = {"--spec"},
+              description = "Path for the JSON file describing the shape of the cluster")
+          Path specPath,
+      @Option(
+              names = {"--ready-timeout"},
+              description = "Seconds to wait for every group to become ready",
+              defaultValue = "60")
+          long readyTimeout,
+      @Option(
+              names = {"--ready-file"},
+              description = "Path of a file created once every group is ready")
+          Path readyFile,
+      @Option(
+              names = {"--app"},
+              description = "The application run by every replica: ${COMPLETION-CANDIDATES}",
+              defaultValue = "ack")
+          Application application,
+      @Mixin ReplicaOptions replicaOptions)
+      throws Exception {
+    var topology = topology();
+    var configFinder = configFinder();
+    var spec =
+        specPath == null
+            ? new ClusterSpec(0, null, null, 0, 0, null, null)
+            : ClusterSpec.load(specPath);
+
+    var launcher = new ClusterLauncher(spec, topology, configFinder, application, replicaOptions);
+    Runtime.getRuntime().addShutdownHook(new Thread(launcher::close));
+
+    launcher.writeConfigs();
+    launcher.start();
+    launcher.awaitReady(Duration.ofSeconds(readyTimeout));
+
+    new Logger().info("Cluster ready");
+    if (readyFile != null) {
+      Files.writeString(readyFile, "");
+    }
+
+    Thread.sleep(Long.MAX_VALUE);
+  }
+
+  @Command(name = "client", description = "Starts the client.")
+  void client(
+      @Option(
+              names = {"--threads"},
+              description = "The number of closed-loop client threads",
+              defaultValue = "8")
+          int threads,
+      @Option(
+              names = {"--record-trace"},
+              description = "Path of a trace file in which every sent request is recorded")
+          Path tracePath,
+      @Option(
+              names = {"--record-sizes-only"},
+              description = "Record only the payload sizes in the trace, instead of the contents")
+          boolean sizesOnly,
+      @Mixin WorkloadOptions workloadOptions,
+      @Mixin ClientOptions clientOptions)
+      throws Exception {
+    var topology = topology();
+    var configFinder = configFinder();
+    var workload = workloadOptions.build(topology.getGroupIDs());
 
-    var replicaNode =
+    try (var recorder = openRecorder(tracePath, sizesOnly);
+        var multicastClient = clientOptions.build(topology, configFinder)) {
+      var client =
+          new BatchTestClient(
+              multicastClient, workload, workloadOptions.seed(), Optional.ofNullable(recorder));
+      client.run(threads);
+    }
+  }
+
+  @Command(name = "benchmark", description = "Runs an open-loop benchmark against the system.")
+  void benchmark(
+      @Option(
+              names = {"--rate"},
+              description = "The target rate, in requests per second",
+              required = true)
+          double rate,
+      @Option(
+              names = {"--warmup"},
+              description = "The length of the warmup phase, in seconds",
+              defaultValue = "10")
+          long warmup,
+      @Option(
+              names = {"--duration"},
+              description = "The length of the measurement phase, in seconds",
+              defaultValue = "60")
+          long duration,
+      @Option(
+              names = {"--clients"},
+              description = "The number of simulated clients requests are attributed to",
+              defaultValue = "16")
+          int clients,
+      @Option(
+              names = {"--report"},
+              description = "Path prefix for the JSON and CSV reports",
+              defaultValue = "benchmark")
+          String report,
+      @Option(
+              names = {"--record-trace"},
+              description = "Path of a trace file in which every sent request is recorded")
+          Path tracePath,
+      @Option(
+              names = {"--record-sizes-only"},
+              description = "Record only the payload sizes in the trace, instead of the contents")
+          boolean sizesOnly,
+      @Mixin WorkloadOptions workloadOptions,
+      @Mixin ClientOptions clientOptions)
+      throws Exception {
+    var topology = topology();
+    var configFinder = configFinder();
+    var workload = workloadOptions.build(topology.getGroupIDs());
+
+    try (var recorder = openRecorder(tracePath, sizesOnly);
+        var multicastClient = clientOptions.build(topology, configFinder)) {
+      var client =
+          new BenchmarkClient(multicastClient, clients, warmup, Optional.ofNullable(recorder));
+      var result = client.run(workload, workloadOptions.seed(), rate, duration);
+
+      result.writeJSON(Path.of(report + ".json"));
+      result.writeCSV(Path.of(report + ".csv"));
+    }
+  }
+
+  @Command(name = "replay", description = "Replays a recorded workload trace against the system.")
+  void replay(
+      @Option(
+              names = {"--trace"},
+              description = "Path of the trace file to be replayed",
+              required = true)
+          Path tracePath,
+      @Option(
+              names = {"--speed"},
+              description = "Replay speed relative to the recorded rate",
+              defaultValue = "1.0")
+          double speed,
+      @Option(
+              names = {"--warmup"},
+              description = "The length of the warmup phase, in seconds",
+              defaultValue = "0")
+          long warmup,
+      @Option(
+              names = {"--report"},
+              description = "Path prefix for the JSON and CSV reports",
+              defaultValue = "replay")
+          String report,
+      @Mixin ClientOptions clientOptions)
+      throws Exception {
+    var topology = topology();
+    var configFinder = configFinder();
+
+    try (var trace = new TraceReader(tracePath);
+        var multicastClient = clientOptions.build(topology, configFinder)) {
+      var client = new BenchmarkClient(multicastClient, 1, warmup, Optional.empty());
+      var result = client.replay(trace, speed);
+
+      result.writeJSON(Path.of(report + ".json"));
+      result.writeCSV(Path.of(report + ".csv"));
+    }
+  }
+
+  @Command(
+      name = "replay-batches",
+      description = "Replays the batches recorded by a replica into a standalone replica.")
+  void replayBatches(
+      @Option(
+              names = {"--batches"},
+              description = "Path of the batch file recorded with --record-batches",
+              required = true)
+          Path batchesPath,
+      @Option(
+              names = {"--server-id"},
+              description = "The ID of the replica that recorded the batches",
+              defaultValue = "0")
+          int serverID,
+      @Option(
+              names = {"--group-id"},
+              description = "The ID of the group of the replica that recorded the batches",
+              required = true)
+          int groupID,
+      @Option(
+              names = {"--app"},
+              description = "The application run by the replica: ${COMPLETION-CANDIDATES}",
+              defaultValue = "ack")
+          Application application,
+      @Option(
+              names = {"--canned-response"},
+              description = "The content of the response of every next group",
+              defaultValue = "ACK")
+          String cannedResponse,
+      @Mixin ReplicaOptions replicaOptions)
+      throws Exception {
+    var topology = topology();
+    var configFinder = configFinder();
+    var info = new ReplicaInfo(groupID, serverID);
+
+    var builder =
         ReplicaNode.builder()
-            .withLogger(logger)
+            .withLogger(new Logger().with(new Attr("GID", groupID), new Attr("SID", serverID)))
             .withInfo(info)
             .withConfigFinder(configFinder)
             .withTopology(topology)
-            .withTargetRequestCount(3)
-            .build();
+            .withDeliveryHandler(application.create(groupID, topology.getGroupIDs()))
+            .withGroupProxies(new CannedGroupProxies(configFinder, cannedResponse));
+    var node = replicaOptions.configure(builder, new ReplicaReplier(info)).build();
 
-    new ServiceReplica(
-        serverID,
-        configFinder.forGroup(groupID),
-        replicaNode,
-        replicaNode,
-        null,
-        new ReplicaReplier());
+    try (var batches = new BatchReader(batchesPath)) {
+      var result = new BatchReplayer(node).replay(batches);
+      System.out.printf(
+          "batches=%d requests=%d seconds=%.3f throughput=%.1f%n",
+          result.batches(),
+          result.requests(),
+          result.nanos() / 1e9,
+          result.requestsPerSecond());
+    } finally {
+      node.close();
+    }
+  }
 
-    // some tests showed that we need to keep the main thread alive
-    Thread.sleep(Integer.MAX_VALUE);
+  @Command(
+      name = "verify",
+      description = "Verifies the delivery order recorded in the replica logs of a run.")
+  int verify(
+      @Parameters(
+              paramLabel = "LOG",
+              arity = "1..*",
+              description = "Log files, or directories containing .log files")
+          List<Path> paths,
+      @Option(
+              names = {"--max-lag"},
+              description = "Deliveries a replica or group may lag behind before being checked",
+              defaultValue = "100000")
+          int maxLag)
+      throws Exception {
+    var verifier = new DeliveryVerifier(maxLag);
+    try (var reader = new LogReader(paths)) {
+      reader.forEachRemaining(verifier::accept);
+    }
+
+    var result = verifier.finish();
+    result.violations().forEach(System.out::println);
+    if (result.violationCount() > result.violations().size()) {
+      System.out.printf(
+          "... and %d more violations%n", result.violationCount() - result.violations().size());
+    }
+    System.out.printf(
+        "%s: %d records, %d requests merged, %d violations%n",
+        result.isCorrect() ? "OK" : "FAILED",
+        result.records(),
+        result.merged(),
+        result.violationCount());
+
+    return result.isCorrect() ? 0 : 1;
   }
 
-  @Command(name = "client", description = "Starts the client.")
-  void client() throws Exception {
-    var topology = new Topology(topologyPath);
-    var configFinder = new GroupConfigFinder(configsPath);
-    var groupProxies = new GroupProxies(configFinder);
+  @Command(
+      name = "reconfigure",
+      description = "Replaces the topology of a running system.")
+  void reconfigure(
+      @Option(
+              names = {"--next"},
+              description = "Path for the JSON file containing the new topology",
+              required = true)
+          String nextPath,
+      @Mixin ClientOptions clientOptions)
+      throws Exception {
+    var next = new Topology(nextPath);
+
+    try (var client = clientOptions.build(topology(), configFinder())) {
+      var response = client.reconfigure(next).get();
+      System.out.printf("response=%s epoch=%d%n", response.content(), client.topology().epoch());
+    }
+  }
+
+  @Command(
+      name = "optimize",
+      description = "Searches for the topology that best fits a workload profile.")
+  void optimize(
+      @Option(
+              names = {"--profile"},
+              description = "Path for the JSON file describing the workload profile",
+              required = true)
+          Path profilePath,
+      @Option(
+              names = {"--output"},
+              description = "Path of the topology file to be written",
+              defaultValue = "topology.json")
+          Path outputPath,
+      @Option(
+              names = {"--report"},
+              description = "Path of a JSON file with the predicted load of each group")
+          Path reportPath,
+      @Option(
+              names = {"--seed"},
+              description = "Seed for the search over large topologies",
+              defaultValue = "0")
+          long seed)
+      throws Exception {
+    var profile = WorkloadProfile.load(profilePath);
+    var plan = new TopologyOptimizer(profile).optimize(seed);
+
+    plan.writeTopology(outputPath);
+    if (reportPath != null) {
+      plan.writeReport(reportPath);
+    }
+
+    System.out.printf(
+        "topology=%s maxUtilization=%.3f averageHops=%.3f%n",
+        plan.topology().toLayout(), plan.maxUtilization(), plan.averageHops());
+    plan.loads()
+        .forEach(
+            (groupID, load) ->
+                System.out.printf(
+                    "group=%d rate=%.2f utilization=%.3f%n",
+                    groupID, load.rate(), load.utilization()));
+  }
+
+  /** Loads the topology given by {@code --topology}, which only {@code verify} does not need. */
+  private Topology topology() throws TopologyLoadException {
+    if (topologyPath == null) {
+      throw new ParameterException(spec.commandLine(), "Missing required option: '--topology'");
+    }
+    return new Topology(topologyPath);
+  }
+
+  /** Returns a finder for the directory given by {@code --groups-configs}. */
+  private GroupConfigFinder configFinder() {
+    if (configsPath == null) {
+      throw new ParameterException(
+          spec.commandLine(), "Missing required option: '--groups-configs'");
+    }
+    return new GroupConfigFinder(configsPath);
+  }
+
+  /**
+   * Opens a trace recorder at the given path, or returns {@code null} if no path was given. The
+   * recorder is also closed on shutdown, as the closed-loop client only stops through a signal.
+   */
+  private static TraceRecorder openRecorder(Path path, boolean sizesOnly) throws Exception {
+    if (path == null) {
+      return null;
+    }
 
-    var client = new BatchTestClient(topology, groupProxies);
-    client.run(8);
+    var recorder = new TraceRecorder(path, sizesOnly);
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  try {
+                    recorder.close();
+                  } catch (Exception e) {
+                    new Logger().error("Failed to close trace recorder", e);
+                  }
+                }));
+    return recorder;
   }
 
   public static void main(String[] args) {
-    int exitCode = new CommandLine(new Main()).execute(args);
+    int exitCode =
+        new CommandLine(new Main()).setCaseInsensitiveEnumValuesAllowed(true).execute(args);
     System.exit(exitCode);
   }
 }
@@ -0,0 +1,23 @@
+package dev.agst.byzcast.app;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The default {@link DeliveryHandler}, which keeps no state and answers every message with {@code
+ * HANDLED}. It is meant for benchmarking the ordering protocol on its own.
+ */
+public class Acknowledger implements DeliveryHandler {
+  @Override
+  public List<String> deliver(List<Delivery> batch) {
+    return Collections.nCopies(batch.size(), "HANDLED");
+  }
+
+  @Override
+  public byte[] snapshot() {
+    return new byte[0];
+  }
+
+  @Override
+  public void install(byte[] snapshot) {}
+}
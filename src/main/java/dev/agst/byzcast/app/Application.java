@@ -0,0 +1,26 @@
+package dev.agst.byzcast.app;
+
+import dev.agst.byzcast.app.kv.Partitioner;
+import dev.agst.byzcast.app.kv.PartitionedStore;
+import java.util.Collection;
+
+/** The applications that replicas can run, as selected through the command line. */
+public enum Application {
+  /** The {@link Acknowledger}. */
+  ACK,
+  /** The {@link PartitionedStore}, with one partition per group. */
+  KV;
+
+  /**
+   * Creates the handler of a replica.
+   *
+   * @param groupID The ID of the group of the replica.
+   * @param groupIDs The IDs of every group of the topology.
+   */
+  public DeliveryHandler create(int groupID, Collection<Integer> groupIDs) {
+    return switch (this) {
+      case ACK -> new Acknowledger();
+      case KV -> new PartitionedStore(groupID, new Partitioner(groupIDs));
+    };
+  }
+}
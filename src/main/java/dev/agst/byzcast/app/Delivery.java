@@ -0,0 +1,11 @@
+package dev.agst.byzcast.app;
+
+import java.util.UUID;
+
+/**
+ * A message delivered by the local group, as passed to a {@link DeliveryHandler}.
+ *
+ * @param id The ID of the multicast that carried the message.
+ * @param payload The payload of the message.
+ */
+public record Delivery(UUID id, String payload) {}
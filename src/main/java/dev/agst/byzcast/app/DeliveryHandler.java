@@ -0,0 +1,33 @@
+package dev.agst.byzcast.app;
+
+import java.util.List;
+
+/**
+ * The application logic run by the replicas of a group on the messages they deliver. Replicas of a
+ * group call it with the same batches in the same order, so implementations must be deterministic
+ * for the replicas to agree on their results and state.
+ *
+ * <p>Messages are passed in whole batches, holding every message that the group delivered while
+ * executing a batch ordered by BFT-SMaRt, so that implementations may amortize their work across
+ * messages. Implementations are only called from the thread that executes ordered requests.
+ */
+public interface DeliveryHandler {
+  /**
+   * Delivers an ordered batch of messages.
+   *
+   * @param batch The delivered messages, in delivery order. It is never empty.
+   * @return The result of each message, in the same order, which becomes the content of the
+   *     response of the local group to that message.
+   */
+  List<String> deliver(List<Delivery> batch);
+
+  /** Serializes the state of the application, to be transferred to recovering replicas. */
+  byte[] snapshot();
+
+  /**
+   * Replaces the state of the application with one serialized by {@link #snapshot()}.
+   *
+   * @param snapshot The serialized state.
+   */
+  void install(byte[] snapshot);
+}
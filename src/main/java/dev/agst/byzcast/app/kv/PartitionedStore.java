@@ -0,0 +1,89 @@
+package dev.agst.byzcast.app.kv;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import dev.agst.byzcast.app.Delivery;
+import dev.agst.byzcast.app.DeliveryHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * A key-value store partitioned across groups, in which each group holds the keys that the {@link
+ * Partitioner} assigns to it and executes {@link Transaction}s on them.
+ *
+ * <p>The result of a transaction at a group is a JSON array with one element per action on the
+ * keys of the group, in order: the value read by a {@code GET}, or the value replaced by a {@code
+ * PUT} or {@code DELETE}, with {@code null} for absent keys. Malformed transactions are answered
+ * with {@code INVALID_TRANSACTION} and have no effect.
+ */
+public class PartitionedStore implements DeliveryHandler {
+  private final Gson gson = new Gson();
+
+  private final int groupID;
+  private final Partitioner partitioner;
+
+  // a TreeMap keeps snapshots deterministic across replicas
+  private TreeMap<String, String> data = new TreeMap<>();
+
+  /**
+   * Creates an empty partition.
+   *
+   * @param groupID The ID of the group holding the partition.
+   * @param partitioner The assignment of keys to groups.
+   */
+  public PartitionedStore(int groupID, Partitioner partitioner) {
+    this.groupID = groupID;
+    this.partitioner = partitioner;
+  }
+
+  @Override
+  public List<String> deliver(List<Delivery> batch) {
+    var results = new ArrayList<String>(batch.size());
+    for (var delivery : batch) {
+      var optTransaction = Transaction.fromJSON(delivery.payload());
+      if (optTransaction.isEmpty()) {
+        results.add("INVALID_TRANSACTION");
+        continue;
+      }
+      results.add(gson.toJson(execute(optTransaction.get())));
+    }
+    return results;
+  }
+
+  private List<String> execute(Transaction transaction) {
+    var values = new ArrayList<String>();
+    for (var action : transaction.actions()) {
+      if (partitioner.groupOf(action.key()) != groupID) {
+        continue;
+      }
+
+      switch (action.type()) {
+        case GET:
+          values.add(data.get(action.key()));
+          break;
+        case PUT:
+          values.add(data.put(action.key(), action.value() == null ? "" : action.value()));
+          break;
+        case DELETE:
+          values.add(data.remove(action.key()));
+          break;
+      }
+    }
+    return values;
+  }
+
+  @Override
+  public byte[] snapshot() {
+    return gson.toJson(data).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void install(byte[] snapshot) {
+    var type = new TypeToken<TreeMap<String, String>>() {}.getType();
+    TreeMap<String, String> installed =
+        gson.fromJson(new String(snapshot, StandardCharsets.UTF_8), type);
+    data = installed == null ? new TreeMap<>() : installed;
+  }
+}
@@ -0,0 +1,44 @@
+package dev.agst.byzcast.app.kv;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Assigns keys to the partitions of a {@link PartitionedStore}, each of which is held by one group.
+ * Keys are assigned by hashing, so clients and replicas agree on the assignment as long as they
+ * know the same set of groups.
+ */
+public class Partitioner {
+  private final List<Integer> groupIDs;
+
+  /**
+   * Creates a partitioner with one partition per group.
+   *
+   * @param groupIDs The IDs of every group.
+   */
+  public Partitioner(Collection<Integer> groupIDs) {
+    if (groupIDs.isEmpty()) {
+      throw new IllegalArgumentException("there must be at least one group");
+    }
+    this.groupIDs = groupIDs.stream().sorted().toList();
+  }
+
+  /** Returns the ID of the group holding the partition of a key. */
+  public int groupOf(String key) {
+    return groupIDs.get(Math.floorMod(key.hashCode(), groupIDs.size()));
+  }
+
+  /**
+   * Returns the groups that a transaction must be multicast to, which are those holding the
+   * partition of at least one of its keys.
+   *
+   * @return The IDs of the groups, in ascending order.
+   */
+  public List<Integer> targetsOf(Transaction transaction) {
+    return transaction.actions().stream()
+        .map(action -> groupOf(action.key()))
+        .distinct()
+        .sorted()
+        .toList();
+  }
+}
@@ -0,0 +1,70 @@
+package dev.agst.byzcast.app.kv;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A transaction on a {@link PartitionedStore}, multicast as JSON to the groups holding the keys it
+ * accesses. Each group executes the actions on its own keys, in order, when it delivers the
+ * transaction. As every group delivers multicasts in an order consistent with the other groups,
+ * transactions are atomic and serializable across partitions, but an action cannot depend on the
+ * values read from another partition.
+ *
+ * @param actions The actions of the transaction.
+ */
+public record Transaction(List<Action> actions) {
+  private static final Gson gson = new Gson();
+
+  /**
+   * A single access to a key.
+   *
+   * @param type The type of the access.
+   * @param key The accessed key.
+   * @param value The value written by a {@code PUT}, or {@code null} for the other types.
+   */
+  public static record Action(Type type, String key, String value) {
+    public static Action get(String key) {
+      return new Action(Type.GET, key, null);
+    }
+
+    public static Action put(String key, String value) {
+      return new Action(Type.PUT, key, value);
+    }
+
+    public static Action delete(String key) {
+      return new Action(Type.DELETE, key, null);
+    }
+  }
+
+  public static enum Type {
+    GET,
+    PUT,
+    DELETE
+  }
+
+  public String toJSON() {
+    return gson.toJson(this);
+  }
+
+  /**
+   * Parses a transaction serialized by {@link #toJSON()}.
+   *
+   * @return The transaction, or an empty optional if the JSON is malformed or an action is missing
+   *     its type or key.
+   */
+  public static Optional<Transaction> fromJSON(String json) {
+    try {
+      var transaction = gson.fromJson(json, Transaction.class);
+      if (transaction == null
+          || transaction.actions() == null
+          || transaction.actions().stream().anyMatch(a -> a.type() == null || a.key() == null)) {
+        return Optional.empty();
+      }
+      return Optional.of(transaction);
+    } catch (JsonParseException e) {
+      return Optional.empty();
+    }
+  }
+}
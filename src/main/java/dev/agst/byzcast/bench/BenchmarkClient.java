@@ -0,0 +1,198 @@
+package dev.agst.byzcast.bench;
+
+import dev.agst.byzcast.Logger;
+import dev.agst.byzcast.Logger.Attr;
+import dev.agst.byzcast.client.MulticastClient;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An open-loop load generator for ByzCast. Unlike {@link dev.agst.byzcast.client.BatchTestClient},
+ * requests are issued on a fixed schedule, regardless of how many requests are still outstanding.
+ * The schedule is either derived from a target rate or replayed from a trace (see {@link
+ * TraceEntry}). Requests are pipelined by a single thread through a {@link MulticastClient}.
+ *
+ * <p>Latency is measured from the instant at which a request was <em>scheduled</em> to be sent, not
+ * from the instant it was actually sent. This corrects for coordinated omission: if the system (or
+ * the client itself) stalls, the requests that should have been sent during the stall are charged
+ * with the time they spent waiting, instead of silently disappearing from the distribution. In
+ * particular, the time spent waiting for room in the client's window is part of the latency.
+ *
+ * <p>A run is split into a warmup phase, whose requests are sent but not measured, and a
+ * measurement phase.
+ */
+public class BenchmarkClient {
+  private final Logger logger = new Logger();
+
+  private final MulticastClient client;
+  private final int clients;
+  private final Optional<TraceRecorder> recorder;
+
+  private final long warmupSeconds;
+
+  /**
+   * Creates a new benchmark client.
+   *
+   * @param client The client through which requests are sent.
+   * @param clients The number of simulated clients. Rate-based runs attribute requests to them in a
+   *     round-robin fashion, which matters for workloads with client affinity.
+   * @param warmupSeconds The length of the warmup phase.
+   * @param recorder An optional recorder in which every sent request is traced.
+   */
+  public BenchmarkClient(
+      MulticastClient client,
+      int clients,
+      long warmupSeconds,
+      Optional<TraceRecorder> recorder) {
+    this.client = client;
+    this.clients = clients;
+    this.warmupSeconds = warmupSeconds;
+    this.recorder = recorder;
+  }
+
+  /**
+   * Runs the benchmark at a fixed rate. This method returns once every scheduled request has either
+   * completed or failed.
+   *
+   * @param workload The workload from which requests are drawn.
+   * @param seed The seed of the workload's random choices.
+   * @param rate The target rate, in requests per second.
+   * @param durationSeconds The length of the measurement phase.
+   * @return The report of the measurement phase.
+   */
+  public BenchmarkReport run(Workload workload, long seed, double rate, long durationSeconds) {
+    var intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+    var end = TimeUnit.SECONDS.toNanos(warmupSeconds + durationSeconds);
+    var random = new Random(seed);
+
+    var schedule =
+        new Iterator<TraceEntry>() {
+          private long index = 0;
+
+          @Override
+          public boolean hasNext() {
+            return (long) (index * intervalNanos) < end;
+          }
+
+          @Override
+          public TraceEntry next() {
+            var offset = (long) (index * intervalNanos);
+            var operation = workload.next((int) (index++ % clients), random);
+            return new TraceEntry(offset, operation.targets(), operation.content());
+          }
+        };
+
+    logger.info(
+        "Starting benchmark",
+        new Attr("rate", rate),
+        new Attr("warmup", warmupSeconds),
+        new Attr("duration", durationSeconds));
+
+    var stats = dispatch(schedule, 1.0);
+    return BenchmarkReport.from(rate, warmupSeconds, durationSeconds, stats);
+  }
+
+  /**
+   * Replays a trace, sending each request at its recorded offset divided by the given speed. The
+   * measurement phase lasts from the end of the warmup until the last request of the trace.
+   *
+   * @param trace The trace to be replayed.
+   * @param speed The replay speed: {@code 1.0} replays the trace at its original rate, {@code 2.0}
+   *     at twice that rate, and so on.
+   * @return The report of the measurement phase.
+   */
+  public BenchmarkReport replay(Iterator<TraceEntry> trace, double speed) {
+    logger.info("Starting replay", new Attr("speed", speed), new Attr("warmup", warmupSeconds));
+
+    var stats = dispatch(trace, speed);
+    var durationSeconds = Math.max(1, stats.lastScheduledSeconds() - warmupSeconds);
+    var offeredRate = (double) stats.scheduled() / durationSeconds;
+    return BenchmarkReport.from(offeredRate, warmupSeconds, durationSeconds, stats);
+  }
+
+  /**
+   * Sends every request of a schedule at its due time, and waits for all of them to complete.
+   *
+   * @param schedule The requests to be sent, ordered by offset.
+   * @param speed The factor by which every offset is divided.
+   * @return The statistics of the requests scheduled after the warmup phase.
+   */
+  private LatencyStats dispatch(Iterator<TraceEntry> schedule, double speed) {
+    var stats = new LatencyStats();
+    var completions = new Semaphore(0);
+    long sent = 0;
+
+    var start = System.nanoTime();
+    var measurementStart = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+
+    while (schedule.hasNext()) {
+      var entry = schedule.next();
+      var scheduledAt = start + (long) (entry.offsetNanos() / speed);
+
+      waitUntil(scheduledAt);
+      var measured = scheduledAt >= measurementStart;
+      if (measured) {
+        stats.recordScheduled(scheduledAt - start);
+      }
+
+      send(entry, scheduledAt, measured ? stats : null)
+          .whenComplete((result, error) -> completions.release());
+      sent++;
+    }
+
+    logger.info("Schedule finished, waiting for outstanding requests");
+    while (sent > 0) {
+      var permits = (int) Math.min(sent, Integer.MAX_VALUE);
+      completions.acquireUninterruptibly(permits);
+      sent -= permits;
+    }
+
+    return stats;
+  }
+
+  /**
+   * Sends a single request and records its outcome once it completes.
+   *
+   * @param entry The request to be sent.
+   * @param scheduledAt The instant, as given by {@link System#nanoTime()}, at which the request was
+   *     scheduled to be sent.
+   * @param stats Where to record the outcome, or {@code null} if the request is part of the warmup.
+   * @return A future completed once the outcome has been recorded.
+   */
+  private CompletableFuture<Void> send(TraceEntry entry, long scheduledAt, LatencyStats stats) {
+    var content = entry.payload();
+    recorder.ifPresent(r -> r.record(entry.targets(), content));
+
+    return client
+        .multicast(entry.targets(), content)
+        .handle(
+            (response, error) -> {
+              if (error != null) {
+                logger.error("Request failed", error);
+              }
+
+              if (stats == null) {
+                return null;
+              }
+
+              if (error == null) {
+                stats.record(entry.targets().size(), System.nanoTime() - scheduledAt);
+              } else {
+                stats.recordError();
+              }
+              return null;
+            });
+  }
+
+  private static void waitUntil(long deadline) {
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remaining);
+    }
+  }
+}
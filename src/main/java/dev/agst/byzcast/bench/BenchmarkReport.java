@@ -0,0 +1,87 @@
+package dev.agst.byzcast.bench;
+
+import com.google.gson.GsonBuilder;
+import dev.agst.byzcast.bench.LatencyStats.LatencySummary;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The outcome of a benchmark run. Throughput only accounts for requests issued during the
+ * measurement phase, and latencies are in microseconds.
+ *
+ * @param targetRate The offered load, in requests per second.
+ * @param throughput The achieved throughput, in completed requests per second.
+ * @param warmupSeconds The length of the warmup phase.
+ * @param durationSeconds The length of the measurement phase.
+ * @param completed The number of requests completed during the measurement phase.
+ * @param errors The number of failed requests during the measurement phase.
+ * @param overall The latency summary of every measured request.
+ * @param byTargetSetSize The latency summary of the measured requests, per target set size.
+ */
+public record BenchmarkReport(
+    double targetRate,
+    double throughput,
+    long warmupSeconds,
+    long durationSeconds,
+    long completed,
+    long errors,
+    LatencySummary overall,
+    Map<Integer, LatencySummary> byTargetSetSize) {
+
+  static BenchmarkReport from(
+      double targetRate, long warmupSeconds, long durationSeconds, LatencyStats stats) {
+    var throughput = (double) stats.completed() / durationSeconds;
+    return new BenchmarkReport(
+        targetRate,
+        throughput,
+        warmupSeconds,
+        durationSeconds,
+        stats.completed(),
+        stats.errors(),
+        stats.overall(),
+        stats.byTargetSetSize());
+  }
+
+  public void writeJSON(Path path) throws IOException {
+    var gson = new GsonBuilder().setPrettyPrinting().create();
+    Files.writeString(path, gson.toJson(this));
+  }
+
+  /**
+   * Writes the report as CSV, with one row for the whole run (target set size {@code all}) followed
+   * by one row per target set size. Errors are only tracked for the whole run.
+   */
+  public void writeCSV(Path path) throws IOException {
+    var lines = new ArrayList<String>();
+    lines.add(
+        "target_set_size,target_rate,throughput,count,errors,mean_us,p50_us,p99_us,p999_us,max_us");
+    lines.add(csvRow("all", throughput, overall));
+    byTargetSetSize.forEach(
+        (size, summary) -> {
+          var sizeThroughput = (double) summary.count() / durationSeconds;
+          lines.add(csvRow(size.toString(), sizeThroughput, summary));
+        });
+
+    Files.write(path, lines);
+  }
+
+  private String csvRow(String label, double throughput, LatencySummary summary) {
+    return String.format(
+        Locale.ROOT,
+        "%s,%.2f,%.2f,%d,%s,%.2f,%d,%d,%d,%d",
+        label,
+        targetRate,
+        throughput,
+        summary.count(),
+        label.equals("all") ? Long.toString(errors) : "",
+        summary.mean(),
+        summary.p50(),
+        summary.p99(),
+        summary.p999(),
+        summary.max());
+  }
+}
@@ -0,0 +1,63 @@
+package dev.agst.byzcast.bench;
+
+import dev.agst.byzcast.app.kv.Partitioner;
+import dev.agst.byzcast.app.kv.Transaction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * A workload of {@link Transaction}s on the partitioned key-value store, each multicast to the
+ * groups holding the keys it accesses. Transactions whose keys fall into several partitions thus
+ * become multi-group multicasts.
+ */
+public class KeyValueWorkload implements Workload {
+  private final Partitioner partitioner;
+  private final ZipfDistribution keyDistribution;
+  private final int actions;
+  private final double writeRatio;
+  private final PayloadSizes valueSizes;
+
+  /**
+   * Creates a new workload.
+   *
+   * @param groupIDs The IDs of every group, each holding one partition.
+   * @param keys The number of distinct keys.
+   * @param keySkew The Zipf exponent used to select keys.
+   * @param actions The number of actions of each transaction.
+   * @param writeRatio The probability of an action being a {@code PUT} rather than a {@code GET}.
+   * @param valueSizes The distribution of the sizes of written values.
+   */
+  public KeyValueWorkload(
+      Collection<Integer> groupIDs,
+      int keys,
+      double keySkew,
+      int actions,
+      double writeRatio,
+      PayloadSizes valueSizes) {
+    if (actions <= 0) {
+      throw new IllegalArgumentException("actions must be positive");
+    }
+
+    this.partitioner = new Partitioner(groupIDs);
+    this.keyDistribution = new ZipfDistribution(keys, keySkew);
+    this.actions = actions;
+    this.writeRatio = writeRatio;
+    this.valueSizes = valueSizes;
+  }
+
+  @Override
+  public Operation next(int clientIndex, Random random) {
+    var transactionActions = new ArrayList<Transaction.Action>(actions);
+    for (int i = 0; i < actions; i++) {
+      var key = "key-" + keyDistribution.sample(random);
+      transactionActions.add(
+          random.nextDouble() < writeRatio
+              ? Transaction.Action.put(key, valueSizes.payload(random))
+              : Transaction.Action.get(key));
+    }
+
+    var transaction = new Transaction(transactionActions);
+    return new Operation(partitioner.targetsOf(transaction), transaction.toJSON());
+  }
+}
@@ -0,0 +1,112 @@
+package dev.agst.byzcast.bench;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Collects the latencies observed during the measurement phase of a benchmark. Latencies are kept
+ * in microseconds, both in an overall histogram and in one histogram per target set size, so that
+ * single-group and multi-group multicasts can be told apart in the final report.
+ *
+ * <p>All methods are thread-safe, as requests complete on many virtual threads at once.
+ */
+public class LatencyStats {
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private final Histogram overall = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+  private final Map<Integer, Histogram> bySize = new ConcurrentHashMap<>();
+
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong scheduled = new AtomicLong();
+  private final AtomicLong lastScheduledNanos = new AtomicLong();
+
+  /**
+   * Records that a request was scheduled during the measurement phase.
+   *
+   * @param offsetNanos The offset of the request from the start of the run.
+   */
+  public void recordScheduled(long offsetNanos) {
+    scheduled.incrementAndGet();
+    lastScheduledNanos.accumulateAndGet(offsetNanos, Math::max);
+  }
+
+  /**
+   * Records the latency of a successfully completed request.
+   *
+   * @param targetSetSize The number of groups targeted by the request.
+   * @param latencyNanos The latency of the request, in nanoseconds.
+   */
+  public void record(int targetSetSize, long latencyNanos) {
+    var micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+    overall.recordValue(micros);
+    bySize
+        .computeIfAbsent(targetSetSize, size -> new ConcurrentHistogram(SIGNIFICANT_DIGITS))
+        .recordValue(micros);
+  }
+
+  /** Records a request that failed or returned an invalid response. */
+  public void recordError() {
+    errors.incrementAndGet();
+  }
+
+  public long completed() {
+    return overall.getTotalCount();
+  }
+
+  public long errors() {
+    return errors.get();
+  }
+
+  public long scheduled() {
+    return scheduled.get();
+  }
+
+  /** Returns the offset, in whole seconds, of the last request scheduled during the measurement. */
+  public long lastScheduledSeconds() {
+    return TimeUnit.NANOSECONDS.toSeconds(lastScheduledNanos.get());
+  }
+
+  public LatencySummary overall() {
+    return LatencySummary.of(overall);
+  }
+
+  /**
+   * Summarizes the latencies of each target set size.
+   *
+   * @return A map, ordered by target set size, of the latency summary for that size.
+   */
+  public Map<Integer, LatencySummary> byTargetSetSize() {
+    var summaries = new TreeMap<Integer, LatencySummary>();
+    bySize.forEach((size, histogram) -> summaries.put(size, LatencySummary.of(histogram)));
+    return summaries;
+  }
+
+  /**
+   * A snapshot of a latency distribution. All latencies are expressed in microseconds.
+   *
+   * @param count The number of recorded requests.
+   * @param mean The mean latency.
+   * @param p50 The median latency.
+   * @param p99 The 99th percentile latency.
+   * @param p999 The 99.9th percentile latency.
+   * @param max The highest recorded latency.
+   */
+  public static record LatencySummary(
+      long count, double mean, long p50, long p99, long p999, long max) {
+
+    static LatencySummary of(Histogram histogram) {
+      return new LatencySummary(
+          histogram.getTotalCount(),
+          histogram.getMean(),
+          histogram.getValueAtPercentile(50.0),
+          histogram.getValueAtPercentile(99.0),
+          histogram.getValueAtPercentile(99.9),
+          histogram.getMaxValue());
+    }
+  }
+}
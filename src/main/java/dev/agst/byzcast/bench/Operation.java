@@ -0,0 +1,11 @@
+package dev.agst.byzcast.bench;
+
+import java.util.List;
+
+/**
+ * A single multicast produced by a {@link Workload}.
+ *
+ * @param targets The IDs of the groups targeted by the multicast.
+ * @param content The content of the multicast.
+ */
+public record Operation(List<Integer> targets, String content) {}
@@ -0,0 +1,81 @@
+package dev.agst.byzcast.bench;
+
+import java.util.Random;
+
+/**
+ * A distribution of payload sizes, in characters. Distributions are described by a short
+ * specification:
+ *
+ * <ul>
+ *   <li>{@code fixed:N} - every payload has exactly {@code N} characters.
+ *   <li>{@code uniform:MIN:MAX} - sizes are drawn uniformly between {@code MIN} and {@code MAX},
+ *       both inclusive.
+ *   <li>{@code exponential:MEAN} - sizes follow an exponential distribution with the given mean,
+ *       which models workloads of mostly small messages with a long tail of large ones.
+ * </ul>
+ */
+public sealed interface PayloadSizes {
+  int sample(Random random);
+
+  /** Generates a filler payload with a size drawn from this distribution. */
+  default String payload(Random random) {
+    return "x".repeat(sample(random));
+  }
+
+  record Fixed(int size) implements PayloadSizes {
+    @Override
+    public int sample(Random random) {
+      return size;
+    }
+  }
+
+  record Uniform(int min, int max) implements PayloadSizes {
+    @Override
+    public int sample(Random random) {
+      return random.nextInt(min, max + 1);
+    }
+  }
+
+  record Exponential(double mean) implements PayloadSizes {
+    @Override
+    public int sample(Random random) {
+      return (int) Math.round(-mean * Math.log(1.0 - random.nextDouble()));
+    }
+  }
+
+  /**
+   * Parses a payload size specification.
+   *
+   * @param spec The specification, in one of the formats described by {@link PayloadSizes}.
+   * @return The described distribution.
+   * @throws IllegalArgumentException If the specification is malformed.
+   */
+  static PayloadSizes parse(String spec) {
+    var parts = spec.split(":");
+    try {
+      switch (parts[0]) {
+        case "fixed":
+          if (parts.length == 2) {
+            return new Fixed(Integer.parseInt(parts[1]));
+          }
+          break;
+        case "uniform":
+          if (parts.length == 3) {
+            return new Uniform(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+          }
+          break;
+        case "exponential":
+          if (parts.length == 2) {
+            return new Exponential(Double.parseDouble(parts[1]));
+          }
+          break;
+        default:
+          break;
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid payload size specification: " + spec, e);
+    }
+
+    throw new IllegalArgumentException("Invalid payload size specification: " + spec);
+  }
+}
@@ -0,0 +1,215 @@
+package dev.agst.byzcast.bench;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A parameterized workload modelled after production traffic, where most multicasts target a single
+ * group and the remaining ones concentrate on a few hot group combinations.
+ *
+ * <p>Each multicast is generated as follows:
+ *
+ * <ul>
+ *   <li>With probability {@code locality}, it targets a single group, drawn from a Zipf
+ *       distribution over the groups.
+ *   <li>Otherwise, it targets between two and {@code maxTargets} groups. The number of targets is
+ *       drawn uniformly, and the combination itself from a Zipf distribution over all combinations
+ *       of that size.
+ *   <li>With probability {@code affinity}, the multicast is restricted to those involving the home
+ *       group of the client, which is the group at position {@code clientIndex} (modulo the number
+ *       of groups).
+ *   <li>The payload size is drawn from the given {@link PayloadSizes}.
+ * </ul>
+ *
+ * <p>Which groups and combinations are the hot ones is decided by a seeded shuffle, so that two
+ * workloads created with the same seed rank them identically. Combinations are never enumerated:
+ * each sampled rank is mapped to a combination on the fly. Only the Zipf distribution over the
+ * combinations of each size is kept in memory, so there may be at most {@link #MAX_COMBINATIONS}
+ * combinations of any size.
+ */
+public class SkewedWorkload implements Workload {
+  /** The maximum number of combinations of a single size, which bounds {@code maxTargets}. */
+  public static final int MAX_COMBINATIONS = 1 << 20;
+
+  private final List<Integer> groups;
+  private final double locality;
+  private final double affinity;
+  private final PayloadSizes payloadSizes;
+
+  private final ZipfDistribution groupDistribution;
+
+  /** The ranked combinations of each size, indexed by size minus two. */
+  private final List<RankedCombinations> combinations = new ArrayList<>();
+
+  /**
+   * The ranked combinations of the other groups, one smaller than each size, that are completed
+   * with a given home group. Indexed by size minus two and then by the position of the home group.
+   */
+  private final List<List<RankedCombinations>> homeCombinations = new ArrayList<>();
+
+  /**
+   * Creates a new workload.
+   *
+   * @param groupIDs The IDs of every group that may be targeted.
+   * @param locality The probability of a multicast targeting a single group.
+   * @param groupSkew The Zipf exponent used to select single groups.
+   * @param combinationSkew The Zipf exponent used to select group combinations.
+   * @param maxTargets The maximum number of groups targeted by a single multicast.
+   * @param affinity The probability of a multicast involving the home group of its client.
+   * @param payloadSizes The distribution of payload sizes.
+   * @param seed The seed that decides which groups and combinations are hot.
+   * @throws IllegalArgumentException If there are more than {@link #MAX_COMBINATIONS} combinations
+   *     of some size up to {@code maxTargets}.
+   */
+  public SkewedWorkload(
+      Collection<Integer> groupIDs,
+      double locality,
+      double groupSkew,
+      double combinationSkew,
+      int maxTargets,
+      double affinity,
+      PayloadSizes payloadSizes,
+      long seed) {
+    var shuffler = new Random(seed);
+
+    var groups = new ArrayList<>(groupIDs);
+    Collections.sort(groups);
+    Collections.shuffle(groups, shuffler);
+
+    this.groups = List.copyOf(groups);
+    this.locality = groups.size() == 1 ? 1.0 : locality;
+    this.affinity = affinity;
+    this.payloadSizes = payloadSizes;
+    this.groupDistribution = new ZipfDistribution(groups.size(), groupSkew);
+
+    var sortedGroups = new ArrayList<>(groupIDs);
+    Collections.sort(sortedGroups);
+    for (int size = 2; size <= Math.min(maxTargets, groups.size()); size++) {
+      var count = binomial(sortedGroups.size(), size);
+      if (count > MAX_COMBINATIONS) {
+        throw new IllegalArgumentException(
+            String.format(
+                "There are more than %d combinations of %d out of %d groups; lower the maximum"
+                    + " number of targets",
+                MAX_COMBINATIONS, size, sortedGroups.size()));
+      }
+      var distribution = new ZipfDistribution((int) count, combinationSkew);
+      combinations.add(new RankedCombinations(sortedGroups, size, distribution, shuffler));
+
+      // every home group has as many combinations, which share the same distribution
+      var homeCount = binomial(sortedGroups.size() - 1, size - 1);
+      var homeDistribution = new ZipfDistribution((int) homeCount, combinationSkew);
+      var byHome = new ArrayList<RankedCombinations>();
+      for (var home : this.groups) {
+        var others = sortedGroups.stream().filter(groupID -> !groupID.equals(home)).toList();
+        byHome.add(new RankedCombinations(others, size - 1, homeDistribution, shuffler));
+      }
+      homeCombinations.add(byHome);
+    }
+  }
+
+  @Override
+  public Operation next(int clientIndex, Random random) {
+    var content = payloadSizes.payload(random);
+    var homePosition = clientIndex % groups.size();
+    var useHome = affinity > 0 && random.nextDouble() < affinity;
+
+    if (combinations.isEmpty() || random.nextDouble() < locality) {
+      var position = useHome ? homePosition : groupDistribution.sample(random);
+      return new Operation(List.of(groups.get(position)), content);
+    }
+
+    var sizeIndex = random.nextInt(combinations.size());
+    if (!useHome) {
+      return new Operation(combinations.get(sizeIndex).sample(random), content);
+    }
+
+    var targets = new ArrayList<>(homeCombinations.get(sizeIndex).get(homePosition).sample(random));
+    targets.add(groups.get(homePosition));
+    Collections.sort(targets);
+    return new Operation(List.copyOf(targets), content);
+  }
+
+  /** Returns the number of combinations of {@code k} out of {@code n}, or saturates on overflow. */
+  private static long binomial(int n, int k) {
+    long result = 1;
+    try {
+      for (int i = 0; i < k; i++) {
+        // the division is exact, as the result is a binomial coefficient at every step
+        result = Math.multiplyExact(result, n - i) / (i + 1);
+      }
+    } catch (ArithmeticException e) {
+      return Long.MAX_VALUE;
+    }
+    return result;
+  }
+
+  /**
+   * The combinations of a given size out of a sorted list of groups, ranked by hotness. A rank is
+   * mapped to the position of a combination in lexicographic order through a seeded affine
+   * permutation, and the combination is then built from its position, so that the combinations
+   * themselves are never stored.
+   */
+  private static class RankedCombinations {
+    private final List<Integer> groups;
+    private final int size;
+    private final ZipfDistribution distribution;
+
+    private final long count;
+    private final long multiplier;
+    private final long offset;
+
+    /**
+     * @param groups The sorted groups the combinations are made of.
+     * @param size The number of groups of each combination.
+     * @param distribution The distribution over the ranks of the combinations, which must have
+     *     exactly as many ranks as there are combinations.
+     * @param shuffler The source of randomness that decides the hot combinations.
+     */
+    RankedCombinations(
+        List<Integer> groups, int size, ZipfDistribution distribution, Random shuffler) {
+      this.groups = groups;
+      this.size = size;
+      this.distribution = distribution;
+      this.count = binomial(groups.size(), size);
+
+      // any multiplier coprime with the number of combinations makes the mapping a permutation
+      var multiplier = 1L;
+      while (count > 1) {
+        multiplier = 1 + shuffler.nextLong(count - 1);
+        if (BigInteger.valueOf(multiplier).gcd(BigInteger.valueOf(count)).equals(BigInteger.ONE)) {
+          break;
+        }
+      }
+      this.multiplier = multiplier;
+      this.offset = shuffler.nextLong(count);
+    }
+
+    List<Integer> sample(Random random) {
+      var rank = distribution.sample(random);
+      return unrank((rank * multiplier + offset) % count);
+    }
+
+    /** Builds the combination at the given position in lexicographic order. */
+    private List<Integer> unrank(long position) {
+      var combination = new ArrayList<Integer>(size);
+      var next = 0;
+      for (int remaining = size; remaining > 0; remaining--) {
+        while (true) {
+          var startingHere = binomial(groups.size() - next - 1, remaining - 1);
+          if (position < startingHere) {
+            break;
+          }
+          position -= startingHere;
+          next++;
+        }
+        combination.add(groups.get(next++));
+      }
+      return combination;
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package dev.agst.byzcast.bench;
+
+import java.util.List;
+
+/**
+ * A single request of a workload trace. Traces are stored as JSON lines, one entry per line, in the
+ * order in which the requests were sent:
+ *
+ * <pre>{@code
+ * {"offsetNanos":0,"targets":[1,3],"content":"some-content"}
+ * {"offsetNanos":1250000,"targets":[2],"size":128}
+ * }</pre>
+ *
+ * <p>Either the content or only the size of the payload may be stored. In the latter case, a filler
+ * payload of the same size is used when replaying.
+ *
+ * @param offsetNanos The instant at which the request was sent, relative to the start of the trace.
+ * @param targets The IDs of the groups targeted by the request.
+ * @param content The content of the request, or {@code null} if only its size was recorded.
+ * @param size The size of the content, in characters.
+ */
+public record TraceEntry(long offsetNanos, List<Integer> targets, String content, int size) {
+
+  public TraceEntry(long offsetNanos, List<Integer> targets, String content) {
+    this(offsetNanos, targets, content, content.length());
+  }
+
+  /** Returns the content of the request, generating a filler of the recorded size if needed. */
+  public String payload() {
+    if (content != null) {
+      return content;
+    }
+    return "x".repeat(size);
+  }
+
+  /** Returns a copy of this entry without its content, keeping only the payload size. */
+  public TraceEntry withoutContent() {
+    return new TraceEntry(offsetNanos, targets, null, size);
+  }
+
+  public int[] targetsArray() {
+    return targets.stream().mapToInt(Integer::intValue).toArray();
+  }
+}
@@ -0,0 +1,61 @@
+package dev.agst.byzcast.bench;
+
+import com.google.gson.Gson;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the entries of a trace file written by {@link TraceRecorder}. Entries are read lazily, so
+ * traces of any length can be replayed in constant memory. Blank lines are skipped.
+ */
+public class TraceReader implements Iterator<TraceEntry>, AutoCloseable {
+  private final Gson gson = new Gson();
+
+  private final BufferedReader reader;
+  private TraceEntry next;
+
+  public TraceReader(Path path) throws IOException {
+    this.reader = Files.newBufferedReader(path);
+    this.next = readEntry();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return next != null;
+  }
+
+  @Override
+  public TraceEntry next() {
+    if (next == null) {
+      throw new NoSuchElementException();
+    }
+
+    var current = next;
+    next = readEntry();
+    return current;
+  }
+
+  private TraceEntry readEntry() {
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isBlank()) {
+          return gson.fromJson(line, TraceEntry.class);
+        }
+      }
+      return null;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read trace entry", e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+}
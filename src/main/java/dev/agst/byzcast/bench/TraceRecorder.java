@@ -0,0 +1,63 @@
+package dev.agst.byzcast.bench;
+
+import com.google.gson.Gson;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Records the requests sent by a client into a trace file, in the format described by {@link
+ * TraceEntry}. Offsets are relative to the creation of the recorder. This class is thread-safe, so
+ * a single recorder may be shared by every thread of a client.
+ */
+public class TraceRecorder implements AutoCloseable {
+  private final Gson gson = new Gson();
+
+  private final BufferedWriter writer;
+  private final boolean sizesOnly;
+  private final long start = System.nanoTime();
+
+  /**
+   * Creates a recorder that writes to the given file, replacing it if it exists.
+   *
+   * @param path The path of the trace file.
+   * @param sizesOnly Whether to only record the size of each payload instead of its content.
+   */
+  public TraceRecorder(Path path, boolean sizesOnly) throws IOException {
+    this.writer = Files.newBufferedWriter(path);
+    this.sizesOnly = sizesOnly;
+  }
+
+  /**
+   * Records a request sent at the current instant.
+   *
+   * @param targets The IDs of the groups targeted by the request.
+   * @param content The content of the request.
+   */
+  public void record(List<Integer> targets, String content) {
+    var entry = new TraceEntry(System.nanoTime() - start, List.copyOf(targets), content);
+    if (sizesOnly) {
+      entry = entry.withoutContent();
+    }
+
+    var line = gson.toJson(entry);
+    synchronized (writer) {
+      try {
+        writer.write(line);
+        writer.newLine();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to write trace entry", e);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (writer) {
+      writer.close();
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package dev.agst.byzcast.bench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The original workload of the test client: the number of targets is drawn uniformly between one
+ * and the number of groups, the targets themselves are a uniformly random subset of that size, and
+ * the content is always {@code "some-content"}.
+ */
+public class UniformWorkload implements Workload {
+  private final List<Integer> groupIDs;
+
+  public UniformWorkload(Collection<Integer> groupIDs) {
+    this.groupIDs = List.copyOf(groupIDs);
+  }
+
+  @Override
+  public Operation next(int clientIndex, Random random) {
+    var list = new ArrayList<>(groupIDs);
+    Collections.shuffle(list, random);
+    var numGroups = random.nextInt(1, list.size() + 1);
+    return new Operation(List.copyOf(list.subList(0, numGroups)), "some-content");
+  }
+}
@@ -0,0 +1,20 @@
+package dev.agst.byzcast.bench;
+
+import java.util.Random;
+
+/**
+ * Generates the multicasts sent by the test and benchmark clients. Implementations must be
+ * thread-safe; all randomness is drawn from the {@link Random} given by the caller, so that each
+ * client thread may use its own (possibly seeded) source.
+ */
+public interface Workload {
+  /**
+   * Generates the next multicast of a client.
+   *
+   * @param clientIndex The index of the client sending the multicast, used by workloads in which
+   *     clients have an affinity towards some groups.
+   * @param random The source of randomness of the client.
+   * @return The multicast to be sent.
+   */
+  Operation next(int clientIndex, Random random);
+}
@@ -0,0 +1,117 @@
+package dev.agst.byzcast.bench;
+
+import dev.agst.byzcast.app.Application;
+import java.util.Collection;
+import picocli.CommandLine.Option;
+
+/**
+ * Command line options describing the workload of the test and benchmark clients. Without {@code
+ * --locality}, the original {@link UniformWorkload} is used; with it, a {@link SkewedWorkload} is
+ * built from the remaining options. With {@code --app kv}, a {@link KeyValueWorkload} is used
+ * instead, with values sized by {@code --payload}.
+ */
+public class WorkloadOptions {
+  @Option(
+      names = {"--app"},
+      description = "The application run by the replicas: ${COMPLETION-CANDIDATES}",
+      defaultValue = "ack")
+  Application application;
+
+  @Option(
+      names = {"--kv-keys"},
+      description = "Number of distinct keys of the key-value workload",
+      defaultValue = "10000")
+  int kvKeys;
+
+  @Option(
+      names = {"--kv-key-skew"},
+      description = "Zipf exponent over the keys of the key-value workload",
+      defaultValue = "0")
+  double kvKeySkew;
+
+  @Option(
+      names = {"--kv-actions"},
+      description = "Number of keys accessed by each transaction of the key-value workload",
+      defaultValue = "2")
+  int kvActions;
+
+  @Option(
+      names = {"--kv-write-ratio"},
+      description = "Probability of an access of the key-value workload being a write",
+      defaultValue = "0.5")
+  double kvWriteRatio;
+
+  @Option(
+      names = {"--locality"},
+      description = "Probability of a multicast targeting a single group (enables skewed workload)")
+  Double locality;
+
+  @Option(
+      names = {"--group-skew"},
+      description = "Zipf exponent over groups for single-group multicasts",
+      defaultValue = "0")
+  double groupSkew;
+
+  @Option(
+      names = {"--combination-skew"},
+      description = "Zipf exponent over group combinations for multi-group multicasts",
+      defaultValue = "0")
+  double combinationSkew;
+
+  @Option(
+      names = {"--max-targets"},
+      description = "Maximum number of groups targeted by a multi-group multicast",
+      defaultValue = "2")
+  int maxTargets;
+
+  @Option(
+      names = {"--affinity"},
+      description = "Probability of a multicast involving the home group of its client",
+      defaultValue = "0")
+  double affinity;
+
+  @Option(
+      names = {"--payload"},
+      description = "Payload size distribution: fixed:N, uniform:MIN:MAX or exponential:MEAN",
+      defaultValue = "fixed:12")
+  String payload;
+
+  @Option(
+      names = {"--seed"},
+      description = "Seed for the workload's random choices (random if not set)")
+  Long seed;
+
+  /**
+   * Builds the workload described by the options.
+   *
+   * @param groupIDs The IDs of every group of the topology.
+   */
+  public Workload build(Collection<Integer> groupIDs) {
+    if (application == Application.KV) {
+      return new KeyValueWorkload(
+          groupIDs, kvKeys, kvKeySkew, kvActions, kvWriteRatio, PayloadSizes.parse(payload));
+    }
+
+    if (locality == null) {
+      return new UniformWorkload(groupIDs);
+    }
+
+    return new SkewedWorkload(
+        groupIDs,
+        locality,
+        groupSkew,
+        combinationSkew,
+        maxTargets,
+        affinity,
+        PayloadSizes.parse(payload),
+        seed());
+  }
+
+  /** Returns the configured seed, or a random one if none was given. */
+  public long seed() {
+    if (seed == null) {
+      seed = System.nanoTime();
+    }
+    return seed;
+  }
+}
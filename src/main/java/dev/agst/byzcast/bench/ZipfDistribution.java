@@ -0,0 +1,50 @@
+package dev.agst.byzcast.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples ranks from a Zipf distribution, in which the probability of rank {@code k} (starting at
+ * 1) is proportional to {@code 1 / k^exponent}. An exponent of zero yields a uniform distribution,
+ * and larger exponents concentrate the samples on the first ranks.
+ */
+public class ZipfDistribution {
+  private final double[] cumulative;
+
+  /**
+   * Creates a distribution over a number of ranks.
+   *
+   * @param ranks The number of ranks, which must be positive.
+   * @param exponent The skew of the distribution, which must not be negative.
+   */
+  public ZipfDistribution(int ranks, double exponent) {
+    if (ranks <= 0) {
+      throw new IllegalArgumentException("ranks must be positive");
+    }
+    if (exponent < 0) {
+      throw new IllegalArgumentException("exponent must not be negative");
+    }
+
+    this.cumulative = new double[ranks];
+    var total = 0.0;
+    for (int k = 1; k <= ranks; k++) {
+      total += 1.0 / Math.pow(k, exponent);
+      cumulative[k - 1] = total;
+    }
+    for (int i = 0; i < ranks; i++) {
+      cumulative[i] /= total;
+    }
+  }
+
+  /**
+   * Draws a rank from the distribution.
+   *
+   * @param random The source of randomness.
+   * @return A zero-based rank, where {@code 0} is the most likely one.
+   */
+  public int sample(Random random) {
+    var index = Arrays.binarySearch(cumulative, random.nextDouble());
+    var rank = index >= 0 ? index : -index - 1;
+    return Math.min(rank, cumulative.length - 1);
+  }
+}
@@ -0,0 +1,78 @@
+package dev.agst.byzcast.blob;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+
+/**
+ * A content-addressed store of multicast payloads. Payloads are addressed by the hex-encoded
+ * SHA-256 digest of their UTF-8 bytes, so a payload obtained from an untrusted source can be
+ * verified against its address.
+ *
+ * <p>The store is bounded: once the total size of its payloads exceeds the capacity, the least
+ * recently used ones are evicted. It is part of the replicated state of a group, so it must only be
+ * accessed while executing ordered requests; as every replica then stores and reads the same
+ * payloads in the same order, every replica also evicts the same ones.
+ *
+ * <p>This class is thread-safe.
+ */
+public class BlobStore implements Serializable {
+  private final long capacity;
+  private long size = 0;
+
+  private final LinkedHashMap<String, String> blobs = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Creates an empty store.
+   *
+   * @param capacity The maximum total size of the stored payloads, in characters.
+   */
+  public BlobStore(long capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Stores a payload.
+   *
+   * @param payload The payload to be stored.
+   * @return The digest that addresses the payload.
+   */
+  public synchronized String put(String payload) {
+    var digest = digest(payload);
+    if (blobs.put(digest, payload) == null) {
+      size += payload.length();
+    }
+
+    var iterator = blobs.values().iterator();
+    while (size > capacity && iterator.hasNext()) {
+      size -= iterator.next().length();
+      iterator.remove();
+    }
+    return digest;
+  }
+
+  /**
+   * Retrieves a payload.
+   *
+   * @param digest The digest of the payload.
+   * @return The payload, or an empty optional if it is not stored.
+   */
+  public synchronized Optional<String> get(String digest) {
+    return Optional.ofNullable(blobs.get(digest));
+  }
+
+  /** Computes the digest that addresses a payload. */
+  public static String digest(String payload) {
+    try {
+      var bytes = payload.getBytes(StandardCharsets.UTF_8);
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -5,17 +5,10 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import dev.agst.byzcast.Logger;
 import dev.agst.byzcast.Logger.Attr;
-import dev.agst.byzcast.Serializer;
-import dev.agst.byzcast.group.GroupProxies;
-import dev.agst.byzcast.message.Request;
-import dev.agst.byzcast.message.Response;
-import dev.agst.byzcast.topology.Topology;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import dev.agst.byzcast.bench.TraceRecorder;
+import dev.agst.byzcast.bench.Workload;
+import java.util.Optional;
 import java.util.Random;
-import java.util.Set;
-import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -24,13 +17,18 @@ public class BatchTestClient {
   private final Gson gson =
       new GsonBuilder().setPrettyPrinting().setFormattingStyle(FormattingStyle.PRETTY).create();
 
-  private final Topology topology;
-  private final GroupProxies proxies;
+  private final MulticastClient client;
+  private final Workload workload;
+  private final long seed;
+  private final Optional<TraceRecorder> recorder;
   private final AtomicBoolean shutdownRequested = new AtomicBoolean(false);
 
-  public BatchTestClient(Topology topology, GroupProxies proxies) {
-    this.topology = topology;
-    this.proxies = proxies;
+  public BatchTestClient(
+      MulticastClient client, Workload workload, long seed, Optional<TraceRecorder> recorder) {
+    this.client = client;
+    this.workload = workload;
+    this.seed = seed;
+    this.recorder = recorder;
 
     Runtime.getRuntime()
         .addShutdownHook(
@@ -45,50 +43,30 @@ public class BatchTestClient {
     var executor = Executors.newVirtualThreadPerTaskExecutor();
 
     for (int i = 0; i < numThreads; i++) {
-      executor.submit(this::sendLoop);
+      var clientIndex = i;
+      executor.submit(() -> sendLoop(clientIndex));
     }
 
     executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
   }
 
-  private void sendLoop() {
+  private void sendLoop(int clientIndex) {
     var logger = new Logger();
     var threadID = Thread.currentThread().threadId();
+    var random = new Random(seed + clientIndex);
 
     logger = logger.with(new Attr("TID", threadID));
 
     while (!shutdownRequested.get()) {
       try {
-        var targetGroupIDs = selectRandomGroups(topology.getGroupIDs());
-        var optLca = topology.findLCA(targetGroupIDs);
-        if (optLca.isEmpty()) {
-          logger.error("No common ancestor found");
-          continue;
-        }
+        var operation = workload.next(clientIndex, random);
+        recorder.ifPresent(r -> r.record(operation.targets(), operation.content()));
 
-        var lca = optLca.get();
-        logger.info("LCA found", new Attr("LCA", lca));
-
-        var proxy = proxies.forGroup(lca);
-
-        var targetGroupIDsArray = targetGroupIDs.stream().mapToInt(Integer::intValue).toArray();
-        var request =
-            new Request(
-                UUID.randomUUID(), targetGroupIDsArray, "some-content", Request.Source.CLIENT);
-        var responseBytes = proxy.invokeOrdered(Serializer.toBytes(request));
-
-        var response = Serializer.fromBytes(responseBytes, Response.class);
+        var response = client.multicast(operation.targets(), operation.content()).get();
         logger.info(gson.toJson(response));
       } catch (Exception e) {
         logger.error("Error", e);
       }
     }
   }
-
-  private static List<Integer> selectRandomGroups(Set<Integer> groupIDs) {
-    var list = new ArrayList<>(groupIDs);
-    Collections.shuffle(list);
-    var numGroups = new Random().nextInt(1, list.size() + 1);
-    return list.subList(0, numGroups);
-  }
 }
@@ -0,0 +1,163 @@
+package dev.agst.byzcast.client;
+
+import dev.agst.byzcast.message.MessageBatch;
+import dev.agst.byzcast.message.Response;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packs many application messages into fewer multicasts. Messages are held for up to a linger time,
+ * grouped by target set, and each group is sent through a {@link MulticastClient} as a single
+ * request of kind {@code BATCH}. Every group on the path of a batch orders it in a single consensus
+ * instance, and target groups deliver its messages individually, so that the throughput of busy
+ * groups is no longer bound by the per-consensus overhead of small messages.
+ *
+ * <p>The response to each message is extracted from the response to its batch, and has the same
+ * shape as if the message had been multicast on its own. A batch is sent as soon as it holds
+ * {@code maxBatchSize} messages, and a message that is alone once its linger time elapses is
+ * multicast as a regular request. All messages of a batch fail together if the batch fails.
+ *
+ * <p>This class is thread-safe.
+ */
+public class BatchingGateway implements AutoCloseable {
+  private final MulticastClient client;
+  private final long lingerMicros;
+  private final int maxBatchSize;
+
+  /** The messages waiting to be sent, by target set, in order of arrival. */
+  private final Map<List<Integer>, Queue> pending = new HashMap<>();
+
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().name("batching-gateway").daemon().factory());
+
+  /** A message waiting to be sent, along with the future of its response. */
+  private static record Pending(String payload, CompletableFuture<Response> future) {}
+
+  /**
+   * The messages waiting to be sent for a target set, along with the task that sends them once
+   * their linger time elapses, which is cancelled if they are sent earlier.
+   */
+  private static class Queue {
+    private final List<Pending> messages = new ArrayList<>();
+    private ScheduledFuture<?> flush;
+  }
+
+  /**
+   * Creates a new gateway.
+   *
+   * @param client The client through which batches are multicast. The gateway does not close it.
+   * @param lingerMicros The maximum time, in microseconds, a message waits for others with the
+   *     same targets before being sent.
+   * @param maxBatchSize The maximum number of messages in a single batch.
+   */
+  public BatchingGateway(MulticastClient client, long lingerMicros, int maxBatchSize) {
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("The maximum batch size must be at least 1");
+    }
+
+    this.client = client;
+    this.lingerMicros = lingerMicros;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * Multicasts a payload to a set of groups, possibly along with other payloads with the same
+   * targets. This method does not block, except while the window of the client is full.
+   *
+   * @param targets The IDs of the target groups.
+   * @param payload The content of the multicast.
+   * @return A future completed with the response of the LCA group to this payload.
+   */
+  public CompletableFuture<Response> multicast(List<Integer> targets, String payload) {
+    var key = targets.stream().sorted().distinct().toList();
+    var future = new CompletableFuture<Response>();
+
+    List<Pending> full = null;
+    synchronized (this) {
+      var queue = pending.get(key);
+      if (queue == null) {
+        var created = new Queue();
+        created.flush =
+            scheduler.schedule(() -> flush(key, created), lingerMicros, TimeUnit.MICROSECONDS);
+        pending.put(key, created);
+        queue = created;
+      }
+
+      queue.messages.add(new Pending(payload, future));
+      if (queue.messages.size() >= maxBatchSize) {
+        pending.remove(key);
+        queue.flush.cancel(false);
+        full = queue.messages;
+      }
+    }
+
+    if (full != null) {
+      send(key, full);
+    }
+    return future;
+  }
+
+  /** Sends the messages of a queue once their linger time elapses. */
+  private void flush(List<Integer> targets, Queue queue) {
+    // the queue may have filled up and been sent just before its flush was cancelled, in which
+    // case the queue in its place, if any, has a flush of its own
+    synchronized (this) {
+      if (!pending.remove(targets, queue)) {
+        return;
+      }
+    }
+    send(targets, queue.messages);
+  }
+
+  private void send(List<Integer> targets, List<Pending> queue) {
+    if (queue.size() == 1) {
+      var single = queue.get(0);
+      client
+          .multicast(targets, single.payload())
+          .whenComplete((response, error) -> complete(single.future(), response, error));
+      return;
+    }
+
+    var batch = new MessageBatch(queue.stream().map(Pending::payload).toList());
+    client
+        .multicastBatch(targets, batch)
+        .whenComplete(
+            (response, error) -> {
+              for (int index = 0; index < queue.size(); index++) {
+                var split =
+                    response == null ? null : MessageBatch.split(response, index, queue.size());
+                complete(queue.get(index).future(), split, error);
+              }
+            });
+  }
+
+  private static void complete(
+      CompletableFuture<Response> future, Response response, Throwable error) {
+    if (error != null) {
+      future.completeExceptionally(error);
+    } else {
+      future.complete(response);
+    }
+  }
+
+  /** Sends every waiting message and stops the gateway. */
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+
+    Map<List<Integer>, Queue> remaining;
+    synchronized (this) {
+      remaining = new HashMap<>(pending);
+      pending.clear();
+    }
+    remaining.forEach((targets, queue) -> send(targets, queue.messages));
+  }
+}
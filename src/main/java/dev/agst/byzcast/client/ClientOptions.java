@@ -0,0 +1,50 @@
+package dev.agst.byzcast.client;
+
+import dev.agst.byzcast.group.GroupConfigFinder;
+import dev.agst.byzcast.message.Request;
+import dev.agst.byzcast.topology.Topology;
+import picocli.CommandLine.Option;
+
+/** Command line options shared by every command that builds a {@link MulticastClient}. */
+public class ClientOptions {
+  @Option(
+      names = {"--window"},
+      description = "The maximum number of outstanding multicasts",
+      defaultValue = "1024")
+  int window;
+
+  @Option(
+      names = {"--timeout"},
+      description = "The time, in milliseconds, after which an outstanding multicast fails",
+      defaultValue = "30000")
+  long timeoutMillis;
+
+  @Option(
+      names = {"--offload-threshold"},
+      description =
+          "Payload size from which payloads are uploaded to the targets and only their digest is"
+              + " multicast (disabled if negative)",
+      defaultValue = "-1")
+  int offloadThreshold;
+
+  @Option(
+      names = {"--compact-replies"},
+      description = "Request only the delivery status of each target group instead of full replies")
+  boolean compactReplies;
+
+  @Option(
+      names = {"--digest-replies"},
+      description =
+          "Request full replies from a single replica of each group and digests from the others"
+              + " (ignored with --compact-replies)")
+  boolean digestReplies;
+
+  public MulticastClient build(Topology topology, GroupConfigFinder configFinder) {
+    var replyMode =
+        compactReplies
+            ? Request.ReplyMode.COMPACT
+            : digestReplies ? Request.ReplyMode.DIGEST : Request.ReplyMode.FULL;
+    return new MulticastClient(
+        topology, configFinder, window, timeoutMillis, offloadThreshold, replyMode);
+  }
+}
@@ -0,0 +1,569 @@
+package dev.agst.byzcast.client;
+
+import bftsmart.tom.AsynchServiceProxy;
+import bftsmart.tom.core.messages.TOMMessageType;
+import com.google.gson.Gson;
+import dev.agst.byzcast.Serializer;
+import dev.agst.byzcast.SerializingException;
+import dev.agst.byzcast.bench.Operation;
+import dev.agst.byzcast.blob.BlobStore;
+import dev.agst.byzcast.group.GroupConfigFinder;
+import dev.agst.byzcast.group.QuorumListener;
+import dev.agst.byzcast.message.CompactResponse;
+import dev.agst.byzcast.message.MessageBatch;
+import dev.agst.byzcast.message.Query;
+import dev.agst.byzcast.message.ReplyDigest;
+import dev.agst.byzcast.message.Request;
+import dev.agst.byzcast.message.Response;
+import dev.agst.byzcast.message.Response.GroupResponse;
+import dev.agst.byzcast.topology.Topology;
+import dev.agst.byzcast.topology.VersionedTopology;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * A client library for atomic multicast in ByzCast. It hides the details of the protocol from the
+ * application: the LCA of the target groups is resolved internally, the {@link Request} is built
+ * and serialized, and the replies of the LCA group are matched and deserialized into a {@link
+ * Response}.
+ *
+ * <p>Requests are sent through one {@link AsynchServiceProxy} per group, so many multicasts may be
+ * in flight at once, even from a single thread. The number of outstanding multicasts is bounded by
+ * a window: once it is full, {@link #multicast(List, String)} blocks until a multicast completes.
+ *
+ * <p>A multicast completes once a quorum of identical replies has been received from the LCA group,
+ * with the same quorum used by BFT-SMaRt's {@code ServiceProxy} for ordered requests. If no quorum
+ * is reached within the timeout, the returned future fails with a {@link
+ * java.util.concurrent.TimeoutException}. With the {@code DIGEST} reply mode, replies are matched
+ * by their digests, and the full reply is fetched from the replicas if the quorum holds none.
+ *
+ * <p>Multicasts are routed with the latest known topology, starting from the one given at
+ * construction as epoch zero. When the LCA refuses a multicast because the system has since been
+ * reconfigured, the client fetches the current topology from the root and routes the multicast
+ * again, so reconfigurations are transparent to the application.
+ *
+ * <p>When the LCA refuses a multicast as busy, the client sends it again after an exponentially
+ * growing delay with random jitter, so that an overloaded system sheds load instead of queueing it.
+ *
+ * <p>Multicasts with the {@code RELAXED} delivery class skip the LCA: a copy is sent straight to
+ * each target group, and the responses of the targets are merged into a single {@link Response},
+ * shaped as that of an LCA that forwarded the multicast to every target. Such multicasts are only
+ * ordered by each target among its own messages.
+ *
+ * <p>Payloads at least as large as the offload threshold are uploaded to the blob stores of the
+ * target groups before the multicast, which then carries only their digest. Each target orders the
+ * upload, so its replicas agree on which payloads they hold, while the groups between the LCA and
+ * the targets are spared from ordering and forwarding the payload itself.
+ *
+ * <p>This class is thread-safe.
+ */
+public class MulticastClient implements AutoCloseable {
+  /** The number of times a multicast is sent again after being refused by its LCA. */
+  private static final int MAX_RETRIES = 20;
+
+  /** The maximum delay before retrying a multicast sent ahead of its LCA's epoch. */
+  private static final long MAX_RETRY_DELAY_MILLIS = 100;
+
+  /** The delay before the first retry of a multicast refused as the LCA was busy. */
+  private static final long BUSY_BASE_DELAY_MILLIS = 5;
+
+  /** The maximum delay before retrying a multicast refused as the LCA was busy. */
+  private static final long MAX_BUSY_DELAY_MILLIS = 1000;
+
+  private volatile VersionedTopology topology;
+  private final GroupConfigFinder configFinder;
+
+  private final Map<Integer, AsynchServiceProxy> proxies = new ConcurrentHashMap<>();
+  private final Random random = new Random();
+
+  private final Semaphore window;
+  private final long timeoutMillis;
+  private final int offloadThreshold;
+  private final Request.ReplyMode replyMode;
+
+  /**
+   * The session that identifies the requests of this client. A request that times out is retired
+   * after another timeout, by which its copies are expected to have left the groups.
+   */
+  private final Session session;
+
+  /** The executor on which topologies are fetched and refused multicasts are retried. */
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  /**
+   * Creates a new client.
+   *
+   * @param topology The initial topology used to resolve the LCA of each multicast.
+   * @param configFinder The finder used to locate the configuration of each group.
+   * @param window The maximum number of outstanding multicasts.
+   * @param timeoutMillis The time after which an outstanding multicast fails.
+   * @param offloadThreshold The payload size, in characters, from which payloads are offloaded, or
+   *     a negative number to never offload them.
+   * @param replyMode The form of the responses requested from the groups. With {@code COMPACT},
+   *     responses are presented as built by {@link CompactResponse#toResponse()}.
+   */
+  public MulticastClient(
+      Topology topology,
+      GroupConfigFinder configFinder,
+      int window,
+      long timeoutMillis,
+      int offloadThreshold,
+      Request.ReplyMode replyMode) {
+    this.topology = new VersionedTopology(0, topology);
+    this.configFinder = configFinder;
+    this.window = new Semaphore(window);
+    this.timeoutMillis = timeoutMillis;
+    this.session = new Session(timeoutMillis);
+    this.offloadThreshold = offloadThreshold;
+    this.replyMode = replyMode;
+  }
+
+  /**
+   * Multicasts a payload to a set of groups. This method only blocks while the window of
+   * outstanding multicasts is full.
+   *
+   * @param targets The IDs of the target groups.
+   * @param payload The content of the multicast.
+   * @return A future completed with the response of the LCA group. It fails with an {@link
+   *     IllegalArgumentException} if the targets have no common ancestor, such as when they belong
+   *     to different trees of the topology.
+   */
+  public CompletableFuture<Response> multicast(List<Integer> targets, String payload) {
+    return multicast(targets, payload, Request.DeliveryClass.ORDERED);
+  }
+
+  /**
+   * Multicasts a payload to a set of groups with the given delivery class. This method only blocks
+   * while the window of outstanding multicasts is full.
+   *
+   * @param targets The IDs of the target groups.
+   * @param payload The content of the multicast.
+   * @param deliveryClass Whether the multicast is ordered through the LCA of its targets or sent
+   *     straight to each of them.
+   * @return A future completed with the response of the LCA group, or with the merged responses of
+   *     the targets for a relaxed multicast. In the latter, a target that cannot be reached is
+   *     answered with {@code REQUEST_TO_GROUP_<id>_FAILED}, as a replica does for failed forwards.
+   */
+  public CompletableFuture<Response> multicast(
+      List<Integer> targets, String payload, Request.DeliveryClass deliveryClass) {
+    var targetsArray = targets.stream().mapToInt(Integer::intValue).toArray();
+    var kind =
+        offloadThreshold >= 0 && payload.length() >= offloadThreshold
+            ? Request.Kind.OFFLOADED_MULTICAST
+            : Request.Kind.MULTICAST;
+    return submit(session.nextID(), targetsArray, payload, kind, deliveryClass);
+  }
+
+  /**
+   * Multicasts a batch of payloads, pipelining them within the window. This method blocks only for
+   * as long as needed to fit the whole batch in the window.
+   *
+   * @param operations The multicasts to be sent, in order.
+   * @return The futures of each multicast, in the same order as the operations.
+   */
+  public List<CompletableFuture<Response>> multicastAll(List<Operation> operations) {
+    return operations.stream().map(op -> multicast(op.targets(), op.content())).toList();
+  }
+
+  /**
+   * Multicasts several messages with the same targets as a single request, which is ordered once
+   * by each group on its path. Used by {@link BatchingGateway}; batches are never offloaded.
+   *
+   * @param targets The IDs of the target groups.
+   * @param batch The messages to be multicast.
+   * @return A future completed with the response of the LCA group to the whole batch, from which
+   *     the response to each message is extracted by {@link MessageBatch#split(Response, int,
+   *     int)}.
+   */
+  CompletableFuture<Response> multicastBatch(List<Integer> targets, MessageBatch batch) {
+    var targetsArray = targets.stream().mapToInt(Integer::intValue).toArray();
+    return submit(
+        session.nextID(),
+        targetsArray,
+        batch.toJSON(),
+        Request.Kind.BATCH,
+        Request.DeliveryClass.ORDERED);
+  }
+
+  /**
+   * Replaces the topology of the system. The change is ordered by the root along with every
+   * multicast, and each group moves to the new epoch as it delivers it.
+   *
+   * @param next The new topology, which must contain exactly the same groups as the current one.
+   *     Both must be a single tree rooted at group zero.
+   * @return A future completed with the response of the root, whose content is {@code
+   *     INVALID_RECONFIGURATION} if the change was refused. The future fails if the topology
+   *     cannot be fetched from the root afterwards.
+   */
+  public CompletableFuture<Response> reconfigure(Topology next) {
+    var layout = new Gson().toJson(next.toLayout());
+    return submit(
+            session.nextID(),
+            null,
+            layout,
+            Request.Kind.RECONFIGURATION,
+            Request.DeliveryClass.ORDERED)
+        .thenApplyAsync(
+            response -> {
+              refreshTopology();
+              return response;
+            },
+            executor);
+  }
+
+  /** Returns the latest known topology. */
+  public VersionedTopology topology() {
+    return topology;
+  }
+
+  private CompletableFuture<Response> submit(
+      UUID id,
+      int[] targets,
+      String content,
+      Request.Kind kind,
+      Request.DeliveryClass deliveryClass) {
+    try {
+      window.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return CompletableFuture.failedFuture(e);
+    }
+
+    Function<String, CompletableFuture<Response>> send =
+        deliveryClass == Request.DeliveryClass.RELAXED
+            ? c -> sendRelaxed(id, targets, c, kind)
+            : c -> attempt(id, targets, c, kind, 0);
+    var future =
+        kind == Request.Kind.OFFLOADED_MULTICAST
+            ? storeBlob(id, targets, content).thenCompose(send)
+            : send.apply(content);
+    return future.whenComplete(
+        (response, error) -> {
+          if (error == null) {
+            session.complete(id);
+          } else {
+            session.abandon(id);
+          }
+          window.release();
+        });
+  }
+
+  /**
+   * Uploads a payload to the blob stores of the target groups. The upload is ordered by each group,
+   * so that every replica stores the payload before the multicast that refers to it is delivered.
+   *
+   * @param id The ID of the multicast, which is also used by the uploads.
+   * @return A future completed with the digest of the payload once every target group stored it.
+   */
+  private CompletableFuture<String> storeBlob(UUID id, int[] targets, String payload) {
+    var digest = BlobStore.digest(payload);
+
+    var stores =
+        Arrays.stream(targets)
+            .mapToObj(
+                groupID ->
+                    sendDirect(
+                            id,
+                            groupID,
+                            new int[] {groupID},
+                            payload,
+                            Request.Kind.BLOB,
+                            Request.ReplyMode.FULL)
+                        .thenAccept(
+                            response -> {
+                              if (!response.content().equals(digest)) {
+                                throw new IllegalStateException(
+                                    "Group " + groupID + " failed to store the payload");
+                              }
+                            }))
+            .toArray(CompletableFuture[]::new);
+    return CompletableFuture.allOf(stores).thenApply(v -> digest);
+  }
+
+  /**
+   * Sends a copy of a relaxed multicast to each of its targets, and merges their responses into
+   * one, in which each target is the response of a group the multicast was forwarded to. Every
+   * copy carries the full set of targets, so that the logs of each target tell which other groups
+   * delivered the multicast.
+   */
+  private CompletableFuture<Response> sendRelaxed(
+      UUID id, int[] targets, String content, Request.Kind kind) {
+    var futures =
+        Arrays.stream(targets)
+            .mapToObj(
+                groupID ->
+                    sendDirect(id, groupID, targets, content, kind, replyMode)
+                        .exceptionally(
+                            error -> {
+                              var failed = String.format("REQUEST_TO_GROUP_%d_FAILED", groupID);
+                              return new Response(failed, new ArrayList<>());
+                            })
+                        .thenApply(response -> new GroupResponse(groupID, response)))
+            .toList();
+
+    return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+        .thenApply(v -> merge(futures.stream().map(CompletableFuture::join).toList()));
+  }
+
+  /**
+   * Merges the responses of the targets of a relaxed multicast. Compact responses are merged into a
+   * compact response, in which a target that did not answer with one is considered failed.
+   */
+  private Response merge(List<GroupResponse> responses) {
+    if (replyMode != Request.ReplyMode.COMPACT) {
+      return new Response("FORWARDED", new ArrayList<>(responses));
+    }
+
+    var statuses = new ArrayList<GroupResponse>();
+    for (var groupResponse : responses) {
+      var failed =
+          new GroupResponse(
+              groupResponse.groupID(),
+              new Response(CompactResponse.Status.FAILED.name(), new ArrayList<>()));
+      statuses.addAll(
+          CompactResponse.fromResponse(groupResponse.response())
+              .map(compact -> compact.toResponse().responses())
+              .orElse(new ArrayList<>(List.of(failed))));
+    }
+    return new Response(CompactResponse.CONTENT, statuses);
+  }
+
+  /**
+   * Sends a request with the {@code RELAXED} delivery class straight to a group, which delivers it
+   * without routing it through the topology.
+   *
+   * @param groupID The ID of the group the request is sent to, which must be one of its targets.
+   * @param targets The targets of the request.
+   */
+  private CompletableFuture<Response> sendDirect(
+      UUID id,
+      int groupID,
+      int[] targets,
+      String content,
+      Request.Kind kind,
+      Request.ReplyMode replyMode) {
+    var request =
+        new Request(
+            id,
+            targets,
+            content,
+            Request.Source.CLIENT,
+            topology.epoch(),
+            kind,
+            replyMode,
+            session.lowWatermark(),
+            Request.DeliveryClass.RELAXED);
+    var requestBytes = Serializer.toBytes(request);
+    return replyMode == Request.ReplyMode.DIGEST
+        ? sendDigested(groupID, id, requestBytes)
+        : send(groupID, requestBytes, TOMMessageType.ORDERED_REQUEST);
+  }
+
+  /**
+   * Sends a request routed with the latest known topology, retrying it if it is refused due to its
+   * epoch.
+   *
+   * @param targets The target groups, or {@code null} for a reconfiguration, which targets all.
+   */
+  private CompletableFuture<Response> attempt(
+      UUID id, int[] targets, String content, Request.Kind kind, int attempt) {
+    var current = this.topology;
+
+    int groupID;
+    int[] requestTargets;
+    if (kind == Request.Kind.RECONFIGURATION) {
+      // reconfigurations are always ordered by the root, which is group 0
+      groupID = 0;
+      requestTargets =
+          current.topology().getGroupIDs().stream().mapToInt(Integer::intValue).toArray();
+    } else {
+      var optLca = current.topology().findLCA(Arrays.stream(targets).boxed().toList());
+      if (optLca.isEmpty()) {
+        var rootIDs =
+            Arrays.stream(targets)
+                .mapToObj(target -> current.topology().getRootID(target))
+                .flatMap(Optional::stream)
+                .collect(Collectors.toCollection(TreeSet::new));
+        var message =
+            rootIDs.size() > 1
+                ? "Groups " + Arrays.toString(targets) + " span the trees rooted at " + rootIDs
+                : "No common ancestor found for groups " + Arrays.toString(targets);
+        return CompletableFuture.failedFuture(new IllegalArgumentException(message));
+      }
+      groupID = optLca.get();
+      requestTargets = targets;
+    }
+
+    var request =
+        new Request(
+            id,
+            requestTargets,
+            content,
+            Request.Source.CLIENT,
+            current.epoch(),
+            kind,
+            replyMode,
+            session.lowWatermark(),
+            Request.DeliveryClass.ORDERED);
+    var requestBytes = Serializer.toBytes(request);
+    var sent =
+        replyMode == Request.ReplyMode.DIGEST
+            ? sendDigested(groupID, id, requestBytes)
+            : send(groupID, requestBytes, TOMMessageType.ORDERED_REQUEST);
+    return sent.thenCompose(
+            response -> {
+              Supplier<CompletableFuture<Response>> retry =
+                  () -> attempt(id, targets, content, kind, attempt + 1);
+              if (attempt >= MAX_RETRIES) {
+                return CompletableFuture.completedFuture(response);
+              }
+
+              if (response.content().equals(Response.STALE_EPOCH)) {
+                return CompletableFuture.runAsync(this::refreshTopology, executor)
+                    .thenCompose(v -> retry.get());
+              }
+
+              if (response.content().equals(Response.EPOCH_NOT_READY)) {
+                var delay = Math.min(MAX_RETRY_DELAY_MILLIS, 1L << attempt);
+                return retryAfter(delay, retry);
+              }
+
+              if (response.content().equals(Response.BUSY)) {
+                // the jitter keeps clients refused by the same batch from retrying all at once
+                var delay = Math.min(MAX_BUSY_DELAY_MILLIS, BUSY_BASE_DELAY_MILLIS << attempt);
+                delay = ThreadLocalRandom.current().nextLong(delay / 2, delay + 1);
+                return retryAfter(delay, retry);
+              }
+
+              return CompletableFuture.completedFuture(response);
+            });
+  }
+
+  private static CompletableFuture<Response> retryAfter(
+      long delayMillis, Supplier<CompletableFuture<Response>> retry) {
+    var delayed = CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS);
+    return CompletableFuture.runAsync(() -> {}, delayed).thenCompose(v -> retry.get());
+  }
+
+  private CompletableFuture<Response> send(int groupID, byte[] request, TOMMessageType type) {
+    return invoke(groupID, request, type, false).thenApply(MulticastClient::decode);
+  }
+
+  /**
+   * Sends an ordered request with the {@code DIGEST} reply mode. If the quorum of replies holds no
+   * full reply, as the replica designated to send it failed to, the full reply is fetched from
+   * every replica through {@link Query.FetchReply} and checked against the digest of the quorum.
+   */
+  private CompletableFuture<Response> sendDigested(int groupID, UUID id, byte[] request) {
+    return invoke(groupID, request, TOMMessageType.ORDERED_REQUEST, true)
+        .thenCompose(
+            reply -> {
+              if (!ReplyDigest.isDigest(reply)) {
+                return CompletableFuture.completedFuture(decode(reply));
+              }
+
+              var digest = ReplyDigest.of(reply);
+              var query = Serializer.toBytes(new Query.FetchReply(id));
+              return invoke(groupID, query, TOMMessageType.UNORDERED_REQUEST, true)
+                  .thenApply(
+                      fullReply -> {
+                        if (ReplyDigest.isDigest(fullReply) || !digest.matches(fullReply)) {
+                          throw new IllegalStateException(
+                              "Group " + groupID + " holds no reply matching the digest");
+                        }
+                        return decode(fullReply);
+                      });
+            });
+  }
+
+  private static Response decode(byte[] reply) {
+    try {
+      return CompactResponse.decode(reply);
+    } catch (SerializingException e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  /**
+   * Sends a request to a group.
+   *
+   * @param digests Whether replies are matched by their digests, in which case the future is
+   *     completed with a full reply if one is received, and with a digest otherwise.
+   * @return A future completed with the reply of a quorum of the replicas of the group.
+   */
+  private CompletableFuture<byte[]> invoke(
+      int groupID, byte[] request, TOMMessageType type, boolean digests) {
+    var proxy = forGroup(groupID);
+    var future = new CompletableFuture<byte[]>();
+    var listener = new QuorumListener(proxy, future, digests);
+
+    int operationID;
+    try {
+      operationID = proxy.invokeAsynchRequest(request, listener, type);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    return future
+        .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+        .whenComplete((response, error) -> proxy.cleanAsynchRequest(operationID));
+  }
+
+  /**
+   * Fetches the current topology from the root and adopts it if it is newer than the known one.
+   * This method blocks, so it must not run on the threads that deliver replies.
+   *
+   * @throws IllegalStateException If the topology could not be fetched or parsed.
+   */
+  private void refreshTopology() {
+    try {
+      var query = Serializer.toBytes(new Query.FetchTopology());
+      var response = Serializer.fromBytes(forGroup(0).invokeUnordered(query), Response.class);
+      var fetched = VersionedTopology.fromJSON(response.content());
+
+      synchronized (this) {
+        if (fetched.epoch() > topology.epoch()) {
+          topology = fetched;
+        }
+      }
+    } catch (Exception e) {
+      throw new IllegalStateException("Failed to fetch the topology from the root", e);
+    }
+  }
+
+  private AsynchServiceProxy forGroup(int groupID) {
+    return proxies.computeIfAbsent(
+        groupID,
+        id -> {
+          int clientID;
+          synchronized (random) {
+            clientID = random.nextInt(Integer.MAX_VALUE);
+          }
+          return new AsynchServiceProxy(clientID, configFinder.forGroup(id));
+        });
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    proxies.values().forEach(AsynchServiceProxy::close);
+    proxies.clear();
+  }
+}
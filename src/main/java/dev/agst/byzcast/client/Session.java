@@ -0,0 +1,142 @@
+package dev.agst.byzcast.client;
+
+import dev.agst.byzcast.message.SessionID;
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The session of a client, which assigns sequential IDs to its requests and tracks which of them
+ * have completed. Generating an ID only increments a counter, unlike {@link UUID#randomUUID()},
+ * which draws from a shared {@link SecureRandom}.
+ *
+ * <p>The low watermark of the session is sent along with every request, allowing replicas to drop
+ * what they keep about the requests below it. A request that timed out or failed is {@linkplain
+ * #abandon abandoned}, and only retired some time later, once its copies can no longer be in
+ * flight, so that it does not hold back the low watermark for the rest of the session. This class
+ * is thread-safe.
+ */
+public class Session {
+  /**
+   * The maximum number of requests above the low watermark that have completed or are abandoned.
+   * It is only reached if the low watermark is held back by a request that neither completes nor
+   * is abandoned.
+   */
+  static final int MAX_TRACKED = 1 << 16;
+
+  private final long clientID;
+  private final AtomicLong nextSequence = new AtomicLong();
+
+  /** The time after which an abandoned request is retired, in nanoseconds. */
+  private final long retireAfterNanos;
+
+  private final LongSupplier nanoTime;
+
+  /** The lowest sequence number whose request has not completed. */
+  private long lowWatermark = 0;
+
+  /** The sequence numbers above the low watermark whose requests have completed. */
+  private final Set<Long> completed = new HashSet<>();
+
+  /** The instant at which each abandoned request was abandoned, by sequence number. */
+  private final TreeMap<Long, Long> abandoned = new TreeMap<>();
+
+  /**
+   * Creates a session with a random client ID.
+   *
+   * @param retireAfterMillis The time after which an abandoned request is retired.
+   */
+  public Session(long retireAfterMillis) {
+    this(
+        new SecureRandom().nextLong() & SessionID.MAX_CLIENT_ID,
+        retireAfterMillis,
+        System::nanoTime);
+  }
+
+  Session(long clientID, long retireAfterMillis, LongSupplier nanoTime) {
+    this.clientID = clientID;
+    this.retireAfterNanos = TimeUnit.MILLISECONDS.toNanos(retireAfterMillis);
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * Returns the ID of the next request of the session.
+   *
+   * @throws IllegalStateException If too many requests are tracked above the low watermark.
+   */
+  public UUID nextID() {
+    synchronized (this) {
+      retire();
+      if (completed.size() + abandoned.size() >= MAX_TRACKED) {
+        throw new IllegalStateException(
+            String.format(
+                "Too many requests above the low watermark of the session, which is held back by"
+                    + " request %d",
+                lowWatermark));
+      }
+    }
+    return new SessionID(clientID, nextSequence.getAndIncrement()).toUUID();
+  }
+
+  /**
+   * Marks a request of the session as completed. A request that timed out or failed must be
+   * {@linkplain #abandon abandoned} instead, as copies of it may still be in flight, and replicas
+   * refuse the copies of requests below the low watermark that they have not answered yet.
+   *
+   * @param id An ID returned by {@link #nextID()}.
+   */
+  public synchronized void complete(UUID id) {
+    sequenceOf(id).ifPresent(completed::add);
+    retire();
+  }
+
+  /**
+   * Marks a request of the session as timed out or failed. The request is retired once the retire
+   * time of the session elapses, after which its late copies are refused by the replicas.
+   *
+   * @param id An ID returned by {@link #nextID()}.
+   */
+  public synchronized void abandon(UUID id) {
+    sequenceOf(id).ifPresent(sequence -> abandoned.put(sequence, nanoTime.getAsLong()));
+    retire();
+  }
+
+  /**
+   * Returns the sequence number below which every request of the session has completed or was
+   * retired.
+   */
+  public synchronized long lowWatermark() {
+    retire();
+    return lowWatermark;
+  }
+
+  private Optional<Long> sequenceOf(UUID id) {
+    return SessionID.of(id)
+        .filter(sessionID -> sessionID.clientID() == clientID)
+        .map(SessionID::sequence)
+        .filter(sequence -> sequence >= lowWatermark);
+  }
+
+  /** Retires the abandoned requests whose retire time has elapsed and advances the watermark. */
+  private void retire() {
+    var now = nanoTime.getAsLong();
+    var iterator = abandoned.entrySet().iterator();
+    while (iterator.hasNext()) {
+      var entry = iterator.next();
+      if (now - entry.getValue() >= retireAfterNanos) {
+        completed.add(entry.getKey());
+        iterator.remove();
+      }
+    }
+
+    while (completed.remove(lowWatermark)) {
+      lowWatermark++;
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package dev.agst.byzcast.cluster;
+
+import bftsmart.tom.ServiceProxy;
+import dev.agst.byzcast.Logger;
+import dev.agst.byzcast.Logger.Attr;
+import dev.agst.byzcast.Serializer;
+import dev.agst.byzcast.app.Application;
+import dev.agst.byzcast.group.GroupConfigFinder;
+import dev.agst.byzcast.message.Query;
+import dev.agst.byzcast.replica.ReplicaInfo;
+import dev.agst.byzcast.replica.ReplicaOptions;
+import dev.agst.byzcast.replica.ReplicaServer;
+import dev.agst.byzcast.topology.Topology;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Runs every replica of every group of a topology inside a single process, communicating over
+ * loopback. Compared to running one process per replica, this saves the memory of one heap and the
+ * warm-up of one JIT per replica, which matters when benchmarking on a single machine.
+ *
+ * <p>The launcher is used in three steps: {@link #writeConfigs()} generates the configuration of
+ * every group, {@link #start()} starts the replicas and {@link #awaitReady(Duration)} blocks until
+ * every group is able to answer requests. {@link #close()} stops every replica.
+ */
+public class ClusterLauncher implements AutoCloseable {
+  private static final String[] OVERRIDDEN_KEYS = {
+    "system.servers.num", "system.servers.f", "system.initial.view"
+  };
+
+  private final Logger logger = new Logger().with(new Attr("component", "cluster"));
+
+  private final ClusterSpec spec;
+  private final Topology topology;
+  private final GroupConfigFinder configFinder;
+  private final Application application;
+  private final ReplicaOptions options;
+
+  private final List<ReplicaServer> servers = new ArrayList<>();
+
+  /**
+   * Creates a launcher for the given cluster.
+   *
+   * @param spec The shape of the groups.
+   * @param topology The topology of the system, which defines which groups exist.
+   * @param configFinder The finder whose directories the group configurations are written to.
+   * @param application The application run by every replica.
+   * @param options The optional settings of every replica.
+   */
+  public ClusterLauncher(
+      ClusterSpec spec,
+      Topology topology,
+      GroupConfigFinder configFinder,
+      Application application,
+      ReplicaOptions options) {
+    this.spec = spec;
+    this.topology = topology;
+    this.configFinder = configFinder;
+    this.application = application;
+    this.options = options;
+  }
+
+  /**
+   * Writes the {@code hosts.config} and {@code system.config} of every group, replacing existing
+   * ones. The system configuration is copied from the spec's template, with the group size, fault
+   * threshold and initial view overridden to match the spec.
+   */
+  public void writeConfigs() throws IOException {
+    var template = Files.readAllLines(Path.of(spec.systemConfig()));
+
+    int port = spec.basePort();
+    for (var groupID : sortedGroupIDs()) {
+      var groupDir = Path.of(configFinder.forGroup(groupID));
+      Files.createDirectories(groupDir);
+
+      var hosts = new ArrayList<String>();
+      for (int serverID = 0; serverID < spec.sizeOf(groupID); serverID++) {
+        hosts.add(String.format("%d %s %d", serverID, spec.host(), port));
+        port += spec.portStep();
+      }
+      Files.write(groupDir.resolve("hosts.config"), hosts);
+      Files.write(groupDir.resolve("system.config"), systemConfig(template, groupID));
+
+      // BFT-SMaRt keeps the last view in this directory and prefers it over hosts.config
+      Files.deleteIfExists(groupDir.resolve("currentView"));
+    }
+  }
+
+  private List<String> systemConfig(List<String> template, int groupID) {
+    var view =
+        IntStream.range(0, spec.sizeOf(groupID))
+            .mapToObj(Integer::toString)
+            .collect(Collectors.joining(","));
+
+    var lines = new ArrayList<String>();
+    for (var line : template) {
+      var trimmed = line.strip();
+      var overridden = false;
+      for (var key : OVERRIDDEN_KEYS) {
+        overridden |= trimmed.startsWith(key + " ") || trimmed.startsWith(key + "=");
+      }
+      if (!overridden) {
+        lines.add(line);
+      }
+    }
+
+    lines.add("system.servers.num = " + spec.sizeOf(groupID));
+    lines.add("system.servers.f = " + spec.faultsOf(groupID));
+    lines.add("system.initial.view = " + view);
+    return lines;
+  }
+
+  /** Starts every replica of every group. Groups are started in order of ID. */
+  public void start() {
+    for (var groupID : sortedGroupIDs()) {
+      for (int serverID = 0; serverID < spec.sizeOf(groupID); serverID++) {
+        var info = new ReplicaInfo(groupID, serverID);
+        var handler = application.create(groupID, topology.getGroupIDs());
+        servers.add(ReplicaServer.start(info, topology, configFinder, handler, options));
+      }
+      logger.info("Group started", new Attr("GID", groupID));
+    }
+  }
+
+  /**
+   * Blocks until every group answers an unordered probe, which requires a quorum of its replicas
+   * to be connected to each other and to accept clients, and then until every replica is connected
+   * to its next groups.
+   *
+   * @param timeout The maximum time to wait for the whole cluster.
+   * @throws TimeoutException If some group is still unreachable once the timeout expires.
+   */
+  public void awaitReady(Duration timeout) throws TimeoutException, InterruptedException {
+    var deadline = System.nanoTime() + timeout.toNanos();
+    var random = new Random();
+
+    for (var groupID : sortedGroupIDs()) {
+      var clientID = random.nextInt(Integer.MAX_VALUE);
+      var proxy = new ServiceProxy(clientID, configFinder.forGroup(groupID));
+      proxy.setInvokeTimeout(1);
+      try {
+        while (!probe(proxy)) {
+          if (System.nanoTime() > deadline) {
+            throw new TimeoutException("Group " + groupID + " did not become ready in time");
+          }
+          Thread.sleep(100);
+        }
+      } finally {
+        proxy.close();
+      }
+      logger.info("Group ready", new Attr("GID", groupID));
+    }
+
+    for (var server : servers) {
+      server.awaitReady(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+    }
+  }
+
+  private boolean probe(ServiceProxy proxy) {
+    try {
+      var query = Serializer.toBytes(new Query.FetchTopology());
+      return proxy.invokeUnordered(query) != null;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  private List<Integer> sortedGroupIDs() {
+    return topology.getGroupIDs().stream().sorted().toList();
+  }
+
+  /** Stops every started replica. */
+  @Override
+  public void close() {
+    for (var server : servers) {
+      try {
+        server.close();
+      } catch (RuntimeException e) {
+        logger.error(
+            "Failed to stop replica",
+            e,
+            new Attr("GID", server.info().groupID()),
+            new Attr("SID", server.info().serverID()));
+      }
+    }
+    servers.clear();
+  }
+}
@@ -0,0 +1,80 @@
+package dev.agst.byzcast.cluster;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Describes a local cluster, in which every replica of every group runs on the same host. The
+ * groups themselves come from the topology; the spec only describes their shape and where they
+ * listen. Omitted fields take the same defaults as {@code scripts/local_exec.py}.
+ *
+ * <p>Replicas are assigned ports in order of group ID and then of server ID, starting at {@code
+ * basePort} and increasing by {@code portStep}. BFT-SMaRt also uses the port right after the one
+ * assigned to each replica, so the step must be at least 2.
+ *
+ * @param groupSize The number of replicas in each group.
+ * @param faults The number of faulty replicas tolerated by each group. Unlike the other fields,
+ *     an explicit zero is kept, so that groups may tolerate no faults.
+ * @param host The address every replica listens on.
+ * @param basePort The port of the first replica.
+ * @param portStep The distance between the ports of consecutive replicas.
+ * @param systemConfig The path of the {@code system.config} used as a template for every group.
+ * @param groupSizes The number of replicas of specific groups, by group ID, overriding {@code
+ *     groupSize}. Such groups tolerate as many faults as their size allows.
+ */
+public record ClusterSpec(
+    int groupSize,
+    Integer faults,
+    String host,
+    int basePort,
+    int portStep,
+    String systemConfig,
+    Map<Integer, Integer> groupSizes) {
+
+  public ClusterSpec {
+    groupSize = groupSize == 0 ? 4 : groupSize;
+    faults = faults == null ? (groupSize - 1) / 3 : faults;
+    host = host == null ? "127.0.0.1" : host;
+    basePort = basePort == 0 ? 40000 : basePort;
+    portStep = portStep == 0 ? 10 : portStep;
+    systemConfig =
+        systemConfig == null ? "infra/ansutils/example_system_config.txt" : systemConfig;
+    groupSizes = groupSizes == null ? Map.of() : Map.copyOf(groupSizes);
+
+    if (faults < 0 || groupSize <= 3 * faults) {
+      throw new IllegalArgumentException(
+          String.format("A group of %d replicas cannot tolerate %d faults", groupSize, faults));
+    }
+    for (var entry : groupSizes.entrySet()) {
+      if (entry.getValue() < 1) {
+        throw new IllegalArgumentException(
+            String.format("Group %d must have at least one replica", entry.getKey()));
+      }
+    }
+    if (portStep < 2) {
+      throw new IllegalArgumentException("The port step must be at least 2");
+    }
+  }
+
+  /** Returns the number of replicas of a group. */
+  public int sizeOf(int groupID) {
+    return groupSizes.getOrDefault(groupID, groupSize);
+  }
+
+  /** Returns the number of faulty replicas tolerated by a group. */
+  public int faultsOf(int groupID) {
+    return groupSizes.containsKey(groupID) ? (sizeOf(groupID) - 1) / 3 : faults;
+  }
+
+  /**
+   * Reads a spec from a JSON file.
+   *
+   * @param path The path of the spec file.
+   */
+  public static ClusterSpec load(Path path) throws IOException {
+    return new Gson().fromJson(Files.readString(path), ClusterSpec.class);
+  }
+}
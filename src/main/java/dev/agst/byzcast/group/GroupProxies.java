@@ -1,19 +1,66 @@
 package dev.agst.byzcast.group;
 
+import bftsmart.tom.AsynchServiceProxy;
 import bftsmart.tom.ServiceProxy;
-import java.util.HashMap;
+import bftsmart.tom.core.messages.TOMMessage;
+import bftsmart.tom.core.messages.TOMMessageType;
+import dev.agst.byzcast.Serializer;
+import dev.agst.byzcast.jfr.ProxyCreationEvent;
+import dev.agst.byzcast.message.Query;
+import dev.agst.byzcast.message.ReplyDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Map;
-import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Provides a mechanism for managing and accessing {@link ServiceProxy} instances for different
- * groups.
+ * Provides a mechanism for managing and accessing {@link AsynchServiceProxy} instances for
+ * different groups.
+ *
+ * <p>Proxies are normally created lazily, on the first request to a group. Groups passed to {@link
+ * #warmUp(Collection)} are instead connected in the background: a proxy is created and probed with
+ * an unordered query until the group answers, and only then replaces the proxy returned by {@link
+ * #forGroup(int)}. Whenever a request through the proxy of such a group fails, the same procedure
+ * runs again, so that a proxy left without connections after the group restarts is replaced by a
+ * fresh one. Replaced proxies are closed once the requests still using them have timed out.
+ *
+ * <p>Ordered requests are sent asynchronously, so that many of them may be in flight through the
+ * proxy of a group at once, and their replies are matched by their {@link ReplyDigest}s, so that
+ * requests with the {@code DIGEST} reply mode reach a quorum with a single full reply; see {@link
+ * #invokeOrdered(int, UUID, byte[])}.
+ *
+ * <p>This class is thread-safe.
  */
-public class GroupProxies {
+public class GroupProxies implements AutoCloseable {
+  /** The invoke timeout, in seconds, of the probes sent while connecting to a group. */
+  private static final int PROBE_TIMEOUT_SECONDS = 1;
+
+  /** The delay between two attempts to connect to a group. */
+  private static final long RECONNECT_DELAY_MILLIS = 500;
+
   private final GroupConfigFinder configFinder;
-  private final Map<Integer, ServiceProxy> proxies = new HashMap<>();
+  private final Map<Integer, AsynchServiceProxy> proxies = new ConcurrentHashMap<>();
+
+  /** The groups connected in the background, and which of them currently answer requests. */
+  private final Set<Integer> warmedUp = ConcurrentHashMap.newKeySet();
+  private final Set<Integer> ready = ConcurrentHashMap.newKeySet();
+  private final Set<Integer> connecting = ConcurrentHashMap.newKeySet();
+
+  private final ScheduledExecutorService scheduler =
+      Executors.newScheduledThreadPool(1, Thread.ofVirtual().factory());
 
-  private final Random random = new Random();
+  /** Fetches the full replies of requests whose quorum only holds digests. */
+  private final ExecutorService fetcher = Executors.newVirtualThreadPerTaskExecutor();
 
   /**
    * Constructs a {@code GroupProxies} instance with the specified {@link GroupConfigFinder}.
@@ -26,23 +73,225 @@ public class GroupProxies {
   }
 
   /**
-   * Retrieves or creates a {@link ServiceProxy} for the specified group ID.
+   * Retrieves or creates an {@link AsynchServiceProxy} for the specified group ID.
    *
-   * <p>If a {@link ServiceProxy} for the given group ID already exists, it is returned. Otherwise,
-   * a new {@link ServiceProxy} instance is created using a randomly generated client ID and the
-   * group-specific configuration directory path obtained from the {@link GroupConfigFinder}. The
-   * newly created {@link ServiceProxy} is then stored and returned.
+   * <p>If a proxy for the given group ID already exists, it is returned. Otherwise, a new proxy is
+   * created using a randomly generated client ID and the group-specific configuration directory
+   * path obtained from the {@link GroupConfigFinder}. The newly created proxy is then stored and
+   * returned.
    *
-   * @param groupID The ID of the group for which to retrieve or create a {@link ServiceProxy}.
-   * @return The {@link ServiceProxy} associated with the specified group ID.
-   */
-  public ServiceProxy forGroup(int groupID) {
-    return this.proxies.computeIfAbsent(
-        groupID,
-        (id) -> {
-          var clientID = this.random.nextInt(Integer.MAX_VALUE);
-          var config = this.configFinder.forGroup(groupID);
-          return new ServiceProxy(clientID, config);
-        });
+   * @param groupID The ID of the group for which to retrieve or create a proxy.
+   * @return The proxy associated with the specified group ID.
+   */
+  public AsynchServiceProxy forGroup(int groupID) {
+    return this.proxies.computeIfAbsent(groupID, this::create);
+  }
+
+  /**
+   * Starts connecting to the given groups in the background. This method does not block; use
+   * {@link #awaitReady(Duration)} to wait for the connections.
+   *
+   * @param groupIDs The IDs of the groups to connect to.
+   */
+  public void warmUp(Collection<Integer> groupIDs) {
+    for (var groupID : groupIDs) {
+      if (this.warmedUp.add(groupID)) {
+        reconnect(groupID);
+      }
+    }
+  }
+
+  /**
+   * Reports that a request sent through the given proxy failed. If the proxy is the current proxy
+   * of a group passed to {@link #warmUp(Collection)}, the group is reconnected in the background.
+   *
+   * @param groupID The ID of the group the request was sent to.
+   * @param proxy The proxy the request was sent through.
+   */
+  public void reportFailure(int groupID, ServiceProxy proxy) {
+    if (this.warmedUp.contains(groupID) && this.proxies.get(groupID) == proxy) {
+      this.ready.remove(groupID);
+      reconnect(groupID);
+    }
+  }
+
+  /** Whether every group passed to {@link #warmUp(Collection)} currently answers requests. */
+  public boolean isReady() {
+    return this.ready.containsAll(this.warmedUp);
+  }
+
+  /**
+   * Blocks until every group passed to {@link #warmUp(Collection)} answers requests.
+   *
+   * @param timeout The maximum time to wait.
+   * @throws TimeoutException If some group is still unreachable once the timeout expires.
+   */
+  public void awaitReady(Duration timeout) throws TimeoutException, InterruptedException {
+    var deadline = System.nanoTime() + timeout.toNanos();
+    while (!isReady()) {
+      if (System.nanoTime() > deadline) {
+        var pending = this.warmedUp.stream().filter(id -> !this.ready.contains(id)).toList();
+        throw new TimeoutException("Groups " + pending + " did not become ready in time");
+      }
+      Thread.sleep(100);
+    }
+  }
+
+  private void reconnect(int groupID) {
+    if (this.connecting.add(groupID)) {
+      this.scheduler.execute(() -> connect(groupID));
+    }
+  }
+
+  /**
+   * Makes a single attempt to connect to a group, scheduling another one if the proxy cannot be
+   * created or the group does not answer the probe. The group stays in {@link #connecting} until an
+   * attempt succeeds, so it is never connected twice at once nor left without a pending attempt.
+   */
+  private void connect(int groupID) {
+    AsynchServiceProxy proxy;
+    try {
+      proxy = create(groupID);
+    } catch (RuntimeException e) {
+      scheduleConnect(groupID);
+      return;
+    }
+
+    var invokeTimeout = proxy.getInvokeTimeout();
+    proxy.setInvokeTimeout(PROBE_TIMEOUT_SECONDS);
+    if (!probe(proxy)) {
+      proxy.close();
+      scheduleConnect(groupID);
+      return;
+    }
+    proxy.setInvokeTimeout(invokeTimeout);
+
+    var replaced = this.proxies.put(groupID, proxy);
+    if (replaced != null) {
+      this.scheduler.schedule(replaced::close, replaced.getInvokeTimeout(), TimeUnit.SECONDS);
+    }
+    this.ready.add(groupID);
+    this.connecting.remove(groupID);
+  }
+
+  private void scheduleConnect(int groupID) {
+    this.scheduler.schedule(() -> connect(groupID), RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  private static boolean probe(ServiceProxy proxy) {
+    try {
+      var query = Serializer.toBytes(new Query.FetchTopology());
+      return proxy.invokeUnordered(query) != null;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Sends an ordered request to a group through its current proxy and returns a future completed
+   * with its full reply. The request is sent before this method returns, so requests sent by the
+   * same thread reach the group in the order of the calls, while their replies are awaited
+   * concurrently. If the quorum of replies holds no full reply, as the replica designated to send
+   * it failed to, the full reply is fetched from every replica through {@link Query.FetchReply}
+   * and checked against the digest of the quorum. A failed request is reported through {@link
+   * #reportFailure(int, ServiceProxy)}.
+   *
+   * @param groupID The ID of the group.
+   * @param requestID The ID of the request.
+   * @param request The serialized request.
+   * @return A future completed with the full reply of the group, or completed exceptionally if the
+   *     request fails or times out, including when no replica holds a full reply matching the
+   *     digest of the quorum.
+   */
+  public CompletableFuture<byte[]> invokeOrdered(int groupID, UUID requestID, byte[] request) {
+    var proxy = forGroup(groupID);
+    var future = new CompletableFuture<byte[]>();
+    var listener = new QuorumListener(proxy, future, true);
+
+    int operationID;
+    try {
+      operationID = proxy.invokeAsynchRequest(request, listener, TOMMessageType.ORDERED_REQUEST);
+    } catch (RuntimeException e) {
+      reportFailure(groupID, proxy);
+      return CompletableFuture.failedFuture(e);
+    }
+
+    return future
+        .orTimeout(proxy.getInvokeTimeout(), TimeUnit.SECONDS)
+        .whenComplete((reply, error) -> proxy.cleanAsynchRequest(operationID))
+        .thenCompose(
+            reply ->
+                ReplyDigest.isDigest(reply)
+                    ? CompletableFuture.supplyAsync(
+                        () -> fetchReply(proxy, requestID, ReplyDigest.of(reply)), this.fetcher)
+                    : CompletableFuture.completedFuture(reply))
+        .whenComplete(
+            (reply, error) -> {
+              if (error != null) {
+                reportFailure(groupID, proxy);
+              }
+            });
+  }
+
+  private static byte[] fetchReply(ServiceProxy proxy, UUID requestID, ReplyDigest digest) {
+    var fullReply = proxy.invokeUnordered(Serializer.toBytes(new Query.FetchReply(requestID)));
+    if (fullReply == null || ReplyDigest.isDigest(fullReply) || !digest.matches(fullReply)) {
+      throw new IllegalStateException("No replica holds the reply matching the digest");
+    }
+    return fullReply;
+  }
+
+  /**
+   * Orders replies by their digests, so that a full reply and its digests are equal. Two full
+   * replies are compared directly, which spares hashing them for every other reply mode. Only used
+   * by the synchronous requests of the proxies; ordered requests are matched by a {@link
+   * QuorumListener}.
+   */
+  private static int compareReplies(byte[] a, byte[] b) {
+    if (!ReplyDigest.isDigest(a) && !ReplyDigest.isDigest(b)) {
+      return Arrays.compare(a, b);
+    }
+    return Arrays.compare(ReplyDigest.of(a).hash(), ReplyDigest.of(b).hash());
+  }
+
+  /**
+   * Picks the reply returned by a proxy once a quorum of replies matches the last one received,
+   * preferring a full reply over a digest.
+   */
+  private static TOMMessage extractReply(TOMMessage[] replies, int sameContent, int lastReceived) {
+    var digest = ReplyDigest.of(replies[lastReceived].getContent());
+    return Arrays.stream(replies)
+        .filter(reply -> reply != null && !ReplyDigest.isDigest(reply.getContent()))
+        .filter(reply -> digest.matches(reply.getContent()))
+        .findFirst()
+        .orElse(replies[lastReceived]);
+  }
+
+  private AsynchServiceProxy create(int groupID) {
+    var event = new ProxyCreationEvent();
+    event.begin();
+
+    var clientID = ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE);
+    var config = this.configFinder.forGroup(groupID);
+    var proxy =
+        new AsynchServiceProxy(
+            clientID, config, GroupProxies::compareReplies, GroupProxies::extractReply);
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.groupID = groupID;
+      event.clientID = clientID;
+      event.commit();
+    }
+    return proxy;
+  }
+
+  /** Stops connecting in the background and closes every proxy. */
+  @Override
+  public void close() {
+    this.scheduler.shutdownNow();
+    this.fetcher.shutdownNow();
+    this.proxies.values().forEach(ServiceProxy::close);
+    this.proxies.clear();
   }
 }
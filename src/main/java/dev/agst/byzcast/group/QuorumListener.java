@@ -0,0 +1,122 @@
+package dev.agst.byzcast.group;
+
+import bftsmart.communication.client.ReplyListener;
+import bftsmart.tom.AsynchServiceProxy;
+import bftsmart.tom.RequestContext;
+import bftsmart.tom.core.messages.TOMMessage;
+import dev.agst.byzcast.message.ReplyDigest;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the replies of a single request and completes its future once a quorum of identical
+ * replies from distinct replicas is reached. Only the first reply of each replica is counted, so
+ * that a single replica cannot form a quorum by replying repeatedly.
+ *
+ * <p>When matching replies by their digests, the future is only completed with a digest if no
+ * full reply with the digest of the quorum arrives from the remaining replicas, or within {@link
+ * #FULL_REPLY_GRACE_MILLIS} of the quorum.
+ */
+public class QuorumListener implements ReplyListener {
+  /** The time a quorum of digests waits for the full reply once reached. */
+  private static final long FULL_REPLY_GRACE_MILLIS = 50;
+
+  private final AsynchServiceProxy proxy;
+  private final CompletableFuture<byte[]> future;
+  private final boolean digests;
+
+  /** The reply, or the digest of the reply, of each replica, by its position in the view. */
+  private final Map<Integer, ByteBuffer> replies = new HashMap<>();
+
+  private final Map<ByteBuffer, Integer> replyCounts = new HashMap<>();
+
+  /** The first full reply received for each digest, if replies are matched by their digests. */
+  private final Map<ByteBuffer, byte[]> fullReplies = new HashMap<>();
+
+  private ByteBuffer quorumDigest;
+
+  /** The encoded {@link ReplyDigest} of the replies of the quorum, once it is reached. */
+  private byte[] quorumDigestBytes;
+
+  /**
+   * @param proxy The proxy the request is sent through.
+   * @param future The future completed with the reply of the quorum.
+   * @param digests Whether replies are matched by their digests.
+   */
+  public QuorumListener(
+      AsynchServiceProxy proxy, CompletableFuture<byte[]> future, boolean digests) {
+    this.proxy = proxy;
+    this.future = future;
+    this.digests = digests;
+  }
+
+  @Override
+  public synchronized void reset() {
+    replies.clear();
+    replyCounts.clear();
+    fullReplies.clear();
+    quorumDigest = null;
+    quorumDigestBytes = null;
+  }
+
+  @Override
+  public synchronized void replyReceived(RequestContext context, TOMMessage reply) {
+    if (future.isDone()) {
+      return;
+    }
+
+    var position = proxy.getViewManager().getCurrentViewPos(reply.getSender());
+    if (position < 0 || replies.containsKey(position)) {
+      return;
+    }
+
+    var content = reply.getContent();
+    if (!digests) {
+      var key = ByteBuffer.wrap(content);
+      replies.put(position, key);
+      if (replyCounts.merge(key, 1, Integer::sum) >= quorum()) {
+        future.complete(content);
+      }
+      return;
+    }
+
+    var key = ByteBuffer.wrap(ReplyDigest.of(content).hash());
+    if (!ReplyDigest.isDigest(content)) {
+      fullReplies.putIfAbsent(key, content);
+    }
+    replies.put(position, key);
+    if (quorumDigest == null && replyCounts.merge(key, 1, Integer::sum) >= quorum()) {
+      quorumDigest = key;
+      quorumDigestBytes = ReplyDigest.of(content).toBytes();
+      var delayed =
+          CompletableFuture.delayedExecutor(FULL_REPLY_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+      var digest = quorumDigestBytes;
+      delayed.execute(() -> completeWithDigest(key, digest));
+    }
+
+    if (quorumDigest == null) {
+      return;
+    }
+    if (fullReplies.containsKey(quorumDigest)) {
+      future.complete(fullReplies.get(quorumDigest));
+    } else if (replies.size() >= proxy.getViewManager().getCurrentViewN()) {
+      // every replica has answered, so the full reply matching the quorum will never arrive
+      future.complete(quorumDigestBytes);
+    }
+  }
+
+  /** Completes the future with a digest, unless the replies were reset since its quorum. */
+  private synchronized void completeWithDigest(ByteBuffer key, byte[] digest) {
+    if (key.equals(quorumDigest)) {
+      future.complete(digest);
+    }
+  }
+
+  private int quorum() {
+    var view = proxy.getViewManager();
+    return (view.getCurrentViewN() + view.getCurrentViewF()) / 2 + 1;
+  }
+}
@@ -0,0 +1,28 @@
+package dev.agst.byzcast.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted once per batch handed to {@code ReplicaNode.appExecuteBatch}. Its duration covers the
+ * whole batch, including any forwarding to downstream groups that happens synchronously within it,
+ * which is not the case of the forward lane when priority lanes are enabled.
+ */
+@Name("dev.agst.byzcast.BatchExecution")
+@Label("Batch Execution")
+@Description("Execution of a batch of ordered commands by a replica")
+@Category({"ByzCast", "Replica"})
+@StackTrace(false)
+public class BatchExecutionEvent extends jdk.jfr.Event {
+  @Label("Group ID")
+  public int groupID;
+
+  @Label("Server ID")
+  public int serverID;
+
+  @Label("Batch Size")
+  public int batchSize;
+}
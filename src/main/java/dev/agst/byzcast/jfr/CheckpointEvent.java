@@ -0,0 +1,29 @@
+package dev.agst.byzcast.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Emitted when a replica writes a checkpoint of its state to its local checkpoint files. */
+@Name("dev.agst.byzcast.Checkpoint")
+@Label("Checkpoint")
+@Description("Write of a durable replica state checkpoint")
+@Category({"ByzCast", "Replica"})
+@StackTrace(false)
+public class CheckpointEvent extends jdk.jfr.Event {
+  @Label("Group ID")
+  public int groupID;
+
+  @Label("Server ID")
+  public int serverID;
+
+  @Label("Consensus ID")
+  public int consensusID;
+
+  @Label("Checkpoint Size")
+  @DataAmount
+  public int size;
+}
@@ -0,0 +1,30 @@
+package dev.agst.byzcast.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for every request forwarded to a downstream group. The event starts when the request is
+ * sent and ends once the downstream group has replied (or the invocation has failed).
+ */
+@Name("dev.agst.byzcast.Forward")
+@Label("Forward")
+@Description("Round-trip of a request forwarded to a downstream group")
+@Category({"ByzCast", "Replica"})
+@StackTrace(false)
+public class ForwardEvent extends jdk.jfr.Event {
+  @Label("Request ID")
+  public String requestID;
+
+  @Label("Group ID")
+  public int groupID;
+
+  @Label("Target Group ID")
+  public int targetGroupID;
+
+  @Label("Status")
+  public String status;
+}
@@ -0,0 +1,32 @@
+package dev.agst.byzcast.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted by replicas with priority lanes when the replies of a lane are ready. The {@code LOCAL}
+ * lane emits one event per batch, covering its execution up to the moment its replies are returned
+ * to BFT-SMaRt. The {@code FORWARD} lane emits one event per forwarded request, covering the time
+ * its reply waits for the forwards of the request once the batch has been delivered.
+ */
+@Name("dev.agst.byzcast.LaneReply")
+@Label("Lane Reply")
+@Description("Replies of a scheduling lane of a replica became ready")
+@Category({"ByzCast", "Replica"})
+@StackTrace(false)
+public class LaneReplyEvent extends jdk.jfr.Event {
+  @Label("Group ID")
+  public int groupID;
+
+  @Label("Server ID")
+  public int serverID;
+
+  @Label("Lane")
+  public String lane;
+
+  @Label("Replies")
+  public int replies;
+}
@@ -0,0 +1,24 @@
+package dev.agst.byzcast.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted when a {@code ServiceProxy} is created for a group. Its duration covers the connection
+ * setup with every replica of that group.
+ */
+@Name("dev.agst.byzcast.ProxyCreation")
+@Label("Proxy Creation")
+@Description("Creation of a service proxy towards a group")
+@Category({"ByzCast", "Proxy"})
+@StackTrace(false)
+public class ProxyCreationEvent extends jdk.jfr.Event {
+  @Label("Group ID")
+  public int groupID;
+
+  @Label("Client ID")
+  public int clientID;
+}
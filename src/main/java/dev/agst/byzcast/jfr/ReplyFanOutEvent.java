@@ -0,0 +1,31 @@
+package dev.agst.byzcast.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted when a completed request is replied to every upstream replica that was waiting for it.
+ */
+@Name("dev.agst.byzcast.ReplyFanOut")
+@Label("Reply Fan-Out")
+@Description("A completed reply was sent to all waiting senders")
+@Category({"ByzCast", "Replier"})
+@StackTrace(false)
+public class ReplyFanOutEvent extends jdk.jfr.Event {
+  @Label("Request ID")
+  public String requestID;
+
+  @Label("Group ID")
+  public int groupID;
+
+  @Label("Receivers")
+  public int receivers;
+
+  @Label("Reply Size")
+  @DataAmount
+  public int replySize;
+}
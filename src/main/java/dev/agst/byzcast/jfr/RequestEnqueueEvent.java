@@ -0,0 +1,24 @@
+package dev.agst.byzcast.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted whenever a copy of a request forwarded by an upstream replica is counted towards its
+ * receive threshold.
+ */
+@Name("dev.agst.byzcast.RequestEnqueue")
+@Label("Request Enqueue")
+@Description("A forwarded request copy was counted towards the receive threshold")
+@Category({"ByzCast", "Replica"})
+@StackTrace(false)
+public class RequestEnqueueEvent extends jdk.jfr.Event {
+  @Label("Request ID")
+  public String requestID;
+
+  @Label("Group ID")
+  public int groupID;
+}
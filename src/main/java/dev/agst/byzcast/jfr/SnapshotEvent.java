@@ -0,0 +1,26 @@
+package dev.agst.byzcast.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Emitted when a replica serializes its state for BFT-SMaRt's checkpoints and state transfer. */
+@Name("dev.agst.byzcast.Snapshot")
+@Label("Snapshot")
+@Description("Creation of a replica state snapshot")
+@Category({"ByzCast", "Replica"})
+@StackTrace(false)
+public class SnapshotEvent extends jdk.jfr.Event {
+  @Label("Group ID")
+  public int groupID;
+
+  @Label("Server ID")
+  public int serverID;
+
+  @Label("Snapshot Size")
+  @DataAmount
+  public int size;
+}
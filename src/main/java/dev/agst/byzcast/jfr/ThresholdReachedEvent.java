@@ -0,0 +1,33 @@
+package dev.agst.byzcast.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted when a forwarded request reaches its receive threshold and becomes ready to be handled.
+ * The wait time is measured from the first counted copy of the request, and is only tracked while
+ * this event is enabled.
+ */
+@Name("dev.agst.byzcast.ThresholdReached")
+@Label("Threshold Reached")
+@Description("A forwarded request reached the minimum receive count")
+@Category({"ByzCast", "Replica"})
+@StackTrace(false)
+public class ThresholdReachedEvent extends jdk.jfr.Event {
+  @Label("Request ID")
+  public String requestID;
+
+  @Label("Group ID")
+  public int groupID;
+
+  @Label("Threshold")
+  public int threshold;
+
+  @Label("Wait Time")
+  @Timespan(Timespan.NANOSECONDS)
+  public long waitTime;
+}
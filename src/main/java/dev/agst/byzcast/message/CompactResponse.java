@@ -0,0 +1,136 @@
+package dev.agst.byzcast.message;
+
+import dev.agst.byzcast.Serializer;
+import dev.agst.byzcast.SerializingException;
+import dev.agst.byzcast.message.Response.GroupResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The compact form of the response to a request with the {@code COMPACT} reply mode. Instead of the
+ * tree of {@link Response}s, it holds a single status code per target group, indexed by group ID,
+ * and is encoded as a plain byte array prefixed by {@link #MAGIC} rather than through Java
+ * serialization. Its size thus only depends on the highest group ID.
+ *
+ * <p>Groups only produce compact responses for requests that they handled. Refusals, such as those
+ * caused by a stale epoch, are always sent as a regular {@link Response}.
+ *
+ * @param statuses The code of the {@link Status} of each group, indexed by group ID.
+ */
+public record CompactResponse(byte[] statuses) {
+  /** The first byte of an encoded compact response, which no Java serialization stream uses. */
+  public static final byte MAGIC = 0x42;
+
+  /** The content of a {@link Response} built from a compact response. */
+  public static final String CONTENT = "COMPACT";
+
+  /** The outcome of a multicast at one of its target groups. */
+  public static enum Status {
+    /** The group is not a target of the request. */
+    NONE,
+    /** The group delivered the request. */
+    DELIVERED,
+    /** The request could not be forwarded to the group. */
+    FAILED,
+    /** The topology has no path to the group. */
+    NO_PATH;
+
+    byte code() {
+      return (byte) ordinal();
+    }
+
+    static Status fromCode(byte code) {
+      var values = values();
+      return code >= 0 && code < values.length ? values[code] : NONE;
+    }
+  }
+
+  /**
+   * Summarizes the response of a group into the status of each target of the request it handled.
+   * The group itself delivered the request if it is a target, and the remaining targets are
+   * considered failed unless the compact response of the next group on their path says otherwise.
+   *
+   * @param groupID The ID of the group that handled the request.
+   * @param targets The targets of the request as received by the group.
+   * @param response The response of the group, with the responses of the next groups decoded by
+   *     {@link #decode(byte[])}.
+   */
+  public static CompactResponse summarize(int groupID, int[] targets, Response response) {
+    var statuses = new byte[Arrays.stream(targets).max().orElse(-1) + 1];
+    var fallback = response.content().equals("NO_PATH") ? Status.NO_PATH : Status.FAILED;
+    for (var target : targets) {
+      statuses[target] = target == groupID ? Status.DELIVERED.code() : fallback.code();
+    }
+
+    for (var groupResponse : response.responses()) {
+      var optChild = fromResponse(groupResponse.response());
+      if (optChild.isEmpty()) {
+        continue;
+      }
+
+      var child = optChild.get().statuses();
+      for (int id = 0; id < Math.min(child.length, statuses.length); id++) {
+        if (child[id] != Status.NONE.code()) {
+          statuses[id] = child[id];
+        }
+      }
+    }
+    return new CompactResponse(statuses);
+  }
+
+  public Status status(int groupID) {
+    return groupID < statuses.length ? Status.fromCode(statuses[groupID]) : Status.NONE;
+  }
+
+  public byte[] toBytes() {
+    var bytes = new byte[statuses.length + 1];
+    bytes[0] = MAGIC;
+    System.arraycopy(statuses, 0, bytes, 1, statuses.length);
+    return bytes;
+  }
+
+  /**
+   * Decodes a reply, which may hold either a compact response or a serialized {@link Response}.
+   *
+   * @param bytes The reply of a group.
+   * @return The response, which for compact responses is built by {@link #toResponse()}.
+   * @throws SerializingException If the reply is not a compact response and fails to deserialize.
+   */
+  public static Response decode(byte[] bytes) throws SerializingException {
+    if (bytes.length > 0 && bytes[0] == MAGIC) {
+      return new CompactResponse(Arrays.copyOfRange(bytes, 1, bytes.length)).toResponse();
+    }
+    return Serializer.fromBytes(bytes, Response.class);
+  }
+
+  /**
+   * Presents the compact response as a {@link Response} with content {@link #CONTENT}, holding one
+   * {@link GroupResponse} per target group whose content is the name of its status.
+   */
+  public Response toResponse() {
+    var responses = new ArrayList<GroupResponse>();
+    for (int groupID = 0; groupID < statuses.length; groupID++) {
+      var status = status(groupID);
+      if (status != Status.NONE) {
+        responses.add(new GroupResponse(groupID, new Response(status.name(), new ArrayList<>())));
+      }
+    }
+    return new Response(CONTENT, responses);
+  }
+
+  /** Recovers a compact response from a {@link Response} built by {@link #toResponse()}. */
+  public static Optional<CompactResponse> fromResponse(Response response) {
+    if (!response.content().equals(CONTENT)) {
+      return Optional.empty();
+    }
+
+    var maxID = response.responses().stream().mapToInt(GroupResponse::groupID).max().orElse(-1);
+    var statuses = new byte[maxID + 1];
+    for (var groupResponse : response.responses()) {
+      var status = Status.valueOf(groupResponse.response().content());
+      statuses[groupResponse.groupID()] = status.code();
+    }
+    return Optional.of(new CompactResponse(statuses));
+  }
+}
@@ -0,0 +1,67 @@
+package dev.agst.byzcast.message;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import dev.agst.byzcast.message.Response.GroupResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The content of a request of kind {@code BATCH}, which carries several application messages with
+ * the same targets in a single multicast, so that they share one consensus instance per group on
+ * their path. Target groups deliver each message individually, and answer with a batch holding the
+ * result of each message, in the same order.
+ *
+ * @param messages The messages, or the results of the messages, of the batch.
+ */
+public record MessageBatch(List<String> messages) {
+  private static final Gson gson = new Gson();
+
+  public String toJSON() {
+    return gson.toJson(this);
+  }
+
+  /**
+   * Parses a batch serialized by {@link #toJSON()}.
+   *
+   * @return The batch, or an empty optional if the JSON is malformed or has a missing message.
+   */
+  public static Optional<MessageBatch> fromJSON(String json) {
+    try {
+      var batch = gson.fromJson(json, MessageBatch.class);
+      if (batch == null || batch.messages() == null || batch.messages().contains(null)) {
+        return Optional.empty();
+      }
+      return Optional.of(batch);
+    } catch (JsonParseException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Extracts the response to a single message from the response to a batch. Wherever a group
+   * answered with a batch of results of the expected size, the content becomes the result of the
+   * message; any other content, such as {@code FORWARDED} or a failure, applies to every message
+   * and is kept as is.
+   *
+   * @param response The response to the batch.
+   * @param index The position of the message in the batch.
+   * @param size The number of messages in the batch.
+   * @return A response shaped as if the message had been multicast on its own.
+   */
+  public static Response split(Response response, int index, int size) {
+    var content =
+        fromJSON(response.content())
+            .filter(results -> results.messages().size() == size)
+            .map(results -> results.messages().get(index))
+            .orElse(response.content());
+
+    var responses = new ArrayList<GroupResponse>();
+    for (var groupResponse : response.responses()) {
+      var split = split(groupResponse.response(), index, size);
+      responses.add(new GroupResponse(groupResponse.groupID(), split));
+    }
+    return new Response(content, responses);
+  }
+}
@@ -0,0 +1,26 @@
+package dev.agst.byzcast.message;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * An operation that bypasses consensus. Queries are sent as unordered requests and answered
+ * directly by each replica with a {@link Response}, so they may only read the replicated state of
+ * a group or touch data that is local to each replica.
+ */
+public sealed interface Query extends Serializable {
+
+  /**
+   * Fetches the current topology of the system along with its epoch. The response content is the
+   * JSON written by {@link dev.agst.byzcast.topology.VersionedTopology#toJSON()}.
+   */
+  public static record FetchTopology() implements Query {}
+
+  /**
+   * Fetches the full reply to a request with the {@code DIGEST} reply mode, which a replica keeps
+   * for a while after answering the request. Sent when the replica designated to send the full
+   * reply did not. The response is the reply itself, or has content {@code REPLY_NOT_FOUND} if the
+   * replica no longer holds it.
+   */
+  public static record FetchReply(UUID id) implements Query {}
+}
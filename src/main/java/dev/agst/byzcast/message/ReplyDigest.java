@@ -0,0 +1,58 @@
+package dev.agst.byzcast.message;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * The digest of a reply, which replicas send in place of the reply itself for requests with the
+ * {@code DIGEST} reply mode, unless they are the replica designated to send the full reply. It is
+ * encoded as the SHA-256 hash of the full reply prefixed by {@link #MAGIC}.
+ *
+ * <p>Replies are matched by their digests, computed by {@link #of(byte[])} for both forms, so that
+ * a full reply and the digests of the same reply count towards the same quorum.
+ *
+ * @param hash The SHA-256 hash of the full reply.
+ */
+public record ReplyDigest(byte[] hash) {
+  /**
+   * The first byte of an encoded digest, which neither Java serialization streams nor {@link
+   * CompactResponse}s use.
+   */
+  public static final byte MAGIC = 0x44;
+
+  /**
+   * Returns the digest of a reply.
+   *
+   * @param reply Either a full reply or an encoded digest, which is then decoded.
+   */
+  public static ReplyDigest of(byte[] reply) {
+    if (isDigest(reply)) {
+      return new ReplyDigest(Arrays.copyOfRange(reply, 1, reply.length));
+    }
+
+    try {
+      return new ReplyDigest(MessageDigest.getInstance("SHA-256").digest(reply));
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Whether a reply is an encoded digest rather than a full reply. */
+  public static boolean isDigest(byte[] reply) {
+    return reply.length > 0 && reply[0] == MAGIC;
+  }
+
+  /** Whether a reply, in either form, has this digest. */
+  public boolean matches(byte[] reply) {
+    return Arrays.equals(hash, of(reply).hash());
+  }
+
+  public byte[] toBytes() {
+    var bytes = new byte[hash.length + 1];
+    bytes[0] = MAGIC;
+    System.arraycopy(hash, 0, bytes, 1, hash.length);
+    return bytes;
+  }
+}
@@ -16,14 +16,72 @@ import java.util.UUID;
  *   <li>{@code content} - A {@link String} containing the content of the request.
  *   <li>{@code source} - An enumeration value of type {@link Source}, indicating the origin of the
  *       request (CLIENT or REPLICA).
+ *   <li>{@code epoch} - The epoch of the topology used to route the request. Groups in a different
+ *       epoch refuse it, so that a request is never routed through two different topologies.
+ *   <li>{@code kind} - An enumeration value of type {@link Kind}, indicating whether the request is
+ *       an application multicast, possibly with an offloaded payload, or a reconfiguration.
+ *   <li>{@code replyMode} - An enumeration value of type {@link ReplyMode}, indicating whether the
+ *       client expects the full tree of responses or a {@link CompactResponse}.
+ *   <li>{@code lowWatermark} - For requests whose {@code id} is a {@link SessionID}, the sequence
+ *       number below which every request of the same session has completed at the client. Replicas
+ *       drop the responses they keep for those requests. It is 0 for requests with random IDs.
+ *   <li>{@code deliveryClass} - An enumeration value of type {@link DeliveryClass}, indicating
+ *       whether the request is ordered along with every other multicast or only delivered reliably.
  * </ul>
  *
  * This record implements the {@link Serializable} interface to allow for object serialization,
  * facilitating network transmission or storage.
  */
-public record Request(UUID id, int[] targetGroups, String content, Source source)
+public record Request(
+    UUID id,
+    int[] targetGroups,
+    String content,
+    Source source,
+    long epoch,
+    Kind kind,
+    ReplyMode replyMode,
+    long lowWatermark,
+    DeliveryClass deliveryClass)
     implements Serializable {
 
+  /**
+   * Creates a copy of this request to be forwarded by a replica to the next group on its path.
+   *
+   * @param targetGroups The targets that are reached through the next group.
+   * @return A request identical to this one apart from its targets, originating from a replica.
+   */
+  public Request forwarded(int[] targetGroups) {
+    return new Request(
+        id,
+        targetGroups,
+        content,
+        Source.REPLICA,
+        epoch,
+        kind,
+        replyMode,
+        lowWatermark,
+        deliveryClass);
+  }
+
+  /**
+   * Creates a copy of an offloaded request with its payload in place of its digest.
+   *
+   * @param payload The payload addressed by the content of this request.
+   * @return A request of kind {@code MULTICAST} that is otherwise identical to this one.
+   */
+  public Request resolved(String payload) {
+    return new Request(
+        id,
+        targetGroups,
+        payload,
+        source,
+        epoch,
+        Kind.MULTICAST,
+        replyMode,
+        lowWatermark,
+        deliveryClass);
+  }
+
   /**
    * Enumerates the possible sources of a {@code Request} within the ByzCast system.
    *
@@ -40,4 +98,74 @@ public record Request(UUID id, int[] targetGroups, String content, Source source
     CLIENT,
     REPLICA
   }
+
+  /**
+   * Enumerates the kinds of {@code Request} within the ByzCast system.
+   *
+   * <ul>
+   *   <li>{@code MULTICAST} - An application message, delivered by each of its target groups.
+   *   <li>{@code OFFLOADED_MULTICAST} - An application message whose content is the digest of its
+   *       payload, which the client stored in the blob stores of the target groups beforehand.
+   *       Only the digest is ordered by the groups on the path, and targets resolve the payload
+   *       as they deliver the message.
+   *   <li>{@code BLOB} - The payload of an offloaded multicast, which the client sends straight to
+   *       each target group as a relaxed request before the multicast itself. Each group orders it
+   *       and stores it in its replicated blob store, and answers with its digest.
+   *   <li>{@code BATCH} - Several application messages with the same targets, whose content is a
+   *       {@link MessageBatch}. Each target delivers the messages individually, in order, and
+   *       answers with a batch of their results.
+   *   <li>{@code RECONFIGURATION} - A change of topology, whose content is the JSON layout of the
+   *       new topology. It is sent to the root and targets every group, so that it is ordered
+   *       along with every multicast and each group moves to the next epoch as it delivers it.
+   *   <li>{@code FAILURE_REPORT} - Sent by a replica to its own group when its forwards to the
+   *       next group whose ID is the content keep failing. Once ordered, it counts towards opening
+   *       the circuit breaker of that group.
+   * </ul>
+   */
+  public static enum Kind {
+    MULTICAST,
+    OFFLOADED_MULTICAST,
+    BLOB,
+    BATCH,
+    RECONFIGURATION,
+    FAILURE_REPORT
+  }
+
+  /**
+   * Enumerates the forms of the response to a {@code Request}.
+   *
+   * <ul>
+   *   <li>{@code FULL} - Each group answers with a {@link Response} holding the responses of the
+   *       next groups on the path of the request.
+   *   <li>{@code COMPACT} - Each group answers with a {@link CompactResponse}, which only holds the
+   *       status of each target group. Meant for clients that only need to know whether the
+   *       message was delivered, as it keeps replies small regardless of the number of targets.
+   *   <li>{@code DIGEST} - Like {@code FULL}, but only one replica of each group, which rotates
+   *       with the ID of the request, sends the full {@link Response}; the others send its {@link
+   *       ReplyDigest}. Meant for wide multicasts, whose full responses are large.
+   * </ul>
+   */
+  public static enum ReplyMode {
+    FULL,
+    COMPACT,
+    DIGEST
+  }
+
+  /**
+   * Enumerates the delivery guarantees of a {@code Request}.
+   *
+   * <ul>
+   *   <li>{@code ORDERED} - The request is sent to the LCA of its targets and routed down the tree,
+   *       so that every pair of groups delivers it in the same order relative to other ordered
+   *       multicasts.
+   *   <li>{@code RELAXED} - The client sends a copy of the request straight to each target group,
+   *       which orders it only among its own messages and never forwards it. Meant for messages
+   *       whose order relative to other multicasts does not matter, such as idempotent
+   *       invalidations, as it spares the groups above the targets from ordering them.
+   * </ul>
+   */
+  public static enum DeliveryClass {
+    ORDERED,
+    RELAXED
+  }
 }
@@ -22,5 +22,18 @@ import java.util.ArrayList;
  * network transmission or persistent storage.
  */
 public record Response(String content, ArrayList<GroupResponse> responses) implements Serializable {
+  /** The content of the response to a request routed with an older topology than the group's. */
+  public static final String STALE_EPOCH = "STALE_EPOCH";
+
+  /** The content of the response to a request routed with a newer topology than the group's. */
+  public static final String EPOCH_NOT_READY = "EPOCH_NOT_READY";
+
+  /**
+   * The content of the response to a client request refused by admission control, as the group
+   * already admitted as many requests towards one of the next groups as its limit allows, or to a
+   * forwarded request whose client session holds too many requests above its low watermark.
+   */
+  public static final String BUSY = "BUSY";
+
   public static record GroupResponse(int groupID, Response response) implements Serializable {}
 }
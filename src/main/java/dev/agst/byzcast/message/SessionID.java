@@ -0,0 +1,46 @@
+package dev.agst.byzcast.message;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * The identity of a request sent within a client session: the ID of the client and the sequence
+ * number of the request within the session. Session IDs are carried in the {@link UUID} of a
+ * request, so that requests with random IDs are still accepted.
+ *
+ * <p>The client ID takes the 48 most significant bits of the UUID and the sequence number its 64
+ * least significant bits. The version nibble, which is 4 for random UUIDs, is left as 0 so that
+ * both kinds of IDs are told apart.
+ *
+ * @param clientID The ID of the client, which must fit in 48 bits.
+ * @param sequence The sequence number of the request, which must not be negative.
+ */
+public record SessionID(long clientID, long sequence) {
+  public static final long MAX_CLIENT_ID = (1L << 48) - 1;
+
+  public SessionID {
+    if (clientID < 0 || clientID > MAX_CLIENT_ID) {
+      throw new IllegalArgumentException("clientID must fit in 48 bits");
+    }
+    if (sequence < 0) {
+      throw new IllegalArgumentException("sequence must not be negative");
+    }
+  }
+
+  public UUID toUUID() {
+    return new UUID(clientID << 16, sequence);
+  }
+
+  /**
+   * Extracts the session ID carried by a request ID.
+   *
+   * @return The session ID, or an empty optional if the ID is not a session ID.
+   */
+  public static Optional<SessionID> of(UUID id) {
+    var msb = id.getMostSignificantBits();
+    if ((msb & 0xffff) != 0 || id.getLeastSignificantBits() < 0) {
+      return Optional.empty();
+    }
+    return Optional.of(new SessionID(msb >>> 16, id.getLeastSignificantBits()));
+  }
+}
@@ -0,0 +1,74 @@
+package dev.agst.byzcast.replay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the batches of a file written by {@link BatchRecorder}. Batches are read lazily, so
+ * recordings of any length can be replayed in constant memory. A batch cut short at the end of the
+ * file, as left by a replica that crashed while recording, ends the stream.
+ */
+public class BatchReader implements Iterator<byte[][]>, AutoCloseable {
+  private final DataInputStream input;
+  private byte[][] next;
+
+  /**
+   * Opens a batch file.
+   *
+   * @throws IOException If the file cannot be read or was not written by a {@link BatchRecorder}.
+   */
+  public BatchReader(Path path) throws IOException {
+    this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+    try {
+      if (input.readInt() != BatchRecorder.MAGIC) {
+        throw new IOException(path + " is not a batch file");
+      }
+    } catch (EOFException e) {
+      throw new IOException(path + " is not a batch file", e);
+    }
+    this.next = readBatch();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return next != null;
+  }
+
+  @Override
+  public byte[][] next() {
+    if (next == null) {
+      throw new NoSuchElementException();
+    }
+
+    var current = next;
+    next = readBatch();
+    return current;
+  }
+
+  private byte[][] readBatch() {
+    try {
+      var batch = new byte[input.readInt()][];
+      for (int i = 0; i < batch.length; i++) {
+        batch[i] = new byte[input.readInt()];
+        input.readFully(batch[i]);
+      }
+      return batch;
+    } catch (EOFException e) {
+      return null;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read batch", e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    input.close();
+  }
+}
@@ -0,0 +1,57 @@
+package dev.agst.byzcast.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Records the ordered batches executed by a replica, exactly as BFT-SMaRt passes them to the
+ * replica, so that they can later be replayed by a {@link BatchReplayer}. The file is a sequence of
+ * batches, each written as its number of commands followed by every command, prefixed by its
+ * length:
+ *
+ * <pre>
+ * int magic, then per batch: int count, (int length, byte[length] command) * count
+ * </pre>
+ *
+ * <p>Each batch is flushed once it is written, so that the file holds every batch executed before
+ * the replica stopped, even if it was killed. A batch cut short by a crash is ignored by {@link
+ * BatchReader}.
+ */
+public class BatchRecorder implements AutoCloseable {
+  /** The first four bytes of a batch file. */
+  static final int MAGIC = 0x42435242;
+
+  private final DataOutputStream output;
+
+  /**
+   * Creates a recorder that writes to the given file, replacing it if it exists.
+   *
+   * @param path The path of the batch file.
+   */
+  public BatchRecorder(Path path) throws IOException {
+    this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+    this.output.writeInt(MAGIC);
+  }
+
+  /**
+   * Records a batch of ordered commands, flushing it to the file.
+   *
+   * @param commands The serialized requests of the batch, in order.
+   */
+  public synchronized void record(byte[][] commands) throws IOException {
+    output.writeInt(commands.length);
+    for (var command : commands) {
+      output.writeInt(command.length);
+      output.write(command);
+    }
+    output.flush();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    output.close();
+  }
+}
@@ -0,0 +1,64 @@
+package dev.agst.byzcast.replay;
+
+import bftsmart.tom.MessageContext;
+import dev.agst.byzcast.replica.ReplicaNode;
+import java.util.Iterator;
+
+/**
+ * Replays recorded batches into a standalone {@link ReplicaNode}, one after the other and as fast
+ * as the node executes them. Without consensus, networking or other groups, a replica can thus be
+ * profiled on its own. The node should be built with {@link CannedGroupProxies}, and with the same
+ * topology, configurations and options as the replica that recorded the batches, which must have
+ * started recording from its initial state so that the node reaches the same states. The payloads
+ * of offloaded multicasts are uploaded through ordered {@code BLOB} requests, which are recorded
+ * like any other, so the node resolves them from its own blob store without contacting any group.
+ *
+ * <p>The replies of the node are discarded, and no checkpoint is written, as replayed batches have
+ * no consensus ID. Failure reports are refused, as replayed batches have no senders, so circuit
+ * breakers never open during a replay.
+ */
+public class BatchReplayer {
+  private final ReplicaNode node;
+
+  public BatchReplayer(ReplicaNode node) {
+    this.node = node;
+  }
+
+  /**
+   * The outcome of a replay.
+   *
+   * @param batches The number of replayed batches.
+   * @param requests The number of replayed requests.
+   * @param nanos The time spent executing the batches, excluding the time spent reading them.
+   */
+  public static record Result(long batches, long requests, long nanos) {
+    public double requestsPerSecond() {
+      return nanos == 0 ? 0 : requests * 1e9 / nanos;
+    }
+  }
+
+  /**
+   * Executes every remaining batch.
+   *
+   * @param batches The batches to be replayed, in the order in which they were recorded.
+   */
+  public Result replay(Iterator<byte[][]> batches) {
+    var contexts = new MessageContext[0];
+    long batchCount = 0;
+    long requestCount = 0;
+
+    long nanos = 0;
+    while (batches.hasNext()) {
+      var batch = batches.next();
+
+      // only the execution is timed, not the reading of the batches
+      var start = System.nanoTime();
+      node.appExecuteBatch(batch, contexts);
+      nanos += System.nanoTime() - start;
+
+      batchCount++;
+      requestCount += batch.length;
+    }
+    return new Result(batchCount, requestCount, nanos);
+  }
+}
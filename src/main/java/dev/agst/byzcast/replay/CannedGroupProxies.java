@@ -0,0 +1,68 @@
+package dev.agst.byzcast.replay;
+
+import dev.agst.byzcast.Serializer;
+import dev.agst.byzcast.SerializingException;
+import dev.agst.byzcast.group.GroupConfigFinder;
+import dev.agst.byzcast.group.GroupProxies;
+import dev.agst.byzcast.message.CompactResponse;
+import dev.agst.byzcast.message.Request;
+import dev.agst.byzcast.message.Response;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Proxies that never reach the next groups, answering every forwarded request at once as if each
+ * of its targets had delivered it. Used to replay batches into a replica without the rest of the
+ * system, so that only the execution path of the replica itself is measured.
+ *
+ * <p>A request is answered with a response whose content is the canned content, or with a {@link
+ * CompactResponse} in which every target delivered the request if it has the {@code COMPACT} reply
+ * mode. Responses do not hold the responses of groups further down the path.
+ */
+public class CannedGroupProxies extends GroupProxies {
+  private final String content;
+
+  /**
+   * @param configFinder The finder of the configurations of the groups, which are never read.
+   * @param content The content of the response of every group.
+   */
+  public CannedGroupProxies(GroupConfigFinder configFinder, String content) {
+    super(configFinder);
+    this.content = content;
+  }
+
+  @Override
+  public CompletableFuture<byte[]> invokeOrdered(int groupID, UUID requestID, byte[] request) {
+    Request decoded;
+    try {
+      decoded = Serializer.fromBytes(request, Request.class);
+    } catch (SerializingException e) {
+      return CompletableFuture.failedFuture(
+          new IllegalArgumentException("Forwarded request is malformed", e));
+    }
+    return CompletableFuture.completedFuture(answer(decoded));
+  }
+
+  private byte[] answer(Request decoded) {
+    if (decoded.replyMode() != Request.ReplyMode.COMPACT) {
+      return Serializer.toBytes(new Response(content, new ArrayList<>()));
+    }
+
+    var targets = decoded.targetGroups();
+    var statuses = new byte[Arrays.stream(targets).max().orElse(-1) + 1];
+    for (var target : targets) {
+      statuses[target] = (byte) CompactResponse.Status.DELIVERED.ordinal();
+    }
+    return new CompactResponse(statuses).toBytes();
+  }
+
+  @Override
+  public void warmUp(Collection<Integer> groupIDs) {}
+
+  @Override
+  public void awaitReady(Duration timeout) {}
+}
@@ -0,0 +1,182 @@
+package dev.agst.byzcast.replica;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+
+/**
+ * Crash-consistent storage for the checkpoints of a replica. Checkpoints are written alternately to
+ * two memory-mapped slot files, so that the previous checkpoint stays intact while the next one is
+ * written. Each slot starts with a header holding a sequence number and a checksum of the
+ * checkpoint, and the header is only written once the checkpoint itself has been flushed to disk.
+ * A slot torn by a crash fails its checksum and is ignored, in which case the replica recovers from
+ * the other slot.
+ *
+ * <p>Slot layout: magic ({@code int}), sequence ({@code long}), consensus ID ({@code int}), length
+ * ({@code int}), checksum ({@code int}), followed by the snapshot itself. The checksum is a CRC32C
+ * of the sequence, consensus ID, length and snapshot.
+ *
+ * <p>This class is not thread-safe; it is only used by the thread that executes ordered requests.
+ */
+class CheckpointFile implements AutoCloseable {
+  private static final int MAGIC = 0x4243434b;
+  private static final int HEADER_SIZE = 24;
+  private static final int MIN_SLOT_SIZE = 1 << 20;
+
+  private final Slot[] slots;
+
+  /** The sequence number of the next checkpoint. */
+  private long nextSequence = 0;
+
+  /**
+   * A checkpoint read back from a slot.
+   *
+   * @param sequence The sequence number of the checkpoint, which increases with every write.
+   * @param consensusID The ID of the last consensus whose batch is included in the checkpoint.
+   * @param snapshot The state of the replica, as produced by {@link ReplicaNode#getSnapshot()}.
+   */
+  static record Checkpoint(long sequence, int consensusID, byte[] snapshot) {}
+
+  private CheckpointFile(Slot[] slots) {
+    this.slots = slots;
+  }
+
+  /**
+   * Opens the checkpoint files in a directory, creating it if needed.
+   *
+   * @param directory The directory holding the slot files of a single replica.
+   */
+  static CheckpointFile open(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    var slots = new Slot[2];
+    try {
+      for (int i = 0; i < slots.length; i++) {
+        slots[i] = new Slot(directory.resolve("checkpoint-" + i + ".bin"));
+      }
+    } catch (IOException e) {
+      for (var slot : slots) {
+        if (slot != null) {
+          slot.close();
+        }
+      }
+      throw e;
+    }
+    return new CheckpointFile(slots);
+  }
+
+  /**
+   * Reads the most recent valid checkpoint. Later writes continue its sequence, so that they never
+   * overwrite it.
+   *
+   * @return The checkpoint, or an empty optional if no slot holds a valid one.
+   */
+  Optional<Checkpoint> load() {
+    Optional<Checkpoint> latest = Optional.empty();
+    for (var slot : slots) {
+      var optCheckpoint = slot.read();
+      if (optCheckpoint.isEmpty()) {
+        continue;
+      }
+
+      var checkpoint = optCheckpoint.get();
+      if (latest.isEmpty() || checkpoint.sequence() > latest.get().sequence()) {
+        latest = optCheckpoint;
+      }
+    }
+
+    latest.ifPresent(checkpoint -> nextSequence = checkpoint.sequence() + 1);
+    return latest;
+  }
+
+  /**
+   * Writes a checkpoint, replacing the oldest one. This method returns once the checkpoint is on
+   * disk.
+   *
+   * @param consensusID The ID of the last consensus whose batch is included in the snapshot.
+   * @param snapshot The state of the replica.
+   */
+  void write(int consensusID, byte[] snapshot) throws IOException {
+    var sequence = nextSequence++;
+    slots[(int) (sequence % slots.length)].write(sequence, consensusID, snapshot);
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (var slot : slots) {
+      slot.close();
+    }
+  }
+
+  private static int checksum(long sequence, int consensusID, ByteBuffer snapshot) {
+    var fields = ByteBuffer.allocate(16).putLong(sequence).putInt(consensusID);
+    fields.putInt(snapshot.remaining()).flip();
+
+    var crc = new CRC32C();
+    crc.update(fields);
+    crc.update(snapshot);
+    return (int) crc.getValue();
+  }
+
+  /** A single slot file, mapped in full and grown whenever a checkpoint does not fit. */
+  private static class Slot {
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    Slot(Path path) throws IOException {
+      this.channel =
+          FileChannel.open(
+              path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+    }
+
+    Optional<Checkpoint> read() {
+      if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+        return Optional.empty();
+      }
+
+      var sequence = buffer.getLong(4);
+      var consensusID = buffer.getInt(12);
+      var length = buffer.getInt(16);
+      var checksum = buffer.getInt(20);
+      if (length < 0 || length > buffer.capacity() - HEADER_SIZE) {
+        return Optional.empty();
+      }
+
+      var snapshot = buffer.slice(HEADER_SIZE, length);
+      if (checksum(sequence, consensusID, snapshot.duplicate()) != checksum) {
+        return Optional.empty();
+      }
+
+      var bytes = new byte[length];
+      snapshot.get(bytes);
+      return Optional.of(new Checkpoint(sequence, consensusID, bytes));
+    }
+
+    void write(long sequence, int consensusID, byte[] snapshot) throws IOException {
+      var required = HEADER_SIZE + snapshot.length;
+      if (buffer.capacity() < required) {
+        var size = Math.max(MIN_SLOT_SIZE, Math.max(required, 2L * buffer.capacity()));
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(size, Integer.MAX_VALUE));
+      }
+
+      buffer.put(HEADER_SIZE, snapshot);
+      buffer.force(HEADER_SIZE, snapshot.length);
+
+      // a header torn by a crash fails the checksum, as the checksum covers its other fields
+      var checksum = checksum(sequence, consensusID, ByteBuffer.wrap(snapshot));
+      buffer.putInt(0, MAGIC).putLong(4, sequence).putInt(12, consensusID);
+      buffer.putInt(16, snapshot.length).putInt(20, checksum);
+      buffer.force(0, HEADER_SIZE);
+    }
+
+    void close() throws IOException {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package dev.agst.byzcast.replica;
+
+import java.io.Serializable;
+import java.util.TreeMap;
+
+/**
+ * A circuit breaker guarding the forwards to a single group. The breaker opens once F+1 replicas of
+ * the local group, and thus at least one correct replica, have reported that their forwards to the
+ * group keep failing; forwards then fail immediately instead of waiting for the group. Once the
+ * cooldown elapses, the breaker closes and the following forwards probe the group, which is
+ * reported again if they keep failing.
+ *
+ * <p>Breakers are part of the replicated state, so that every replica of the group forwards the
+ * same requests. They are thus only driven by ordered input: reports are ordered requests, and
+ * time is measured in batches executed by the group rather than by the clock of each replica.
+ */
+class CircuitBreaker implements Serializable {
+  /** The batch in which each replica reported the group for the last time, by server ID. */
+  private final TreeMap<Integer, Long> reports = new TreeMap<>();
+
+  /** The batch in which the breaker opened, or -1 if it is closed. */
+  private long openedAt = -1;
+
+  /**
+   * Whether forwards to the group are allowed, closing the breaker if its cooldown has elapsed.
+   *
+   * @param batch The number of batches executed by the group so far.
+   * @param cooldown The number of batches during which the breaker remains open.
+   */
+  boolean isClosed(long batch, long cooldown) {
+    if (openedAt >= 0 && batch - openedAt >= cooldown) {
+      openedAt = -1;
+    }
+    return openedAt < 0;
+  }
+
+  /**
+   * Records a report of a replica of the local group. Reports are ignored while the breaker is
+   * open, and expire along with the cooldown, so that only replicas that saw the group fail at
+   * about the same time open the breaker.
+   *
+   * @param serverID The ID of the replica that sent the report.
+   * @param batch The number of batches executed by the group so far.
+   * @param quorum The number of distinct replicas whose reports open the breaker.
+   * @param cooldown The number of batches during which the breaker remains open.
+   * @return Whether the report opened the breaker.
+   */
+  boolean report(int serverID, long batch, int quorum, long cooldown) {
+    if (!isClosed(batch, cooldown)) {
+      return false;
+    }
+
+    reports.put(serverID, batch);
+    reports.values().removeIf(reportedAt -> batch - reportedAt >= cooldown);
+    if (reports.size() < quorum) {
+      return false;
+    }
+
+    reports.clear();
+    openedAt = batch;
+    return true;
+  }
+}
@@ -0,0 +1,134 @@
+package dev.agst.byzcast.replica;
+
+import dev.agst.byzcast.app.Delivery;
+import dev.agst.byzcast.message.Request;
+import dev.agst.byzcast.message.Response;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Collects the messages delivered by the local group while executing a batch ordered by
+ * BFT-SMaRt, so that they are passed to the application at once. Responses to the requests of the
+ * batch are built once the application has returned the results of their messages.
+ *
+ * <p>The batch also counts the client requests admitted towards each next group, as admission
+ * limits apply per batch, regardless of the forwards admitted by earlier batches that are still
+ * outstanding. Since every replica of the group executes the same batches, they all admit the same
+ * requests.
+ */
+class DeliveryBatch {
+  private final List<Delivery> deliveries = new ArrayList<>();
+
+  /**
+   * The responses to the forwarded requests that became ready within this batch. Further copies of
+   * such a request in the same batch are answered with the same response, as it is only cached
+   * once the batch completes.
+   */
+  private final Map<UUID, Supplier<Response>> responses = new HashMap<>();
+
+  private List<String> results;
+
+  /** The replies sent by the forward lane, in the order of their requests. */
+  private final List<DeferredReply> deferred = new ArrayList<>();
+
+  /**
+   * The reply to a request that is sent once the forwards of the request return, instead of being
+   * returned along with the other replies of the batch.
+   *
+   * @param id The ID of the request.
+   * @param result A supplier of the encoded response, to be called once the batch is delivered.
+   */
+  static record DeferredReply(UUID id, Supplier<byte[]> result) {}
+
+  /** The number of client requests admitted so far towards each next group. */
+  private final Map<Integer, Integer> admitted = new HashMap<>();
+
+  /**
+   * Adds the message of a request delivered by the local group.
+   *
+   * @return The index of the message, from which its result is obtained.
+   */
+  int add(Request request) {
+    return add(request.id(), request.content());
+  }
+
+  /**
+   * Adds a message delivered by the local group.
+   *
+   * @param id The ID of the request that carried the message.
+   * @param payload The payload of the message.
+   * @return The index of the message, from which its result is obtained.
+   */
+  int add(UUID id, String payload) {
+    deliveries.add(new Delivery(id, payload));
+    return deliveries.size() - 1;
+  }
+
+  List<Delivery> deliveries() {
+    return deliveries;
+  }
+
+  /**
+   * Sets the results of the messages of the batch.
+   *
+   * @throws IllegalArgumentException If there is not exactly one result per message.
+   */
+  void complete(List<String> results) {
+    if (results.size() != deliveries.size()) {
+      throw new IllegalArgumentException(
+          String.format("Expected %d results, got %d", deliveries.size(), results.size()));
+    }
+    this.results = results;
+  }
+
+  /**
+   * Returns the result of a message of the batch.
+   *
+   * @throws IllegalStateException If the batch is yet to be completed.
+   */
+  String result(int index) {
+    if (results == null) {
+      throw new IllegalStateException("Batch is yet to be delivered");
+    }
+    return results.get(index);
+  }
+
+  /**
+   * Admits a client request if none of the groups it is forwarded to has reached its limit.
+   *
+   * @param nextGroups The IDs of the groups the request is forwarded to.
+   * @param limit The maximum number of requests admitted towards each group.
+   * @return Whether the request was admitted, in which case it counts towards the limit of each of
+   *     the groups.
+   */
+  boolean admit(Collection<Integer> nextGroups, int limit) {
+    if (nextGroups.stream().anyMatch(groupID -> admitted.getOrDefault(groupID, 0) >= limit)) {
+      return false;
+    }
+
+    nextGroups.forEach(groupID -> admitted.merge(groupID, 1, Integer::sum));
+    return true;
+  }
+
+  void respond(UUID id, Supplier<Response> response) {
+    responses.put(id, response);
+  }
+
+  Optional<Supplier<Response>> response(UUID id) {
+    return Optional.ofNullable(responses.get(id));
+  }
+
+  void defer(UUID id, Supplier<byte[]> result) {
+    deferred.add(new DeferredReply(id, result));
+  }
+
+  List<DeferredReply> deferred() {
+    return deferred;
+  }
+}
@@ -0,0 +1,25 @@
+package dev.agst.byzcast.replica;
+
+import java.nio.file.Path;
+
+/**
+ * The configuration of the durable state of replicas. A replica with durable state writes the
+ * snapshots taken at the checkpoints of BFT-SMaRt to local files, from which it recovers when
+ * restarted instead of starting from an empty state.
+ *
+ * @param directory The directory holding the checkpoints of every replica of this process.
+ * @param checkpointInterval The number of checkpoints taken by BFT-SMaRt for each one written to
+ *     the local files.
+ */
+public record Durability(Path directory, int checkpointInterval) {
+  public Durability {
+    if (checkpointInterval <= 0) {
+      throw new IllegalArgumentException("checkpointInterval must be positive");
+    }
+  }
+
+  /** Returns the directory holding the checkpoints of a replica. */
+  public Path directoryOf(ReplicaInfo info) {
+    return directory.resolve(String.format("group-%d-server-%d", info.groupID(), info.serverID()));
+  }
+}
@@ -0,0 +1,127 @@
+package dev.agst.byzcast.replica;
+
+import bftsmart.tom.ServiceProxy;
+import dev.agst.byzcast.Logger;
+import dev.agst.byzcast.Logger.Attr;
+import dev.agst.byzcast.Serializer;
+import dev.agst.byzcast.group.GroupConfigFinder;
+import dev.agst.byzcast.message.Request;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tracks the outcome of the forwards of a replica to each next group, and reports to the group of
+ * the replica the next groups whose forwards keep failing, so that their {@link CircuitBreaker}s
+ * are opened through consensus. A report is an ordered {@link Request.Kind#FAILURE_REPORT}
+ * request, sent by the replica through its own proxy, whose client ID is derived from the server
+ * ID of the replica so that the group can tell reporters apart.
+ *
+ * <p>This class is thread-safe.
+ */
+class FailureReporter implements AutoCloseable {
+  /**
+   * The client ID of the proxy of the replica with server ID zero. Clients draw random IDs below
+   * {@link Integer#MAX_VALUE}, so they only clash with a reporter by chance.
+   */
+  private static final int CLIENT_ID_BASE = Integer.MAX_VALUE - (1 << 16);
+
+  private final Logger logger;
+  private final ReplicaInfo info;
+  private final GroupConfigFinder configFinder;
+  private final ForwardPolicy forwardPolicy;
+
+  /** The number of consecutive failed forwards to each next group, by group ID. */
+  private final Map<Integer, Integer> consecutiveFailures = new HashMap<>();
+
+  /** Sends the reports one at a time, as a proxy only has one request in flight. */
+  private final ExecutorService executor =
+      Executors.newSingleThreadExecutor(Thread.ofVirtual().factory());
+
+  /** The proxy to the group of the replica, created along with the first report. */
+  private volatile ServiceProxy proxy;
+
+  FailureReporter(
+      Logger logger,
+      ReplicaInfo info,
+      GroupConfigFinder configFinder,
+      ForwardPolicy forwardPolicy) {
+    this.logger = logger;
+    this.info = info;
+    this.configFinder = configFinder;
+    this.forwardPolicy = forwardPolicy;
+  }
+
+  /**
+   * Returns the server ID of the replica that sends reports with the given client ID.
+   *
+   * @return The server ID, or an empty optional if the client is not a reporter.
+   */
+  static Optional<Integer> serverIDOf(int clientID) {
+    return clientID >= CLIENT_ID_BASE ? Optional.of(clientID - CLIENT_ID_BASE) : Optional.empty();
+  }
+
+  /**
+   * Records the outcome of a forward, reporting its group once it has failed {@code
+   * breakerThreshold} times in a row. A forward that took longer than the deadline of its group
+   * counts as failed.
+   *
+   * @param groupID The ID of the group the request was forwarded to.
+   * @param hasFailed Whether the forward failed.
+   * @param elapsedMillis The time the forward took.
+   */
+  synchronized void record(int groupID, boolean hasFailed, long elapsedMillis) {
+    if (!forwardPolicy.hasBreakers()) {
+      return;
+    }
+
+    var deadline = forwardPolicy.deadlineOf(groupID);
+    if (!hasFailed && (deadline <= 0 || elapsedMillis <= deadline)) {
+      consecutiveFailures.remove(groupID);
+      return;
+    }
+
+    var failures = consecutiveFailures.merge(groupID, 1, Integer::sum);
+    if (failures >= forwardPolicy.breakerThreshold()) {
+      consecutiveFailures.remove(groupID);
+      executor.execute(() -> report(groupID));
+    }
+  }
+
+  private void report(int groupID) {
+    var request =
+        new Request(
+            UUID.randomUUID(),
+            new int[] {info.groupID()},
+            Integer.toString(groupID),
+            Request.Source.REPLICA,
+            0,
+            Request.Kind.FAILURE_REPORT,
+            Request.ReplyMode.FULL,
+            0,
+            Request.DeliveryClass.ORDERED);
+
+    logger.info("Reporting failing group", new Attr("targetGroupID", groupID));
+    try {
+      if (proxy == null) {
+        var config = configFinder.forGroup(info.groupID());
+        proxy = new ServiceProxy(CLIENT_ID_BASE + info.serverID(), config);
+      }
+      proxy.invokeOrdered(Serializer.toBytes(request));
+    } catch (Exception e) {
+      logger.error("Failed to report failing group", e, new Attr("targetGroupID", groupID));
+    }
+  }
+
+  /** Stops sending reports and closes the proxy of the replica, if it was created. */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    if (proxy != null) {
+      proxy.close();
+    }
+  }
+}
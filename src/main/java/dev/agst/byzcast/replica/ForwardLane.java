@@ -0,0 +1,75 @@
+package dev.agst.byzcast.replica;
+
+import dev.agst.byzcast.Logger;
+import dev.agst.byzcast.Logger.Attr;
+import dev.agst.byzcast.Serializer;
+import dev.agst.byzcast.jfr.LaneReplyEvent;
+import dev.agst.byzcast.message.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Awaits the forwards of requests and sends their replies once they return, so that the batch that
+ * handled them returns without waiting for the round-trip to the next groups. Replies are sent
+ * through the {@link ReplicaReplier}, each from its own virtual thread, and thus in the order in
+ * which the forwards return.
+ *
+ * <p>Only the awaiting of forwards and the sending of replies happen in this lane. Requests are
+ * still handled, delivered and sent to the next groups in the order of the batch, so the state of
+ * every replica remains the same, and every next group receives them in the same order.
+ */
+class ForwardLane implements AutoCloseable {
+  private final Logger logger;
+  private final ReplicaInfo info;
+  private final ReplicaReplier replier;
+
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  ForwardLane(Logger logger, ReplicaInfo info, ReplicaReplier replier) {
+    this.logger = logger;
+    this.info = info;
+    this.replier = replier;
+  }
+
+  /**
+   * Sends the deferred replies of a batch, which must have been delivered, once their forwards
+   * return. The replies are announced to the replier right away, so this method must be called
+   * before the batch returns. It does not block.
+   */
+  void submit(List<DeliveryBatch.DeferredReply> replies) {
+    replies.forEach(reply -> replier.expect(reply.id()));
+    for (var reply : replies) {
+      var event = new LaneReplyEvent();
+      event.begin();
+      executor.execute(() -> send(reply, event));
+    }
+  }
+
+  private void send(DeliveryBatch.DeferredReply reply, LaneReplyEvent event) {
+    byte[] result;
+    try {
+      result = reply.result().get();
+    } catch (Exception e) {
+      logger.error("Failed to complete deferred reply", e, new Attr("RID", reply.id()));
+      result = Serializer.toBytes(new Response("INTERNAL_ERROR", new ArrayList<>()));
+    }
+    replier.complete(reply.id(), result);
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.groupID = info.groupID();
+      event.serverID = info.serverID();
+      event.lane = "FORWARD";
+      event.replies = 1;
+      event.commit();
+    }
+  }
+
+  /** Stops waiting for the forwards still in progress, whose replies are then never sent. */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,55 @@
+package dev.agst.byzcast.replica;
+
+import java.util.Map;
+
+/**
+ * When a replica considers the groups it forwards requests to as failing, and when the replicas of
+ * its group stop forwarding to them altogether.
+ *
+ * <p>Deadlines only affect what a replica reports to its group: a forward is still awaited for as
+ * long as BFT-SMaRt does, and its actual response is always the one returned, so that deadlines
+ * never make replicas diverge. Breakers are instead opened through consensus; see {@link
+ * CircuitBreaker}.
+ *
+ * @param defaultDeadlineMillis The time after which a forward to a group counts as failed, unless
+ *     overridden for that group. A deadline of zero or less only counts forwards that fail.
+ * @param deadlinesMillis The deadlines of specific groups, by group ID.
+ * @param breakerThreshold The number of consecutive failed forwards to a group after which a
+ *     replica reports the group to its own group. A threshold of zero or less disables the
+ *     breakers.
+ * @param breakerCooldownBatches The number of batches executed by the group during which an open
+ *     breaker remains open, which is also how long reports are taken into account.
+ */
+public record ForwardPolicy(
+    long defaultDeadlineMillis,
+    Map<Integer, Long> deadlinesMillis,
+    int breakerThreshold,
+    long breakerCooldownBatches) {
+
+  /** A policy without deadlines nor circuit breakers. */
+  public static final ForwardPolicy UNBOUNDED = new ForwardPolicy(0, Map.of(), 0, 0);
+
+  /**
+   * @throws IllegalArgumentException If breakers are enabled with a cooldown of zero or less.
+   */
+  public ForwardPolicy {
+    deadlinesMillis = Map.copyOf(deadlinesMillis);
+    if (breakerThreshold > 0 && breakerCooldownBatches <= 0) {
+      throw new IllegalArgumentException("The breaker cooldown must be positive");
+    }
+  }
+
+  /**
+   * Returns the deadline of the forwards to a group.
+   *
+   * @return The deadline in milliseconds, or zero or less if forwards to the group have none.
+   */
+  public long deadlineOf(int groupID) {
+    return deadlinesMillis.getOrDefault(groupID, defaultDeadlineMillis);
+  }
+
+  /** Whether forwards to the next groups are guarded by circuit breakers. */
+  public boolean hasBreakers() {
+    return breakerThreshold > 0;
+  }
+}
@@ -0,0 +1,82 @@
+package dev.agst.byzcast.replica;
+
+import dev.agst.byzcast.group.GroupConfigFinder;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The number of copies of a forwarded request that a replica must receive before handling it, for
+ * each group that may forward requests to it. The threshold of a group is N-F, where N is its
+ * number of replicas and F the number of faulty replicas it tolerates, as read from the {@code
+ * system.servers.num} and {@code system.servers.f} keys of its {@code system.config}. Groups may
+ * thus have different sizes, which are also available through {@link #sizeOf(int)} and {@link
+ * #faultsOf(int)}.
+ *
+ * <p>Thresholds are read once per group, the first time they are needed. This class is
+ * thread-safe.
+ */
+class ReceiveThresholds {
+  private final GroupConfigFinder configFinder;
+  private final Map<Integer, GroupSize> sizes = new ConcurrentHashMap<>();
+
+  /** The number of replicas of a group, and how many of them may be faulty. */
+  private static record GroupSize(int n, int f) {}
+
+  ReceiveThresholds(GroupConfigFinder configFinder) {
+    this.configFinder = configFinder;
+  }
+
+  /**
+   * Returns the receive threshold for requests forwarded by the given group.
+   *
+   * @param groupID The ID of the group that forwards the requests.
+   * @throws UncheckedIOException If the configuration of the group cannot be read.
+   * @throws IllegalStateException If the configuration lacks the size of the group.
+   */
+  int of(int groupID) {
+    var size = sizes.computeIfAbsent(groupID, this::read);
+    return size.n() - size.f();
+  }
+
+  /**
+   * Returns the number of replicas of the given group.
+   *
+   * @throws UncheckedIOException If the configuration of the group cannot be read.
+   * @throws IllegalStateException If the configuration lacks the size of the group.
+   */
+  int sizeOf(int groupID) {
+    return sizes.computeIfAbsent(groupID, this::read).n();
+  }
+
+  /**
+   * Returns the number of faulty replicas the given group tolerates.
+   *
+   * @throws UncheckedIOException If the configuration of the group cannot be read.
+   * @throws IllegalStateException If the configuration lacks the size of the group.
+   */
+  int faultsOf(int groupID) {
+    return sizes.computeIfAbsent(groupID, this::read).f();
+  }
+
+  private GroupSize read(int groupID) {
+    var path = Path.of(configFinder.forGroup(groupID), "system.config");
+    var config = new Properties();
+    try (var reader = new FileReader(path.toFile())) {
+      config.load(reader);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read the configuration of group " + groupID, e);
+    }
+
+    var n = config.getProperty("system.servers.num");
+    var f = config.getProperty("system.servers.f");
+    if (n == null || f == null) {
+      throw new IllegalStateException("The configuration of group " + groupID + " has no size");
+    }
+    return new GroupSize(Integer.parseInt(n.strip()), Integer.parseInt(f.strip()));
+  }
+}
@@ -1,14 +1,32 @@
 package dev.agst.byzcast.replica;
 
+import bftsmart.statemanagement.ApplicationState;
 import bftsmart.tom.MessageContext;
+import bftsmart.tom.ReplicaContext;
+import bftsmart.tom.server.defaultservices.CommandsInfo;
+import bftsmart.tom.server.defaultservices.DefaultApplicationState;
 import bftsmart.tom.server.defaultservices.DefaultRecoverable;
+import bftsmart.tom.util.TOMUtil;
 import dev.agst.byzcast.Logger;
 import dev.agst.byzcast.Logger.Attr;
 import dev.agst.byzcast.Serializer;
+import dev.agst.byzcast.app.DeliveryHandler;
+import dev.agst.byzcast.jfr.BatchExecutionEvent;
+import dev.agst.byzcast.jfr.CheckpointEvent;
+import dev.agst.byzcast.jfr.LaneReplyEvent;
+import dev.agst.byzcast.jfr.SnapshotEvent;
+import dev.agst.byzcast.message.Query;
 import dev.agst.byzcast.message.Request;
 import dev.agst.byzcast.message.Response;
+import dev.agst.byzcast.replay.BatchRecorder;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * Implements a node within the ByzCast system, acting as a controller for serializing and
@@ -29,14 +47,54 @@ import java.util.Arrays;
  */
 public class ReplicaNode extends DefaultRecoverable {
   private final Logger logger;
+  private final ReplicaInfo info;
   private final RequestHandler handler;
+  private final DeliveryHandler application;
 
   private ReplicaState state;
 
-  public ReplicaNode(Logger logger, RequestHandler handler, ReplicaState state) {
+  /** The checkpoints of the replica, if it has durable state. */
+  private final Optional<CheckpointFile> checkpoints;
+
+  /** The number of checkpoints taken by BFT-SMaRt for each one written to the checkpoint files. */
+  private final int checkpointInterval;
+
+  private int snapshotsSinceCheckpoint = 0;
+
+  /** The ID of the last consensus whose batch has been executed, or -1 if there is none. */
+  private int lastExecutedCID = -1;
+
+  /** The ID of the consensus of the latest checkpoint written or recovered, or -1 if none was. */
+  private int lastCheckpointCID = -1;
+
+  /** The snapshot recovered from the checkpoint files, until it is handed to BFT-SMaRt. */
+  private byte[] recoveredSnapshot;
+
+  /** The lane that sends the replies to forwarded requests, if priority lanes are enabled. */
+  private final Optional<ForwardLane> forwardLane;
+
+  /** The recorder of the executed batches, if batches are recorded for replay. */
+  private final Optional<BatchRecorder> recorder;
+
+  ReplicaNode(
+      Logger logger,
+      ReplicaInfo info,
+      RequestHandler handler,
+      DeliveryHandler application,
+      ReplicaState state,
+      Optional<CheckpointFile> checkpoints,
+      int checkpointInterval,
+      Optional<ForwardLane> forwardLane,
+      Optional<BatchRecorder> recorder) {
     this.logger = logger;
+    this.info = info;
     this.handler = handler;
+    this.application = application;
     this.state = state;
+    this.checkpoints = checkpoints;
+    this.checkpointInterval = checkpointInterval;
+    this.forwardLane = forwardLane;
+    this.recorder = recorder;
   }
 
   /**
@@ -47,12 +105,202 @@ public class ReplicaNode extends DefaultRecoverable {
     return new ReplicaNodeBuilderFactory.Builder();
   }
 
+  /**
+   * Blocks until the replica is connected to every one of its next groups, which are connected to
+   * in the background as soon as the replica is built.
+   *
+   * @param timeout The maximum time to wait.
+   * @throws TimeoutException If some next group is still unreachable once the timeout expires.
+   */
+  public void awaitReady(Duration timeout) throws TimeoutException, InterruptedException {
+    this.handler.awaitReady(timeout);
+  }
+
+  /**
+   * Closes the connections of the replica to its next groups, stops sending the replies of the
+   * forward lane and completes the recording of batches.
+   */
+  public void close() {
+    this.forwardLane.ifPresent(ForwardLane::close);
+    this.handler.close();
+    this.recorder.ifPresent(
+        recorder -> {
+          try {
+            recorder.close();
+          } catch (IOException e) {
+            logger.error("Failed to close batch recorder", e);
+          }
+        });
+  }
+
   @Override
   public byte[][] appExecuteBatch(byte[][] cmds, MessageContext[] ctxs) {
-    return Arrays.stream(cmds).map(this::appExecuteSingle).toArray(byte[][]::new);
+    this.recorder.ifPresent(recorder -> record(recorder, cmds));
+
+    var event = new BatchExecutionEvent();
+    event.begin();
+    var laneEvent = new LaneReplyEvent();
+    laneEvent.begin();
+
+    // every request of the batch is handled before the delivered messages are passed to the
+    // application at once, and only then are the replies built from their results
+    this.state.tick();
+    var batch = new DeliveryBatch();
+    var pendingReplies =
+        IntStream.range(0, cmds.length)
+            .mapToObj(i -> appExecuteSingle(cmds[i], senderOf(ctxs, i), batch))
+            .toList();
+    this.handler.deliver(batch);
+    this.forwardLane.ifPresent(lane -> lane.submit(batch.deferred()));
+    var replies = pendingReplies.stream().map(this::completeReply).toArray(byte[][]::new);
+
+    laneEvent.end();
+    if (forwardLane.isPresent() && laneEvent.shouldCommit()) {
+      laneEvent.groupID = info.groupID();
+      laneEvent.serverID = info.serverID();
+      laneEvent.lane = "LOCAL";
+      laneEvent.replies = cmds.length - batch.deferred().size();
+      laneEvent.commit();
+    }
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.groupID = info.groupID();
+      event.serverID = info.serverID();
+      event.batchSize = cmds.length;
+      event.commit();
+    }
+
+    if (ctxs.length > 0) {
+      lastExecutedCID = ctxs[ctxs.length - 1].getConsensusId();
+    }
+    return replies;
+  }
+
+  /**
+   * Records a batch for replay. A failed write is only logged, as it must not stop the replica from
+   * executing the batch.
+   */
+  private void record(BatchRecorder recorder, byte[][] cmds) {
+    try {
+      recorder.record(cmds);
+    } catch (IOException e) {
+      logger.error("Failed to record batch", e);
+    }
+  }
+
+  /**
+   * Restores the state of the replica from its latest checkpoint, if it has durable state and a
+   * checkpoint exists. This must be called before the replica is passed to BFT-SMaRt, which is then
+   * told the consensus ID of the checkpoint by {@link #setReplicaContext(ReplicaContext)}.
+   */
+  void recover() {
+    if (checkpoints.isEmpty()) {
+      return;
+    }
+
+    var start = System.nanoTime();
+    var optCheckpoint = checkpoints.get().load();
+    if (optCheckpoint.isEmpty()) {
+      logger.info("No checkpoint to recover from");
+      return;
+    }
+
+    var checkpoint = optCheckpoint.get();
+    installSnapshot(checkpoint.snapshot());
+    lastExecutedCID = checkpoint.consensusID();
+    lastCheckpointCID = checkpoint.consensusID();
+    recoveredSnapshot = checkpoint.snapshot();
+    logger.info(
+        "State recovered from checkpoint",
+        new Attr("CID", checkpoint.consensusID()),
+        new Attr("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+  }
+
+  /**
+   * Hands the recovered checkpoint, if any, to BFT-SMaRt. The state manager learns the consensus ID
+   * of the checkpoint before it asks the group for the current one, so that it only transfers the
+   * state when the group has moved past the checkpoint, and the log of {@link DefaultRecoverable}
+   * takes the checkpoint as its own, so that the following consensuses are logged after it.
+   */
+  @Override
+  public void setReplicaContext(ReplicaContext replicaContext) {
+    if (recoveredSnapshot == null) {
+      super.setReplicaContext(replicaContext);
+      return;
+    }
+
+    getStateManager().setLastCID(lastCheckpointCID);
+    super.setReplicaContext(replicaContext);
+
+    // the snapshot is installed again, which leaves the state unchanged as it is the current one
+    var snapshot = recoveredSnapshot;
+    recoveredSnapshot = null;
+    setState(
+        new DefaultApplicationState(
+            new CommandsInfo[0],
+            lastCheckpointCID,
+            lastCheckpointCID,
+            snapshot,
+            TOMUtil.computeHash(snapshot),
+            info.serverID()));
+  }
+
+  /**
+   * Installs a state received through state transfer or recovered from a checkpoint, keeping track
+   * of the last consensus it includes so that the next checkpoint is written with its ID.
+   */
+  @Override
+  public int setState(ApplicationState state) {
+    var lastCID = super.setState(state);
+    lastExecutedCID = lastCID;
+    return lastCID;
+  }
+
+  /**
+   * Writes a checkpoint of the state in a snapshot taken by BFT-SMaRt, if the replica has durable
+   * state and this is every {@code checkpointInterval}-th snapshot taken after executing a batch.
+   * A failed write is only logged, as the replica is still able to recover from the previous
+   * checkpoint or through state transfer.
+   *
+   * @param snapshot The snapshot, taken after executing the batch of {@link #lastExecutedCID}.
+   */
+  private void checkpoint(byte[] snapshot) {
+    if (checkpoints.isEmpty()
+        || lastExecutedCID <= lastCheckpointCID
+        || ++snapshotsSinceCheckpoint < checkpointInterval) {
+      return;
+    }
+    snapshotsSinceCheckpoint = 0;
+
+    var consensusID = lastExecutedCID;
+    var event = new CheckpointEvent();
+    event.begin();
+
+    try {
+      checkpoints.get().write(consensusID, snapshot);
+    } catch (IOException e) {
+      logger.error("Failed to write checkpoint", e, new Attr("CID", consensusID));
+      return;
+    }
+    lastCheckpointCID = consensusID;
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.groupID = info.groupID();
+      event.serverID = info.serverID();
+      event.consensusID = consensusID;
+      event.size = snapshot.length;
+      event.commit();
+    }
   }
 
-  private byte[] appExecuteSingle(byte[] cmd) {
+  /** Returns the sender of a command of the batch, or -1 if the batch has no contexts. */
+  private static int senderOf(MessageContext[] ctxs, int index) {
+    return index < ctxs.length ? ctxs[index].getSender() : -1;
+  }
+
+  private Supplier<ReplicaReply> appExecuteSingle(byte[] cmd, int sender, DeliveryBatch batch) {
     Request request;
 
     try {
@@ -62,37 +310,75 @@ public class ReplicaNode extends DefaultRecoverable {
       var response = new Response("INVALID_PAYLOAD", new ArrayList<>());
       var reply = new ReplicaReply.Raw(Serializer.toBytes(response));
 
-      return Serializer.toBytes(reply);
+      return () -> reply;
     }
 
     try {
-      ReplicaReply reply = this.handler.handle(request, state);
-      return Serializer.toBytes(reply);
+      return this.handler.handle(request, sender, state, batch);
     } catch (Exception e) {
       logger.error("Failed to handle request", e, new Attr("RID", request.id()));
+      return ReplicaNode::internalError;
+    }
+  }
 
-      var response = new Response("INTERNAL_ERROR", new ArrayList<>());
-      var errorReply = new ReplicaReply.Raw(Serializer.toBytes(response));
-      return Serializer.toBytes(errorReply);
+  private byte[] completeReply(Supplier<ReplicaReply> pendingReply) {
+    try {
+      return Serializer.toBytes(pendingReply.get());
+    } catch (Exception e) {
+      logger.error("Failed to complete reply", e);
+      return Serializer.toBytes(internalError());
     }
   }
 
+  private static ReplicaReply internalError() {
+    var response = new Response("INTERNAL_ERROR", new ArrayList<>());
+    return new ReplicaReply.Raw(Serializer.toBytes(response));
+  }
+
   @Override
   public byte[] appExecuteUnordered(byte[] cmd, MessageContext ctx) {
-    var response = new Response("UNSUPPORTED_OPERATION", new ArrayList<>());
+    Response response;
+    try {
+      var query = Serializer.fromBytes(cmd, Query.class);
+      response = this.handler.query(query, state);
+    } catch (Exception e) {
+      response = new Response("UNSUPPORTED_OPERATION", new ArrayList<>());
+    }
+
     var rawResponse = Serializer.toBytes(response);
     return Serializer.toBytes(new ReplicaReply.Raw(rawResponse));
   }
 
+  /**
+   * Takes a snapshot of the state, which {@link DefaultRecoverable} does at each of its checkpoints
+   * and when it creates its log. Every {@code checkpointInterval}-th checkpoint is also written to
+   * the checkpoint files of the replica, if it has durable state.
+   */
   @Override
   public byte[] getSnapshot() {
-    return Serializer.toBytes(this.state);
+    var event = new SnapshotEvent();
+    event.begin();
+
+    var snapshot = Serializer.toBytes(new ReplicaSnapshot(this.state, application.snapshot()));
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.groupID = info.groupID();
+      event.serverID = info.serverID();
+      event.size = snapshot.length;
+      event.commit();
+    }
+
+    checkpoint(snapshot);
+    return snapshot;
   }
 
   @Override
   public void installSnapshot(byte[] state) {
     try {
-      this.state = Serializer.fromBytes(state, ReplicaState.class);
+      var snapshot = Serializer.fromBytes(state, ReplicaSnapshot.class);
+      this.state = snapshot.state();
+      this.application.install(snapshot.application());
     } catch (Exception e) {
       logger.error("Failed to deserialize snapshot", e);
       throw new RuntimeException(e);
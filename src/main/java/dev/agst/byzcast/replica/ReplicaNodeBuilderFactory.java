@@ -1,9 +1,17 @@
 package dev.agst.byzcast.replica;
 
 import dev.agst.byzcast.Logger;
+import dev.agst.byzcast.app.DeliveryHandler;
 import dev.agst.byzcast.group.GroupConfigFinder;
 import dev.agst.byzcast.group.GroupProxies;
+import dev.agst.byzcast.replay.BatchRecorder;
 import dev.agst.byzcast.topology.Topology;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * A builder class for creating instances of {@link ReplicaNode}. This class facilitates the
@@ -31,14 +39,56 @@ public class ReplicaNodeBuilderFactory {
   }
 
   public static interface TopologyConfigurator {
-    RequestCountConfigurator withTopology(Topology topology);
+    DeliveryHandlerConfigurator withTopology(Topology topology);
   }
 
-  public static interface RequestCountConfigurator {
-    Buildable withTargetRequestCount(int targetRequestCount);
+  public static interface DeliveryHandlerConfigurator {
+    Buildable withDeliveryHandler(DeliveryHandler application);
   }
 
   public static interface Buildable {
+    /**
+     * Makes the state of the replica durable. Optional; without it, the state of the replica only
+     * lives in memory.
+     */
+    Buildable withDurability(Durability durability);
+
+    /**
+     * Limits the number of client requests admitted towards each next group per ordered batch,
+     * which bounds the rate at which the group forwards requests rather than how many of them are
+     * outstanding. Optional; without it, every client request is admitted.
+     */
+    Buildable withBatchAdmissionLimit(int batchAdmissionLimit);
+
+    /**
+     * Sets the deadlines and circuit breakers of the forwards to the next groups. Optional;
+     * defaults to {@link ForwardPolicy#UNBOUNDED}.
+     */
+    Buildable withForwardPolicy(ForwardPolicy forwardPolicy);
+
+    /**
+     * Sends the replies to requests forwarded to other groups from a separate lane, once their
+     * forwards return, so that the other requests of their batch are answered right away. Optional;
+     * without it, every reply of a batch waits for the forwards of the whole batch.
+     *
+     * @param replier The replier of the replica, through which the forward lane sends its replies.
+     */
+    Buildable withPriorityLanes(ReplicaReplier replier);
+
+    /**
+     * Records every executed batch into a file of the given directory, named after the replica, so
+     * that the batches can be replayed by a {@link dev.agst.byzcast.replay.BatchReplayer}.
+     * Optional; without it, nothing is recorded.
+     */
+    Buildable withBatchRecording(Path directory);
+
+    /**
+     * Replaces the proxies through which requests are forwarded to the next groups. Optional;
+     * without it, proxies connect to the groups found by the config finder. Meant for replaying
+     * batches without the rest of the system.
+     */
+    Buildable withGroupProxies(GroupProxies proxies);
+
     ReplicaNode build();
   }
 
@@ -47,7 +97,7 @@ public class ReplicaNodeBuilderFactory {
           InfoConfigurator,
           ConfigFinderConfigurartor,
           TopologyConfigurator,
-          RequestCountConfigurator,
+          DeliveryHandlerConfigurator,
           Buildable {}
 
   /**
@@ -65,16 +115,22 @@ public class ReplicaNodeBuilderFactory {
    *     .withInfo(new ReplicaInfo())
    *     .withConfigFinder(new GroupConfigFinder())
    *     .withTopology(new Topology())
-   *     .withTargetRequestCount(3)
+   *     .withDeliveryHandler(new Acknowledger())
    *     .build();
    * </pre>
    */
   public static class Builder implements ReplicaNodeBuilderSteps {
     private Logger logger;
     private ReplicaInfo info;
+    private GroupConfigFinder configFinder;
     private GroupProxies proxies;
     private Topology topology;
-    private int targetRequestCount;
+    private DeliveryHandler application;
+    private Durability durability;
+    private int batchAdmissionLimit = Integer.MAX_VALUE;
+    private ForwardPolicy forwardPolicy = ForwardPolicy.UNBOUNDED;
+    private ReplicaReplier laneReplier;
+    private Path recordingDirectory;
 
     @Override
     public InfoConfigurator withLogger(Logger logger) {
@@ -90,27 +146,120 @@ public class ReplicaNodeBuilderFactory {
 
     @Override
     public TopologyConfigurator withConfigFinder(GroupConfigFinder configFinder) {
+      this.configFinder = configFinder;
       this.proxies = new GroupProxies(configFinder);
       return this;
     }
 
     @Override
-    public RequestCountConfigurator withTopology(Topology topology) {
+    public DeliveryHandlerConfigurator withTopology(Topology topology) {
       this.topology = topology;
       return this;
     }
 
     @Override
-    public Buildable withTargetRequestCount(int targetRequestCount) {
-      this.targetRequestCount = targetRequestCount;
+    public Buildable withDeliveryHandler(DeliveryHandler application) {
+      this.application = application;
+      return this;
+    }
+
+    @Override
+    public Buildable withDurability(Durability durability) {
+      this.durability = durability;
+      return this;
+    }
+
+    @Override
+    public Buildable withBatchAdmissionLimit(int batchAdmissionLimit) {
+      this.batchAdmissionLimit = batchAdmissionLimit;
+      return this;
+    }
+
+    @Override
+    public Buildable withForwardPolicy(ForwardPolicy forwardPolicy) {
+      this.forwardPolicy = forwardPolicy;
+      return this;
+    }
+
+    @Override
+    public Buildable withPriorityLanes(ReplicaReplier replier) {
+      this.laneReplier = replier;
+      return this;
+    }
+
+    @Override
+    public Buildable withBatchRecording(Path directory) {
+      this.recordingDirectory = directory;
       return this;
     }
 
+    @Override
+    public Buildable withGroupProxies(GroupProxies proxies) {
+      this.proxies = proxies;
+      return this;
+    }
+
+    /**
+     * Builds the node, restoring its state from its latest checkpoint if it has durable state. The
+     * node starts connecting to its next groups in the background; see {@link
+     * ReplicaNode#awaitReady(java.time.Duration)}.
+     *
+     * @throws UncheckedIOException If the checkpoint or batch recording files cannot be opened.
+     */
     @Override
     public ReplicaNode build() {
-      var requestHandler = new RequestHandler(logger, info, proxies, topology);
-      var state = new ReplicaState(targetRequestCount);
-      var replicaNode = new ReplicaNode(logger, requestHandler, state);
+      var thresholds = new ReceiveThresholds(configFinder);
+      var requestHandler =
+          new RequestHandler(
+              logger,
+              info,
+              proxies,
+              application,
+              batchAdmissionLimit,
+              forwardPolicy,
+              thresholds,
+              new FailureReporter(logger, info, configFinder, forwardPolicy),
+              laneReplier != null);
+      var state = new ReplicaState(topology);
+
+      Optional<CheckpointFile> checkpoints = Optional.empty();
+      var checkpointInterval = Integer.MAX_VALUE;
+      if (durability != null) {
+        try {
+          checkpoints = Optional.of(CheckpointFile.open(durability.directoryOf(info)));
+        } catch (IOException e) {
+          throw new UncheckedIOException("Failed to open checkpoint files", e);
+        }
+        checkpointInterval = durability.checkpointInterval();
+      }
+
+      var forwardLane =
+          Optional.ofNullable(laneReplier).map(replier -> new ForwardLane(logger, info, replier));
+
+      Optional<BatchRecorder> recorder = Optional.empty();
+      if (recordingDirectory != null) {
+        var file = String.format("group-%d-server-%d.batches", info.groupID(), info.serverID());
+        try {
+          Files.createDirectories(recordingDirectory);
+          recorder = Optional.of(new BatchRecorder(recordingDirectory.resolve(file)));
+        } catch (IOException e) {
+          throw new UncheckedIOException("Failed to open batch recording", e);
+        }
+      }
+
+      var replicaNode =
+          new ReplicaNode(
+              logger,
+              info,
+              requestHandler,
+              application,
+              state,
+              checkpoints,
+              checkpointInterval,
+              forwardLane,
+              recorder);
+      replicaNode.recover();
+      proxies.warmUp(topology.getChildrenIDs(info.groupID()).orElse(Set.of()));
 
       return replicaNode;
     }
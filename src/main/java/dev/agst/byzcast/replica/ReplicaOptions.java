@@ -0,0 +1,99 @@
+package dev.agst.byzcast.replica;
+
+import dev.agst.byzcast.replica.ReplicaNodeBuilderFactory.Buildable;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import picocli.CommandLine.Option;
+
+/** Command line options shared by every command that starts replicas. */
+public class ReplicaOptions {
+  @Option(
+      names = {"--state-dir"},
+      description =
+          "Directory in which replicas checkpoint their state (state is not durable if not set)")
+  Path stateDirectory;
+
+  @Option(
+      names = {"--checkpoint-interval"},
+      description =
+          "Number of BFT-SMaRt checkpoints (every system.totalordermulticast.checkpoint_period"
+              + " consensuses) for each one written to the state directory",
+      defaultValue = "1")
+  int checkpointInterval;
+
+  @Option(
+      names = {"--batch-admission-limit"},
+      description =
+          "Maximum number of client requests admitted towards each child group per ordered batch,"
+              + " regardless of how many forwards are still outstanding (unlimited if not"
+              + " positive)",
+      defaultValue = "0")
+  int batchAdmissionLimit;
+
+  @Option(
+      names = {"--forward-deadline"},
+      description =
+          "Milliseconds after which a forward to a child group counts as failed towards its"
+              + " circuit breaker (only failed forwards count if not positive)",
+      defaultValue = "0")
+  long forwardDeadline;
+
+  @Option(
+      names = {"--child-deadline"},
+      description = "Deadline of the forwards to a specific child group, as GROUP_ID=MILLISECONDS")
+  Map<Integer, Long> childDeadlines = new HashMap<>();
+
+  @Option(
+      names = {"--breaker-threshold"},
+      description =
+          "Consecutive failed forwards after which a replica reports a child group, which is"
+              + " skipped once F+1 replicas do (disabled if not positive)",
+      defaultValue = "0")
+  int breakerThreshold;
+
+  @Option(
+      names = {"--breaker-cooldown"},
+      description = "Ordered batches during which a skipped child group is not forwarded to",
+      defaultValue = "100")
+  long breakerCooldown;
+
+  @Option(
+      names = {"--priority-lanes"},
+      description =
+          "Reply to requests forwarded to child groups once their forwards return, without holding"
+              + " back the other replies of their batch")
+  boolean priorityLanes;
+
+  @Option(
+      names = {"--record-batches"},
+      description = "Directory in which replicas record their ordered batches for offline replay")
+  Path recordingDirectory;
+
+  public Optional<Durability> durability() {
+    return Optional.ofNullable(stateDirectory)
+        .map(directory -> new Durability(directory, checkpointInterval));
+  }
+
+  /**
+   * Applies the options to the builder of a replica.
+   *
+   * @param replier The replier of the replica, used by the forward lane with priority lanes.
+   */
+  public Buildable configure(Buildable builder, ReplicaReplier replier) {
+    durability().ifPresent(builder::withDurability);
+    if (batchAdmissionLimit > 0) {
+      builder.withBatchAdmissionLimit(batchAdmissionLimit);
+    }
+    builder.withForwardPolicy(
+        new ForwardPolicy(forwardDeadline, childDeadlines, breakerThreshold, breakerCooldown));
+    if (priorityLanes) {
+      builder.withPriorityLanes(replier);
+    }
+    if (recordingDirectory != null) {
+      builder.withBatchRecording(recordingDirectory);
+    }
+    return builder;
+  }
+}
@@ -4,15 +4,19 @@ import bftsmart.tom.MessageContext;
 import bftsmart.tom.ReplicaContext;
 import bftsmart.tom.core.messages.TOMMessage;
 import bftsmart.tom.server.Replier;
+import dev.agst.byzcast.LRUCache;
 import dev.agst.byzcast.Serializer;
 import dev.agst.byzcast.SerializingException;
 import dev.agst.byzcast.Logger;
+import dev.agst.byzcast.jfr.ReplyFanOutEvent;
 import dev.agst.byzcast.message.Response;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -36,9 +40,20 @@ import java.util.concurrent.locks.ReentrantLock;
  * for processing are satisfied or immediately forwarding the response if the request has already
  * been completed.
  *
+ * <p>With priority lanes, the results of forwarded requests are not returned by the application
+ * methods at all. The forward lane {@linkplain #expect(UUID) announces} them before the batch that
+ * handled their requests returns, and passes them to {@link #complete(UUID, byte[])} once the
+ * forwards return, answering every copy of the request queued until then. The results are kept
+ * for a while afterwards, so that copies that arrive later, or a reply that reaches the replier
+ * after its result, are answered right away. A deferred copy whose result is neither expected nor
+ * kept, such as one received after its result was evicted, or after the replica recovered through
+ * state transfer, is answered with {@code RESPONSE_EXPIRED} instead of being queued forever.
+ *
  * @see dev.agst.byzcast.replica.ReplicaReply
  */
 public class ReplicaReplier implements Replier {
+  private final ReplicaInfo info;
+
   private final Lock replyLock = new ReentrantLock();
   private final Condition isContextSet = replyLock.newCondition();
 
@@ -47,6 +62,22 @@ public class ReplicaReplier implements Replier {
   private Map<UUID, List<TOMMessage>> pendingRequests =
       Collections.synchronizedMap(new HashMap<>());
 
+  /**
+   * The results passed to {@link #complete(UUID, byte[])}, by request ID. It is guarded by the lock
+   * of {@link #pendingRequests}.
+   */
+  private final LRUCache<UUID, byte[]> completedResults = new LRUCache<>(4096);
+
+  /**
+   * The requests announced through {@link #expect(UUID)} whose results are yet to be completed. It
+   * is guarded by the lock of {@link #pendingRequests}.
+   */
+  private final Set<UUID> expected = new HashSet<>();
+
+  public ReplicaReplier(ReplicaInfo info) {
+    this.info = info;
+  }
+
   @Override
   public void manageReply(TOMMessage msg, MessageContext ctx) {
     while (this.replicaContext == null) {
@@ -69,45 +100,137 @@ public class ReplicaReplier implements Replier {
 
       var response = new Response("EXCEPTIONAL_ERROR", null);
       msg.reply.setContent(Serializer.toBytes(response));
-      replicaContext.getServerCommunicationSystem().send(new int[] {msg.getSender()}, msg.reply);
+      send(msg);
       return;
     }
 
     switch (deserializedReply) {
       case ReplicaReply.Pending pending:
         {
-          this.pendingRequests
-              .computeIfAbsent(pending.id(), k -> Collections.synchronizedList(new ArrayList<>()))
-              .add(msg);
+          byte[] result;
+          synchronized (this.pendingRequests) {
+            result = this.completedResults.get(pending.id());
+            if (result == null) {
+              this.pendingRequests
+                  .computeIfAbsent(
+                      pending.id(), k -> Collections.synchronizedList(new ArrayList<>()))
+                  .add(msg);
+            }
+          }
+
+          if (result != null) {
+            fanOut(pending.id(), result, List.of(msg));
+          }
           break;
         }
       case ReplicaReply.Completed completed:
         {
-          var pendingList = this.pendingRequests.remove(completed.id());
-          pendingList.add(msg);
-
-          pendingList.forEach(
-              pendingMessage -> {
-                // I'm not sure whether the contents required to be cloned, but this is
-                // done in case the library modifies the array buffer
-                pendingMessage.reply.setContent(completed.result().clone());
-                replicaContext
-                    .getServerCommunicationSystem()
-                    .send(new int[] {pendingMessage.getSender()}, pendingMessage.reply);
-              });
+          // with a receive threshold of one, no copy of the request was queued before it completed
+          var receivers = new ArrayList<TOMMessage>();
+          synchronized (this.pendingRequests) {
+            this.completedResults.put(completed.id(), completed.result());
+            var pendingList = this.pendingRequests.remove(completed.id());
+            if (pendingList != null) {
+              receivers.addAll(pendingList);
+            }
+          }
+          receivers.add(msg);
+          fanOut(completed.id(), completed.result(), receivers);
+          break;
+        }
+      case ReplicaReply.Deferred deferred:
+        {
+          byte[] result;
+          var isExpected = false;
+          synchronized (this.pendingRequests) {
+            result = this.completedResults.get(deferred.id());
+            if (result == null && this.expected.contains(deferred.id())) {
+              this.pendingRequests
+                  .computeIfAbsent(
+                      deferred.id(), k -> Collections.synchronizedList(new ArrayList<>()))
+                  .add(msg);
+              isExpected = true;
+            }
+          }
+
+          if (result == null && !isExpected) {
+            result = Serializer.toBytes(new Response("RESPONSE_EXPIRED", new ArrayList<>()));
+          }
+          if (result != null) {
+            fanOut(deferred.id(), result, List.of(msg));
+          }
           break;
         }
       case ReplicaReply.Raw raw:
         {
           msg.reply.setContent(raw.data());
-          replicaContext
-              .getServerCommunicationSystem()
-              .send(new int[] {msg.getSender()}, msg.reply);
+          send(msg);
           break;
         }
     }
   }
 
+  /**
+   * Announces that the result of a request will be passed to {@link #complete(UUID, byte[])}, so
+   * that its deferred copies are queued until then. Must be called before the batch that handled
+   * the request returns.
+   *
+   * @param id The ID of the request.
+   */
+  public void expect(UUID id) {
+    synchronized (this.pendingRequests) {
+      this.expected.add(id);
+    }
+  }
+
+  /**
+   * Answers every queued copy of a request whose result was not returned by the application
+   * methods. Copies of the request received afterwards are answered with the same result.
+   *
+   * @param id The ID of the request.
+   * @param result The result of the request.
+   */
+  public void complete(UUID id, byte[] result) {
+    List<TOMMessage> pendingList;
+    synchronized (this.pendingRequests) {
+      this.expected.remove(id);
+      this.completedResults.put(id, result);
+      pendingList = this.pendingRequests.remove(id);
+    }
+
+    if (pendingList != null) {
+      fanOut(id, result, pendingList);
+    }
+  }
+
+  /** Sends the result of a request to every given copy of it. */
+  private void fanOut(UUID id, byte[] result, List<TOMMessage> receivers) {
+    var event = new ReplyFanOutEvent();
+    event.begin();
+
+    receivers.forEach(
+        pendingMessage -> {
+          // I'm not sure whether the contents required to be cloned, but this is
+          // done in case the library modifies the array buffer
+          pendingMessage.reply.setContent(result.clone());
+          send(pendingMessage);
+        });
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.requestID = id.toString();
+      event.groupID = info.groupID();
+      event.receivers = receivers.size();
+      event.replySize = result.length;
+      event.commit();
+    }
+  }
+
+  /** Sends the reply of a message to the client that sent the message. */
+  void send(TOMMessage msg) {
+    replicaContext.getServerCommunicationSystem().send(new int[] {msg.getSender()}, msg.reply);
+  }
+
   @Override
   public void setReplicaContext(ReplicaContext rc) {
     replyLock.lock();
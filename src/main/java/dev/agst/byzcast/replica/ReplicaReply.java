@@ -13,7 +13,7 @@ import java.util.UUID;
  * ReplicaReplier} can effectively manage and route responses based on their current state and
  * content.
  *
- * <p>Implementations of this interface are categorized into three distinct records, each serving a
+ * <p>Implementations of this interface are categorized into four distinct records, each serving a
  * unique purpose within the system's communication flow:
  *
  * <ul>
@@ -27,6 +27,9 @@ import java.util.UUID;
  *   <li>{@code Raw} - Represents a reply containing raw data intended for direct forwarding to the
  *       client. This type bypasses additional processing or aggregation, facilitating immediate
  *       response delivery.
+ *   <li>{@code Deferred} - Indicates that a request has been processed, but that its result is sent
+ *       by the forward lane once its forwards return. The {@code ReplicaReplier} queues the request
+ *       until then, or answers it right away if the result is already known or will never be.
  * </ul>
  *
  * @see dev.agst.byzcast.replica.ReplicaReplier
@@ -37,4 +40,6 @@ public sealed interface ReplicaReply extends Serializable {
   record Completed(UUID id, byte[] result) implements ReplicaReply {}
 
   record Raw(byte[] data) implements ReplicaReply {}
+
+  record Deferred(UUID id) implements ReplicaReply {}
 }
@@ -0,0 +1,93 @@
+package dev.agst.byzcast.replica;
+
+import bftsmart.tom.ServiceReplica;
+import dev.agst.byzcast.Logger;
+import dev.agst.byzcast.Logger.Attr;
+import dev.agst.byzcast.app.DeliveryHandler;
+import dev.agst.byzcast.group.GroupConfigFinder;
+import dev.agst.byzcast.topology.Topology;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A running ByzCast replica: the BFT-SMaRt {@link ServiceReplica} along with the {@link
+ * ReplicaNode} and {@link ReplicaReplier} that implement the protocol on top of it. Several servers
+ * may run within the same process, as long as they use different ports.
+ */
+public class ReplicaServer implements AutoCloseable {
+  private final ReplicaInfo info;
+  private final ReplicaNode node;
+  private final ServiceReplica replica;
+
+  private ReplicaServer(ReplicaInfo info, ReplicaNode node, ServiceReplica replica) {
+    this.info = info;
+    this.node = node;
+    this.replica = replica;
+  }
+
+  /**
+   * Starts a replica. This method returns once BFT-SMaRt has initialized the replica, which does
+   * not mean the rest of its group or its next groups are reachable yet; see {@link
+   * #awaitReady(Duration)}.
+   *
+   * @param info The identity of the replica.
+   * @param topology The topology of the system.
+   * @param configFinder The finder used to locate the configuration of every group.
+   * @param application The handler of the messages delivered by the replica.
+   * @param options The optional settings of the replica. With durable state, the replica first
+   *     recovers from its latest checkpoint.
+   * @return The running replica.
+   */
+  public static ReplicaServer start(
+      ReplicaInfo info,
+      Topology topology,
+      GroupConfigFinder configFinder,
+      DeliveryHandler application,
+      ReplicaOptions options) {
+    var logger =
+        new Logger().with(new Attr("GID", info.groupID()), new Attr("SID", info.serverID()));
+
+    var builder =
+        ReplicaNode.builder()
+            .withLogger(logger)
+            .withInfo(info)
+            .withConfigFinder(configFinder)
+            .withTopology(topology)
+            .withDeliveryHandler(application);
+    var replier = new ReplicaReplier(info);
+    var replicaNode = options.configure(builder, replier).build();
+
+    var replica =
+        new ServiceReplica(
+            info.serverID(),
+            configFinder.forGroup(info.groupID()),
+            replicaNode,
+            replicaNode,
+            null,
+            replier);
+
+    return new ReplicaServer(info, replicaNode, replica);
+  }
+
+  public ReplicaInfo info() {
+    return info;
+  }
+
+  /**
+   * Blocks until the replica is connected to every one of its next groups, so that the first
+   * requests forwarded to them do not pay for the connection setup.
+   *
+   * @param timeout The maximum time to wait.
+   * @throws TimeoutException If some next group is still unreachable once the timeout expires.
+   */
+  public void awaitReady(Duration timeout) throws TimeoutException, InterruptedException {
+    node.awaitReady(timeout);
+  }
+
+  /** Stops the replica, closing its connections to clients and to the other replicas. */
+  @Override
+  public void close() {
+    replica.kill();
+    node.close();
+  }
+}
@@ -0,0 +1,12 @@
+package dev.agst.byzcast.replica;
+
+import java.io.Serializable;
+
+/**
+ * The state transferred to recovering replicas: the protocol state along with the state of the
+ * application.
+ *
+ * @param state The protocol state of the replica.
+ * @param application The state of the application, as serialized by its handler.
+ */
+record ReplicaSnapshot(ReplicaState state, byte[] application) implements Serializable {}
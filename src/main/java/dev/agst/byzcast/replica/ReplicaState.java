@@ -1,12 +1,16 @@
 package dev.agst.byzcast.replica;
 
 import dev.agst.byzcast.LRUCache;
+import dev.agst.byzcast.blob.BlobStore;
 import dev.agst.byzcast.message.Request;
 import dev.agst.byzcast.message.Response;
+import dev.agst.byzcast.message.SessionID;
+import dev.agst.byzcast.topology.Topology;
+import dev.agst.byzcast.topology.VersionedTopology;
 import java.io.Serializable;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.UUID;
 
 /**
@@ -14,13 +18,23 @@ import java.util.UUID;
  * distributed system. It plays a crucial role in handling the coordination and communication
  * between replicas by:
  *
- * <p>1. Storing incoming requests from other replicas until they accumulate to a predefined
- * threshold (N-F), where N is the total number of replicas and F is the maximum number of faulty
- * replicas the system can tolerate.
+ * <p>1. Storing incoming requests from other replicas until they accumulate to the threshold
+ * (N-F) of the group that forwarded them, where N is the total number of replicas of that group and
+ * F is the maximum number of faulty replicas it can tolerate.
  *
  * <p>2. Caching the responses to these requests. This cache prevents the need for reprocessing a
  * request if additional replicas send the same request after the threshold has been reached.
  *
+ * <p>3. Holding the current topology and its epoch, which change when a reconfiguration request is
+ * delivered. As the topology is part of the state, replicas recovering through state transfer
+ * also recover the current epoch.
+ *
+ * <p>4. Storing the payloads of offloaded multicasts, which clients upload to each target group as
+ * ordered requests before multicasting their digests.
+ *
+ * <p>5. Holding the circuit breakers of the next groups, along with the number of batches executed
+ * by the group, which is the clock that drives them.
+ *
  * @see dev.agst.byzcast.replica.ReplicaReplier
  */
 public class ReplicaState implements Serializable {
@@ -37,12 +51,6 @@ public class ReplicaState implements Serializable {
   // (including the LRU cache implementation), I assume this issue does not apply. However, I
   // haven't tested this out.
 
-  /**
-   * A set to keep track of handled requests to ensure that a request is processed only once. This
-   * is currently a placeholder for the business logic that could be implemented in the future.
-   */
-  private final LinkedHashSet<Request> handled = new LinkedHashSet<>();
-
   /**
    * A map to keep track of the number of times a request has been received. This is used to
    * determine when a request has met the minimum receive count and is ready to be processed.
@@ -57,37 +65,150 @@ public class ReplicaState implements Serializable {
   private final LRUCache<UUID, Response> cache = new LRUCache<>(2056);
 
   /**
-   * The minimum number of times a request must be received before it is considered ready for
-   * processing. This threshold is based on ByzCast parameters, specifically the formula N-F, where
-   * N is the total number of replicas and F is the maximum number of faulty replicas the system can
-   * tolerate. This ensures that a request is only processed when it has been received from a
-   * sufficient number of replicas to guarantee consensus in the presence of faults.
+   * The receive counts and responses of requests with session IDs, which are kept per client
+   * session instead of in {@link #pending} and {@link #cache}.
+   */
+  private final SessionTable sessions = new SessionTable(4096);
+
+  /**
+   * The maximum total size of the payloads held by the blob store. It is kept small, as the blob
+   * store is part of every snapshot.
+   */
+  private static final long BLOB_STORE_CAPACITY = 64L << 20;
+
+  /** The payloads uploaded ahead of offloaded multicasts to this group. */
+  private final BlobStore blobs = new BlobStore(BLOB_STORE_CAPACITY);
+
+  /** The circuit breaker of each next group, created as the group is first reported. */
+  private final TreeMap<Integer, CircuitBreaker> breakers = new TreeMap<>();
+
+  /** The number of batches executed so far. */
+  private long batches = 0;
+
+  /**
+   * The response cached for requests whose actual response is sent outside of the ordered
+   * execution. It has no list of group responses, unlike every response built by a replica.
    */
-  private final int minReceiveCount;
+  private static final Response DEFERRED = new Response(null, null);
+
+  /**
+   * The current topology. It is volatile as queries read it outside of the thread that executes
+   * ordered requests.
+   */
+  private volatile VersionedTopology topology;
+
+  public ReplicaState(Topology topology) {
+    this.topology = new VersionedTopology(0, topology);
+  }
+
+  public VersionedTopology topology() {
+    return topology;
+  }
+
+  /** Returns the blob store of the group, which may only be accessed by ordered requests. */
+  public BlobStore blobs() {
+    return blobs;
+  }
+
+  /** Counts a batch as executed. Must be called once at the start of every ordered batch. */
+  public void tick() {
+    batches++;
+  }
 
-  public ReplicaState(int minReceiveCount) {
-    this.minReceiveCount = minReceiveCount;
+  /** Returns the number of batches executed so far, which serves as a clock for ordered input. */
+  public long clock() {
+    return batches;
   }
 
+  /** Returns the breaker of a next group, which may only be accessed by ordered requests. */
+  CircuitBreaker breaker(int groupID) {
+    return breakers.computeIfAbsent(groupID, id -> new CircuitBreaker());
+  }
+
+  /**
+   * Replaces the current topology, moving to the next epoch.
+   *
+   * @param next The topology of the next epoch.
+   */
+  public void reconfigure(Topology next) {
+    topology = topology.next(next);
+  }
+
+  /**
+   * Returns the cached response to a request, which is only meaningful if the request is not
+   * {@linkplain #isDeferred(UUID) deferred}.
+   */
   public Optional<Response> getCachedResponse(UUID id) {
+    var optSessionID = SessionID.of(id);
+    if (optSessionID.isPresent()) {
+      return sessions.response(optSessionID.get());
+    }
     return Optional.ofNullable(cache.get(id));
   }
 
+  /**
+   * Whether the entries of a request were dropped after its client completed it, in which case the
+   * request must be refused, as counting its copies again could deliver it twice. Only requests
+   * with session IDs expire; others are evicted from {@link #pending} and {@link #cache} instead.
+   */
+  public boolean isExpired(Request request) {
+    return SessionID.of(request.id()).filter(sessions::isExpired).isPresent();
+  }
+
+  /**
+   * Whether the session of a request holds too many requests above its low watermark to take a new
+   * one, in which case the request must be refused until its client completes earlier requests.
+   * Only requests with session IDs are bounded this way.
+   */
+  public boolean isSessionFull(Request request) {
+    return SessionID.of(request.id())
+        .filter(id -> sessions.isFull(id, request.lowWatermark()))
+        .isPresent();
+  }
+
   /**
    * Sets a request as pending and returns whether the request has reached the minimum number of
    * receives required to be processed.
+   *
+   * @param request The received copy of the request.
+   * @param minReceiveCount The receive threshold of the group that forwarded the request. It is
+   *     based on ByzCast parameters, specifically the formula N-F, which ensures that a request is
+   *     only processed when it has been received from a sufficient number of replicas of that group
+   *     to guarantee consensus in the presence of faults.
    */
-  public boolean enqueue(Request request) {
-    var pendingTotal = this.pending.compute(request.id(), (k, v) -> (v == null) ? 1 : v + 1);
+  public boolean enqueue(Request request, int minReceiveCount) {
+    var optSessionID = SessionID.of(request.id());
+    var pendingTotal =
+        optSessionID.isPresent()
+            ? sessions.enqueue(optSessionID.get(), request.lowWatermark())
+            : this.pending.compute(request.id(), (k, v) -> (v == null) ? 1 : v + 1);
     return pendingTotal == minReceiveCount;
   }
 
+  /**
+   * Stops counting the copies of a request whose response is sent by the forward lane, once its
+   * forwards return. As that happens outside of the ordered execution, the response itself is not
+   * part of the state; copies received afterwards are answered by the {@link ReplicaReplier}.
+   *
+   * @param request The request that has reached its receive threshold.
+   */
+  public void deferResponse(Request request) {
+    cacheResponse(request, DEFERRED);
+  }
+
+  /** Whether the response to a request is sent by the forward lane. */
+  public boolean isDeferred(UUID id) {
+    return getCachedResponse(id).filter(DEFERRED::equals).isPresent();
+  }
+
   public void cacheResponse(Request request, Response response) {
+    var optSessionID = SessionID.of(request.id());
+    if (optSessionID.isPresent()) {
+      sessions.cacheResponse(optSessionID.get(), request.lowWatermark(), response);
+      return;
+    }
+
     cache.put(request.id(), response);
     pending.remove(request.id());
   }
-
-  public void markAsHandled(Request request) {
-    handled.add(request);
-  }
 }
@@ -1,22 +1,41 @@
 package dev.agst.byzcast.replica;
 
-import bftsmart.tom.ServiceProxy;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import dev.agst.byzcast.LRUCache;
 import dev.agst.byzcast.Logger;
 import dev.agst.byzcast.Logger.Attr;
 import dev.agst.byzcast.Serializer;
+import dev.agst.byzcast.SerializingException;
+import dev.agst.byzcast.app.DeliveryHandler;
 import dev.agst.byzcast.group.GroupProxies;
+import dev.agst.byzcast.jfr.ForwardEvent;
+import dev.agst.byzcast.jfr.RequestEnqueueEvent;
+import dev.agst.byzcast.jfr.ThresholdReachedEvent;
+import dev.agst.byzcast.message.CompactResponse;
+import dev.agst.byzcast.message.MessageBatch;
+import dev.agst.byzcast.message.Query;
+import dev.agst.byzcast.message.ReplyDigest;
 import dev.agst.byzcast.message.Request;
 import dev.agst.byzcast.message.Response;
 import dev.agst.byzcast.message.Response.GroupResponse;
 import dev.agst.byzcast.topology.Topology;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -32,16 +51,67 @@ public class RequestHandler {
   private final ReplicaInfo info;
 
   private final GroupProxies proxies;
-  private final Topology topology;
+  private final DeliveryHandler application;
 
-  /** The executor responsible for async requests sent upstream */
-  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  /** The maximum number of client requests admitted towards each next group per ordered batch. */
+  private final int batchAdmissionLimit;
 
-  public RequestHandler(Logger logger, ReplicaInfo info, GroupProxies proxies, Topology topology) {
+  /** The deadlines and circuit breaker settings of the forwards to the next groups. */
+  private final ForwardPolicy forwardPolicy;
+
+  /** The receive thresholds of the requests forwarded by each group. */
+  private final ReceiveThresholds thresholds;
+
+  /** Whether the replies to forwarded requests are sent by the forward lane. */
+  private final boolean priorityLanes;
+
+  /** Reports the next groups whose forwards keep failing, so that their breakers open. */
+  private final FailureReporter reporter;
+
+  /**
+   * The number of times a forward is retried while the target group is in an older epoch, which
+   * bounds the retries to about 1.5 seconds.
+   */
+  private static final int MAX_EPOCH_RETRIES = 20;
+
+  /** The maximum delay between retries of a forward, in milliseconds. */
+  private static final long MAX_RETRY_DELAY = 100;
+
+  /**
+   * The full responses to the latest requests with the {@code DIGEST} reply mode, which are fetched
+   * through {@link Query.FetchReply} if the replica designated to send them does not. As they are
+   * only read by queries, they are not part of the replicated state. Guarded by its own lock.
+   */
+  private final LRUCache<UUID, Response> recentReplies = new LRUCache<>(4096);
+
+  /**
+   * The instant, in nanoseconds, at which the first copy of each pending request was counted. It is
+   * only populated while {@link ThresholdReachedEvent} is enabled, so that it costs nothing when
+   * no recording is active. It is bounded, as requests that never reach their threshold are never
+   * removed from it; the wait time of a request evicted from it is reported as zero. It is only
+   * accessed by the thread that executes ordered requests.
+   */
+  private final LRUCache<UUID, Long> firstEnqueuedAt = new LRUCache<>(4096);
+
+  RequestHandler(
+      Logger logger,
+      ReplicaInfo info,
+      GroupProxies proxies,
+      DeliveryHandler application,
+      int batchAdmissionLimit,
+      ForwardPolicy forwardPolicy,
+      ReceiveThresholds thresholds,
+      FailureReporter reporter,
+      boolean priorityLanes) {
     this.logger = logger;
     this.info = info;
     this.proxies = proxies;
-    this.topology = topology;
+    this.application = application;
+    this.batchAdmissionLimit = batchAdmissionLimit;
+    this.forwardPolicy = forwardPolicy;
+    this.thresholds = thresholds;
+    this.reporter = reporter;
+    this.priorityLanes = priorityLanes;
   }
 
   /**
@@ -51,76 +121,487 @@ public class RequestHandler {
    * based on its readiness. This method logs the request handling process and returns a {@link
    * ReplicaReply} indicating the outcome.
    *
+   * <p>Messages delivered by the local group are only added to the batch, so the reply can only be
+   * obtained once the batch has been passed to {@link #deliver(DeliveryBatch)}. With priority
+   * lanes, requests forwarded to other groups are answered with a {@link ReplicaReply.Deferred}
+   * reply instead, and their actual replies are added to the batch as {@linkplain
+   * DeliveryBatch#defer deferred replies}, whose forwards are awaited by the forward lane.
+   *
    * @param request The {@link Request} object representing the incoming request.
+   * @param sender The process ID of the BFT-SMaRt client that sent the request, or -1 if unknown.
    * @param state The current {@link ReplicaState} of the node, used for managing request states and
    *     caching.
-   * @return A {@link ReplicaReply} object representing the outcome of the request handling. This
-   *     could be a raw response, a pending status, or a completed response.
+   * @param batch The batch that the request is part of.
+   * @return A supplier of the {@link ReplicaReply} object representing the outcome of the request
+   *     handling. This could be a raw response, a pending status, or a completed response.
    */
-  public ReplicaReply handle(Request request, ReplicaState state) {
+  Supplier<ReplicaReply> handle(
+      Request request, int sender, ReplicaState state, DeliveryBatch batch) {
     var logger = this.logger.with(new Attr("RID", request.id()));
 
+    if (request.kind() == Request.Kind.FAILURE_REPORT) {
+      return handleFailureReport(request, sender, state, logger);
+    }
+
     if (request.source() == Request.Source.CLIENT) {
-      logger.info("Request is client request");
-      var response = this.handleReadyRequest(request, state, logger);
-      return new ReplicaReply.Raw(Serializer.toBytes(response));
+      if (request.deliveryClass() == Request.DeliveryClass.RELAXED) {
+        logger = logger.with(new Attr("class", "RELAXED"));
+      }
+
+      var targetsAttr =
+          Arrays.stream(request.targetGroups())
+              .mapToObj(Integer::toString)
+              .collect(Collectors.joining(","));
+      logger.info("Request is client request", new Attr("targets", targetsAttr));
+
+      if (request.deliveryClass() == Request.DeliveryClass.RELAXED) {
+        return handleRelaxedRequest(request, state, batch, logger);
+      }
+
+      var optRefusal =
+          checkEpoch(request, state)
+              .or(() -> checkReconfiguration(request, state))
+              .or(() -> checkAdmission(request, state, batch));
+      if (optRefusal.isPresent()) {
+        logger.info("Request refused", new Attr("reason", optRefusal.get().content()));
+        var refusal = new ReplicaReply.Raw(Serializer.toBytes(optRefusal.get()));
+        return () -> refusal;
+      }
+
+      var response = this.handleReadyRequest(request, state, batch, logger);
+      if (this.isDeferred(request)) {
+        return defer(request, response, batch);
+      }
+      return () -> new ReplicaReply.Raw(encode(request, response.get()));
     }
 
     logger = logger.with(new Attr("source", "REPLICA"));
-    var optCachedResponse = state.getCachedResponse(request.id());
+    if (state.isDeferred(request.id())) {
+      logger.info("Response is deferred");
+      var deferred = new ReplicaReply.Deferred(request.id());
+      return () -> deferred;
+    }
+
+    Optional<Supplier<Response>> optCachedResponse =
+        batch
+            .response(request.id())
+            .or(() -> state.getCachedResponse(request.id()).map(cached -> () -> cached));
     if (optCachedResponse.isPresent()) {
       logger.info("Response is cached");
       var response = optCachedResponse.get();
-      return new ReplicaReply.Raw(Serializer.toBytes(response));
+      return () -> new ReplicaReply.Raw(encode(request, response.get()));
     }
 
     logger.info("Response is not cached");
-    var isReadyToHandle = state.enqueue(request);
+    var optRefusal = checkEpoch(request, state);
+    if (optRefusal.isPresent()) {
+      logger.info("Request refused", new Attr("reason", optRefusal.get().content()));
+      var refusal = new ReplicaReply.Raw(Serializer.toBytes(optRefusal.get()));
+      return () -> refusal;
+    }
+
+    // within an epoch, forwarded requests only come from the parent of the group, as the epoch of
+    // the request was checked above
+    var optParentID = state.topology().topology().getParentID(this.info.groupID());
+    if (optParentID.isEmpty()) {
+      logger.error("Forwarded request received by a root group");
+      var refusal =
+          new ReplicaReply.Raw(
+              Serializer.toBytes(new Response("UNEXPECTED_SOURCE", new ArrayList<>())));
+      return () -> refusal;
+    }
+
+    if (state.isExpired(request)) {
+      logger.info("Request refused", new Attr("reason", "REQUEST_EXPIRED"));
+      var refusal =
+          new ReplicaReply.Raw(
+              Serializer.toBytes(new Response("REQUEST_EXPIRED", new ArrayList<>())));
+      return () -> refusal;
+    }
+
+    if (state.isSessionFull(request)) {
+      logger.info("Request refused", new Attr("reason", Response.BUSY));
+      var refusal =
+          new ReplicaReply.Raw(Serializer.toBytes(new Response(Response.BUSY, new ArrayList<>())));
+      return () -> refusal;
+    }
+
+    var threshold = this.thresholds.of(optParentID.get());
+    var isReadyToHandle = state.enqueue(request, threshold);
+    this.recordEnqueue(request, threshold, isReadyToHandle);
     if (!isReadyToHandle) {
-      return new ReplicaReply.Pending(request.id());
+      var pending = new ReplicaReply.Pending(request.id());
+      return () -> pending;
     }
 
     logger.info("Request has reached minimum receive count");
-    var response = this.handleReadyRequest(request, state, logger);
-    state.cacheResponse(request, response);
-    return new ReplicaReply.Completed(request.id(), Serializer.toBytes(response));
+    var response = this.handleReadyRequest(request, state, batch, logger);
+    if (this.isDeferred(request)) {
+      state.deferResponse(request);
+      return defer(request, response, batch);
+    }
+
+    batch.respond(request.id(), response);
+    return () -> {
+      var completed = response.get();
+      state.cacheResponse(request, completed);
+      return new ReplicaReply.Completed(request.id(), encode(request, completed));
+    };
+  }
+
+  /**
+   * Whether the reply to a request is sent by the forward lane, which is the case of every request
+   * forwarded to other groups while priority lanes are enabled. This only depends on the request,
+   * so every replica of the group places the same requests in each lane.
+   */
+  private boolean isDeferred(Request request) {
+    var targets = request.targetGroups();
+    return this.priorityLanes
+        && Arrays.stream(targets).anyMatch(groupID -> groupID != this.info.groupID());
+  }
+
+  /**
+   * Moves the reply to a ready request to the forward lane, so that the batch does not wait for the
+   * forwards of the request. Every copy of the request is answered once the reply is sent.
+   */
+  private Supplier<ReplicaReply> defer(
+      Request request, Supplier<Response> response, DeliveryBatch batch) {
+    batch.defer(request.id(), () -> encode(request, response.get()));
+    var deferred = new ReplicaReply.Deferred(request.id());
+    return () -> deferred;
+  }
+
+  /**
+   * Passes the messages delivered by the local group during a batch to the application, in a single
+   * call. If the application fails, every message of the batch is answered with {@code
+   * APPLICATION_ERROR}.
+   *
+   * @param batch The batch whose requests have all been handled.
+   */
+  void deliver(DeliveryBatch batch) {
+    var deliveries = batch.deliveries();
+    if (deliveries.isEmpty()) {
+      batch.complete(List.of());
+      return;
+    }
+
+    try {
+      batch.complete(application.deliver(List.copyOf(deliveries)));
+    } catch (Exception e) {
+      this.logger.error("Application failed to deliver batch", e);
+      batch.complete(Collections.nCopies(deliveries.size(), "APPLICATION_ERROR"));
+    }
+  }
+
+  /**
+   * Encodes the response to a handled request in the form expected by its sender. Refusals are not
+   * encoded by this method, as they are always sent as a full {@link Response}.
+   *
+   * <p>With the {@code DIGEST} reply mode, only the replica whose position in the group matches the
+   * ID of the request, modulo the size of the group, encodes the full response. The others encode
+   * its {@link ReplyDigest}, but keep the response so that it can still be fetched.
+   */
+  private byte[] encode(Request request, Response response) {
+    switch (request.replyMode()) {
+      case COMPACT:
+        // a relaxed request only reports its own delivery, as it is never forwarded
+        var targets =
+            request.deliveryClass() == Request.DeliveryClass.RELAXED
+                ? new int[] {this.info.groupID()}
+                : request.targetGroups();
+        return CompactResponse.summarize(this.info.groupID(), targets, response).toBytes();
+      case DIGEST:
+        synchronized (this.recentReplies) {
+          this.recentReplies.put(request.id(), response);
+        }
+
+        var bytes = Serializer.toBytes(response);
+        var groupSize = this.thresholds.sizeOf(this.info.groupID());
+        var fullReplier = Math.floorMod(request.id().hashCode(), groupSize);
+        return fullReplier == this.info.serverID() ? bytes : ReplyDigest.of(bytes).toBytes();
+      default:
+        return Serializer.toBytes(response);
+    }
+  }
+
+  /**
+   * Answers a query with the current state of the replica.
+   *
+   * @param query The query to be answered.
+   * @param state The current {@link ReplicaState} of the node.
+   * @return The response to the query.
+   */
+  public Response query(Query query, ReplicaState state) {
+    switch (query) {
+      case Query.FetchTopology fetch:
+        return new Response(state.topology().toJSON(), new ArrayList<>());
+      case Query.FetchReply fetch:
+        synchronized (this.recentReplies) {
+          return Optional.ofNullable(this.recentReplies.get(fetch.id()))
+              .orElse(new Response("REPLY_NOT_FOUND", new ArrayList<>()));
+        }
+    }
+  }
+
+  /**
+   * Blocks until every next group of the replica answers requests.
+   *
+   * @see GroupProxies#awaitReady(Duration)
+   */
+  void awaitReady(Duration timeout) throws TimeoutException, InterruptedException {
+    this.proxies.awaitReady(timeout);
+  }
+
+  /**
+   * Stops forwarding requests, closes the proxies towards the next groups and stops reporting
+   * failing groups.
+   */
+  void close() {
+    this.reporter.close();
+    this.proxies.close();
+  }
+
+  /**
+   * Handles a request with the {@code RELAXED} delivery class, which its client sends straight to
+   * each of its targets. The request is delivered by the local group and never forwarded, so it is
+   * neither checked against the epoch, as it is not routed through the topology, nor subject to
+   * admission control. A relaxed request carries every one of its targets, which must include the
+   * group it is sent to, and cannot be a reconfiguration; otherwise, it is refused with {@code
+   * INVALID_DELIVERY_CLASS}. Its logs are marked with {@code class=RELAXED}, so that it is left out
+   * of the cross-group order checked by {@link dev.agst.byzcast.verify.DeliveryVerifier}.
+   */
+  private Supplier<ReplicaReply> handleRelaxedRequest(
+      Request request, ReplicaState state, DeliveryBatch batch, Logger logger) {
+    var targets = request.targetGroups();
+    if (Arrays.stream(targets).noneMatch(groupID -> groupID == this.info.groupID())
+        || request.kind() == Request.Kind.RECONFIGURATION) {
+      logger.info("Request refused", new Attr("reason", "INVALID_DELIVERY_CLASS"));
+      var response = new Response("INVALID_DELIVERY_CLASS", new ArrayList<>());
+      var refusal = new ReplicaReply.Raw(Serializer.toBytes(response));
+      return () -> refusal;
+    }
+
+    var content = deliverLocally(request, state, batch, logger);
+    return () -> {
+      var response = new Response(content.get(), new ArrayList<>());
+      return new ReplicaReply.Raw(encode(request, response));
+    };
+  }
+
+  /**
+   * Handles the report of a replica of the local group whose forwards to a next group keep failing,
+   * which counts towards opening the circuit breaker of that group. A report is refused with {@code
+   * INVALID_FAILURE_REPORT} unless it was sent by the proxy of a replica of the group and names one
+   * of its children.
+   */
+  private Supplier<ReplicaReply> handleFailureReport(
+      Request request, int sender, ReplicaState state, Logger logger) {
+    var optServerID =
+        FailureReporter.serverIDOf(sender)
+            .filter(serverID -> serverID < thresholds.sizeOf(this.info.groupID()));
+    var children = state.topology().topology().getChildrenIDs(this.info.groupID());
+    Optional<Integer> optGroupID;
+    try {
+      optGroupID =
+          Optional.of(Integer.parseInt(request.content()))
+              .filter(groupID -> children.map(ids -> ids.contains(groupID)).orElse(false));
+    } catch (NumberFormatException e) {
+      optGroupID = Optional.empty();
+    }
+
+    if (optServerID.isEmpty() || optGroupID.isEmpty() || !forwardPolicy.hasBreakers()) {
+      logger.info("Request refused", new Attr("reason", "INVALID_FAILURE_REPORT"));
+      var response = new Response("INVALID_FAILURE_REPORT", new ArrayList<>());
+      var refusal = new ReplicaReply.Raw(Serializer.toBytes(response));
+      return () -> refusal;
+    }
+
+    var groupID = optGroupID.get();
+    logger.info(
+        "Failure reported",
+        new Attr("reporterID", optServerID.get()),
+        new Attr("targetGroupID", groupID));
+
+    var quorum = thresholds.faultsOf(this.info.groupID()) + 1;
+    var hasOpened =
+        state
+            .breaker(groupID)
+            .report(
+                optServerID.get(), state.clock(), quorum, forwardPolicy.breakerCooldownBatches());
+    if (hasOpened) {
+      logger.info("Circuit breaker opened", new Attr("targetGroupID", groupID));
+    }
+
+    var reply =
+        new ReplicaReply.Raw(Serializer.toBytes(new Response("REPORTED", new ArrayList<>())));
+    return () -> reply;
+  }
+
+  /**
+   * Refuses requests routed with a topology other than the current one. A request from an older
+   * epoch must be routed again by its client. A request from a newer epoch arrived before this
+   * group delivered the reconfiguration that starts that epoch, which it eventually will, so the
+   * request must be retried later. Refusals are not cached, as the same request is expected to be
+   * sent again.
+   *
+   * @return The refusal, or an empty optional if the request is in the current epoch.
+   */
+  private Optional<Response> checkEpoch(Request request, ReplicaState state) {
+    var epoch = state.topology().epoch();
+    if (request.epoch() < epoch) {
+      return Optional.of(new Response(Response.STALE_EPOCH, new ArrayList<>()));
+    }
+    if (request.epoch() > epoch) {
+      return Optional.of(new Response(Response.EPOCH_NOT_READY, new ArrayList<>()));
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Applies admission control to a request received from a client. While executing a batch, the
+   * group only admits up to {@code batchAdmissionLimit} client requests towards each next group,
+   * and refuses the following ones with {@link Response#BUSY} so that their clients back off
+   * instead of piling up in the queues of the group. Reconfigurations are always admitted.
+   *
+   * <p>This is a per-batch rate limit: the forwards admitted by earlier batches are not counted,
+   * even if they are still outstanding. Their completion is not ordered by the group, so counting
+   * them would let replicas admit different requests.
+   *
+   * @return The refusal, or an empty optional if the request is admitted.
+   */
+  private Optional<Response> checkAdmission(
+      Request request, ReplicaState state, DeliveryBatch batch) {
+    if (batchAdmissionLimit == Integer.MAX_VALUE
+        || request.kind() == Request.Kind.RECONFIGURATION) {
+      return Optional.empty();
+    }
+
+    var targetGroups =
+        Arrays.stream(request.targetGroups())
+            .filter(groupID -> groupID != this.info.groupID())
+            .boxed()
+            .toList();
+    var optNextGroups = state.topology().topology().findPaths(this.info.groupID(), targetGroups);
+    if (optNextGroups.isEmpty() || batch.admit(optNextGroups.get().keySet(), batchAdmissionLimit)) {
+      return Optional.empty();
+    }
+    return Optional.of(new Response(Response.BUSY, new ArrayList<>()));
+  }
+
+  /**
+   * Validates a reconfiguration request received from a client. Only the root validates it, as
+   * forwarded copies are only sent by a root that did. A reconfiguration must target every group
+   * and may only rearrange the existing groups, as a group that is added by it would never deliver
+   * it and would remain in the previous epoch. Both the current and the next topologies must be a
+   * single tree rooted at group zero, which is where clients send reconfigurations, as they could
+   * not reach the groups of another tree.
+   *
+   * @return The refusal, or an empty optional if the request is not an invalid reconfiguration.
+   */
+  private Optional<Response> checkReconfiguration(Request request, ReplicaState state) {
+    if (request.kind() != Request.Kind.RECONFIGURATION) {
+      return Optional.empty();
+    }
+
+    var groupIDs = state.topology().topology().getGroupIDs();
+    var targets = Arrays.stream(request.targetGroups()).boxed().collect(Collectors.toSet());
+    var optNext = parseTopology(request.content());
+    if (!targets.equals(groupIDs)
+        || !state.topology().topology().getRootIDs().equals(List.of(0))
+        || optNext.isEmpty()
+        || !optNext.get().getRootIDs().equals(List.of(0))
+        || !optNext.get().getGroupIDs().equals(groupIDs)) {
+      return Optional.of(new Response("INVALID_RECONFIGURATION", new ArrayList<>()));
+    }
+    return Optional.empty();
+  }
+
+  private static Optional<Topology> parseTopology(String layout) {
+    try {
+      var type = new TypeToken<List<List<Integer>>>() {}.getType();
+      List<List<Integer>> groups = new Gson().fromJson(layout, type);
+      return Optional.of(Topology.fromLayout(groups));
+    } catch (Exception e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Emits the JFR events related to counting a forwarded request towards its receive threshold.
+   *
+   * @param request The request whose copy has just been counted.
+   * @param threshold The receive threshold of the request.
+   * @param isReadyToHandle Whether the copy made the request reach its receive threshold.
+   */
+  private void recordEnqueue(Request request, int threshold, boolean isReadyToHandle) {
+    var enqueueEvent = new RequestEnqueueEvent();
+    if (enqueueEvent.shouldCommit()) {
+      enqueueEvent.requestID = request.id().toString();
+      enqueueEvent.groupID = this.info.groupID();
+      enqueueEvent.commit();
+    }
+
+    var thresholdEvent = new ThresholdReachedEvent();
+    if (!thresholdEvent.isEnabled()) {
+      this.firstEnqueuedAt.remove(request.id());
+      return;
+    }
+
+    var now = System.nanoTime();
+    var firstEnqueuedAt = this.firstEnqueuedAt.get(request.id());
+    if (!isReadyToHandle) {
+      if (firstEnqueuedAt == null) {
+        this.firstEnqueuedAt.put(request.id(), now);
+      }
+      return;
+    }
+
+    this.firstEnqueuedAt.remove(request.id());
+    if (thresholdEvent.shouldCommit()) {
+      thresholdEvent.requestID = request.id().toString();
+      thresholdEvent.groupID = this.info.groupID();
+      thresholdEvent.threshold = threshold;
+      thresholdEvent.waitTime = firstEnqueuedAt == null ? 0 : now - firstEnqueuedAt;
+      thresholdEvent.commit();
+    }
   }
 
   /**
    * Processes a request that is ready for handling. This method determines if the current node is
-   * targeted by the request and marks it as handled if so. If there are further target groups, it
+   * targeted by the request and delivers it if so. If there are further target groups, it
    * forwards the request to them. This method is responsible for generating a {@link Response}
    * based on the request's target groups and the current node's ability to handle or forward the
    * request.
    *
    * @param request The {@link Request} object that is ready to be processed.
-   * @param state The current {@link ReplicaState} of the node, used for marking requests as
-   *     handled.
-   * @return A {@link Response} object representing the outcome of processing the request. This
-   *     could be an immediate response if the node is a target, or a composite response from
-   *     forwarding the request to other target groups.
+   * @param state The current {@link ReplicaState} of the node, used for applying reconfigurations.
+   * @param batch The batch to which the message of the request is added if it is delivered.
+   * @return A supplier of the {@link Response} object representing the outcome of processing the
+   *     request, to be called once the batch is delivered. This could be an immediate response if
+   *     the node is a target, or a composite response from forwarding the request to other target
+   *     groups, in which case the supplier blocks until the forwards return.
    */
-  private Response handleReadyRequest(Request request, ReplicaState state, Logger logger) {
+  private Supplier<Response> handleReadyRequest(
+      Request request, ReplicaState state, DeliveryBatch batch, Logger logger) {
+    // a reconfiguration is still routed through the topology that precedes it
+    var topology = state.topology().topology();
     var targetGroups =
         Arrays.stream(request.targetGroups())
             .boxed()
             .collect(Collectors.toCollection(ArrayList::new));
     var amTargeted = targetGroups.remove((Integer) this.info.groupID());
 
-    if (amTargeted) {
-      logger.info("Request locally handled");
-      state.markAsHandled(request);
-    }
-
-    var responseContent = amTargeted ? "HANDLED" : "FORWARDED";
+    Supplier<String> responseContent =
+        amTargeted ? deliverLocally(request, state, batch, logger) : () -> "FORWARDED";
     if (targetGroups.isEmpty()) {
-      return new Response(responseContent, new ArrayList<>());
+      return () -> new Response(responseContent.get(), new ArrayList<>());
     }
 
-    var optNextGroups = this.topology.findPaths(this.info.groupID(), targetGroups);
+    var optNextGroups = topology.findPaths(this.info.groupID(), targetGroups);
     if (optNextGroups.isEmpty()) {
       logger.error("No path found to target groups");
-      return new Response("NO_PATH", new ArrayList<>());
+      var response = new Response("NO_PATH", new ArrayList<>());
+      return () -> response;
     }
 
     var nextGroups = optNextGroups.get().entrySet();
@@ -142,51 +623,134 @@ public class RequestHandler {
             .toArray(Attr[]::new);
 
     logger.info("Forwarding request to target groups", forwardingAttributes);
-    var groupResponses = forwardToGroups(request, nextGroups);
-    return new Response(responseContent, groupResponses);
+    var groupResponses = forwardToGroups(request, nextGroups, state);
+    return () -> new Response(responseContent.get(), groupResponses.get());
+  }
+
+  /**
+   * Delivers a request targeting the local group. Reconfigurations are applied immediately, so that
+   * the following requests of the batch are routed through the new topology, while application
+   * messages are added to the batch. Each message of a {@code BATCH} request is added separately,
+   * and the local response holds their results as a {@link MessageBatch}. Uploaded payloads are
+   * stored in the blob store of the group, and offloaded messages are only added to the batch if
+   * their payloads are stored in it.
+   *
+   * @return A supplier of the content of the local response, to be called once the batch is
+   *     delivered.
+   */
+  private Supplier<String> deliverLocally(
+      Request request, ReplicaState state, DeliveryBatch batch, Logger logger) {
+    logger.info("Request locally handled");
+
+    if (request.kind() == Request.Kind.RECONFIGURATION) {
+      var optNext = parseTopology(request.content());
+      if (optNext.isEmpty()) {
+        logger.error("Reconfiguration is malformed");
+        return () -> "INVALID_RECONFIGURATION";
+      }
+
+      state.reconfigure(optNext.get());
+      logger.info("Topology reconfigured", new Attr("epoch", state.topology().epoch()));
+      return () -> "HANDLED";
+    }
+
+    if (request.kind() == Request.Kind.BATCH) {
+      var optMessages = MessageBatch.fromJSON(request.content());
+      if (optMessages.isEmpty()) {
+        logger.error("Batch is malformed");
+        return () -> "INVALID_BATCH";
+      }
+
+      var indices =
+          optMessages.get().messages().stream()
+              .map(message -> batch.add(request.id(), message))
+              .toList();
+      return () -> new MessageBatch(indices.stream().map(batch::result).toList()).toJSON();
+    }
+
+    if (request.kind() == Request.Kind.BLOB) {
+      var digest = state.blobs().put(request.content());
+      return () -> digest;
+    }
+
+    var optResolved = resolvePayload(request, state, logger);
+    if (optResolved.isEmpty()) {
+      return () -> "BLOB_NOT_FOUND";
+    }
+
+    var index = batch.add(optResolved.get());
+    return () -> batch.result(index);
   }
 
   /**
-   * Forwards the given request to the specified groups concurrently using virtual threads. This
-   * method prepares a new request for each target group and submits it for processing via an
-   * executor. The method collects responses from each targeted group, handling any exceptions that
-   * occur during forwarding. A composite response is constructed from the individual group
-   * responses and returned. If a forwarding operation fails for any group, a default response
-   * indicating failure is included for that group.
+   * Forwards the given request to the specified groups concurrently. This method prepares a new
+   * request for each target group and sends it, without waiting for the groups. The returned
+   * supplier collects the responses from each targeted group, handling any exceptions that occur
+   * during forwarding. A composite response is constructed from the individual group responses and
+   * returned. If a forwarding operation fails for any group, a default response indicating failure
+   * is included for that group.
+   *
+   * <p>Forwards to a group are not even attempted while its circuit breaker is open, failing
+   * immediately with {@code GROUP_<id>_CIRCUIT_OPEN}. As breakers are part of the replicated state,
+   * every replica of the group skips the same forwards.
    *
    * @param request The original request to be forwarded.
    * @param nextGroups A set of entries where each entry contains a group ID and a list of target
    *     group IDs for forwarding. This set determines the next groups to which the request should
    *     be forwarded and the subsequent target groups for each of those forwards.
-   * @return An ArrayList of GroupResponse objects that aggregates the responses from all targeted
-   *     groups.
+   * @param state The current {@link ReplicaState} of the node, which holds the circuit breakers.
+   * @return A supplier of the GroupResponse objects that aggregate the responses from all targeted
+   *     groups, which blocks until every group has answered.
    */
-  private ArrayList<GroupResponse> forwardToGroups(
-      Request request, Set<Entry<Integer, List<Integer>>> nextGroups) {
-    // I don't really like all this indentation, but my formatter wills it so it is what it is
-    var responseStream =
-        nextGroups.stream()
-            .map(
-                nextGroup -> {
-                  return forwardToGroup(request, nextGroup.getKey(), nextGroup.getValue());
-                })
-            .map(
-                future -> {
-                  try {
-                    return future.get();
-                  } catch (Exception e) {
-                    // the only "acceptable" exception here would be interrupted exception, as the
-                    // inner method forwardToGroup should handle all other exceptions
-                    throw new RuntimeException(e);
-                  }
-                });
+  private Supplier<ArrayList<GroupResponse>> forwardToGroups(
+      Request request, Set<Entry<Integer, List<Integer>>> nextGroups, ReplicaState state) {
+    // every forward is sent before any is awaited, so that they run concurrently
+    var futures = new LinkedHashMap<Integer, Optional<Future<GroupResponse>>>();
+    for (var nextGroup : nextGroups) {
+      var groupID = nextGroup.getKey();
+      var isAllowed =
+          !forwardPolicy.hasBreakers()
+              || state
+                  .breaker(groupID)
+                  .isClosed(state.clock(), forwardPolicy.breakerCooldownBatches());
+      futures.put(
+          groupID,
+          isAllowed
+              ? Optional.of(forwardToGroup(request, groupID, nextGroup.getValue()))
+              : Optional.empty());
+    }
 
-    return responseStream.collect(Collectors.toCollection(ArrayList::new));
+    return () -> {
+      var responses = new ArrayList<GroupResponse>();
+      futures.forEach(
+          (groupID, optFuture) -> {
+            if (optFuture.isEmpty()) {
+              var content = String.format("GROUP_%d_CIRCUIT_OPEN", groupID);
+              responses.add(new GroupResponse(groupID, new Response(content, new ArrayList<>())));
+              return;
+            }
+            responses.add(awaitGroup(optFuture.get()));
+          });
+      return responses;
+    };
+  }
+
+  /** Waits for the response of a group. */
+  private GroupResponse awaitGroup(Future<GroupResponse> future) {
+    try {
+      return future.get();
+    } catch (Exception e) {
+      // the only "acceptable" exception here would be interrupted exception, as the inner method
+      // forwardToGroup should handle all other exceptions
+      throw new RuntimeException(e);
+    }
   }
 
   /**
-   * Asynchronous wrap and boilerplate for {@link #forwardToGroup(Request, int, ServiceProxy)} to
-   * allow for concurrent request forwarding.
+   * Asynchronous wrap and boilerplate for {@link #forwardToGroup(Request, int)} to allow for
+   * concurrent request forwarding. The request is sent before this method returns, on the thread
+   * that executes the batch, so every group receives the requests forwarded to it in the order in
+   * which they were delivered, while many of them may await their replies at once.
    *
    * @param localReq The {@link Request} object to be sent upstream.
    * @param targetGroupID The target group ID to which the request should be forwarded.
@@ -197,33 +761,133 @@ public class RequestHandler {
   private Future<GroupResponse> forwardToGroup(
       Request localReq, int targetGroupID, List<Integer> targetGroups) {
     var groupsArray = targetGroups.stream().mapToInt(Integer::intValue).toArray();
-    var request =
-        new Request(localReq.id(), groupsArray, localReq.content(), Request.Source.REPLICA);
-    var proxy = this.proxies.forGroup(targetGroupID);
-    return executor.submit(() -> forwardToGroup(request, targetGroupID, proxy));
+    var request = localReq.forwarded(groupsArray);
+    return forwardToGroup(request, targetGroupID);
+  }
+
+  /**
+   * Replaces the digest of an offloaded request with its payload, which is read from the replicated
+   * blob store, so every replica of the group resolves the same requests.
+   *
+   * @return The resolved request, or an empty optional if the payload was never uploaded to the
+   *     group or was already evicted, in which case the request is not delivered.
+   */
+  private Optional<Request> resolvePayload(Request request, ReplicaState state, Logger logger) {
+    if (request.kind() != Request.Kind.OFFLOADED_MULTICAST) {
+      return Optional.of(request);
+    }
+
+    var optPayload = state.blobs().get(request.content());
+    if (optPayload.isEmpty()) {
+      logger.error("Payload is unavailable", new Attr("digest", request.content()));
+    }
+    return optPayload.map(request::resolved);
   }
 
   /**
-   * Sends a request to a specified upstream group via the provided service proxy. This method
-   * attempts to send the request and waits for a response. If the operation is successful, a
-   * GroupResponse containing the group ID and the response is returned. In case of any exception,
-   * an error GroupResponse is generated to ensure that the system can gracefully handle failures.
+   * Sends a request to a specified upstream group through the proxies of the replica, without
+   * waiting for a response. If the operation is successful, the future is completed with a
+   * GroupResponse containing the group ID and the response. In case of any exception, it is
+   * completed with an error GroupResponse instead, to ensure that the system can gracefully handle
+   * failures. The outcome is recorded by the {@link FailureReporter} of the replica.
    *
    * @param request The request to be sent upstream.
    * @param groupID The ID of the target group to which the request is sent.
-   * @param proxy The ServiceProxy used to send the request to the target group.
-   * @return A GroupResponse object representing the outcome of the request. This includes the group
-   *     ID and either the received response or an error message.
+   * @return A future of the GroupResponse object representing the outcome of the request. This
+   *     includes the group ID and either the received response or an error message.
+   */
+  private CompletableFuture<GroupResponse> forwardToGroup(Request request, int groupID) {
+    var event = new ForwardEvent();
+    event.begin();
+
+    var start = System.nanoTime();
+    return invokeGroup(request, groupID)
+        .whenComplete(
+            (groupResponse, error) -> {
+              var failedContent = String.format("REQUEST_TO_GROUP_%d_FAILED", groupID);
+              var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+              this.reporter.record(
+                  groupID, groupResponse.response().content().equals(failedContent), elapsedMillis);
+
+              event.end();
+              if (event.shouldCommit()) {
+                event.requestID = request.id().toString();
+                event.groupID = this.info.groupID();
+                event.targetGroupID = groupID;
+                event.status = groupResponse.response().content();
+                event.commit();
+              }
+            });
+  }
+
+  /**
+   * Sends a request to a group, retrying it while the group is yet to reach the epoch of the
+   * request. The returned future is never completed exceptionally.
    */
-  private GroupResponse forwardToGroup(Request request, int groupID, ServiceProxy proxy) {
+  private CompletableFuture<GroupResponse> invokeGroup(Request request, int groupID) {
+    byte[] requestBytes;
     try {
-      var responseBytes = proxy.invokeOrdered(Serializer.toBytes(request));
-      var response = Serializer.fromBytes(responseBytes, Response.class);
-      return new GroupResponse(groupID, response);
-    } catch (Exception e) {
-      this.logger.error("Failed to handle request", e);
-      var responseContent = String.format("REQUEST_TO_GROUP_%d_FAILED", groupID);
-      return new GroupResponse(groupID, new Response(responseContent, new ArrayList<>()));
+      requestBytes = Serializer.toBytes(request);
+    } catch (RuntimeException e) {
+      return CompletableFuture.completedFuture(failedResponse(groupID, e));
+    }
+
+    return invokeGroup(request.id(), requestBytes, groupID, 0)
+        .handle(
+            (response, error) -> {
+              if (error != null) {
+                return failedResponse(groupID, error);
+              }
+
+              if (response.content().equals(Response.EPOCH_NOT_READY)) {
+                this.logger.error(
+                    "Group did not reach the epoch", new Attr("targetGroupID", groupID));
+                var responseContent = String.format("REQUEST_TO_GROUP_%d_EPOCH_NOT_READY", groupID);
+                return new GroupResponse(groupID, new Response(responseContent, new ArrayList<>()));
+              }
+              return new GroupResponse(groupID, response);
+            });
+  }
+
+  /**
+   * Sends a request to a group, and sends it again after a delay for as long as the group answers
+   * {@link Response#EPOCH_NOT_READY}. The group is yet to receive the reconfiguration that starts
+   * the epoch of the request from its parent in the previous topology, so it refuses the requests
+   * of that epoch until it does. A retried request is sent after the requests forwarded to the
+   * group in the meantime, so the order of the batches only holds across a reconfiguration for the
+   * requests that the group accepts at first.
+   */
+  private CompletableFuture<Response> invokeGroup(
+      UUID requestID, byte[] requestBytes, int groupID, int attempt) {
+    return this.proxies
+        .invokeOrdered(groupID, requestID, requestBytes)
+        .thenApply(RequestHandler::decodeResponse)
+        .thenCompose(
+            response -> {
+              if (!response.content().equals(Response.EPOCH_NOT_READY)
+                  || attempt >= MAX_EPOCH_RETRIES) {
+                return CompletableFuture.completedFuture(response);
+              }
+
+              var delay = Math.min(MAX_RETRY_DELAY, 1L << attempt);
+              var delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+              return CompletableFuture.supplyAsync(() -> attempt + 1, delayed)
+                  .thenCompose(next -> invokeGroup(requestID, requestBytes, groupID, next));
+            });
+  }
+
+  private static Response decodeResponse(byte[] reply) {
+    try {
+      return CompactResponse.decode(reply);
+    } catch (SerializingException e) {
+      throw new CompletionException(e);
     }
   }
+
+  private GroupResponse failedResponse(int groupID, Throwable error) {
+    // failures of the proxy itself are reported by GroupProxies, which reconnects the group
+    this.logger.error("Failed to handle request", error);
+    var responseContent = String.format("REQUEST_TO_GROUP_%d_FAILED", groupID);
+    return new GroupResponse(groupID, new Response(responseContent, new ArrayList<>()));
+  }
 }
@@ -0,0 +1,126 @@
+package dev.agst.byzcast.replica;
+
+import dev.agst.byzcast.LRUCache;
+import dev.agst.byzcast.message.Response;
+import dev.agst.byzcast.message.SessionID;
+import java.io.Serializable;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Keeps the receive counts and responses of forwarded requests with {@link SessionID}s, grouped by
+ * client session. Instead of being evicted in least recently used order, the receive counts and
+ * responses of a session are dropped once the low watermark of the client passes them, as the
+ * client has completed those requests. A copy of such a request that arrives afterwards is {@link
+ * #isExpired expired}, and must be refused instead of counted again. Sessions themselves are
+ * evicted in least recently used order, which only affects clients that stopped sending requests.
+ * Entries above the low watermark are never evicted; a session that holds too many of them is
+ * {@linkplain #isFull full} instead, and its new requests must be refused until the watermark
+ * advances.
+ *
+ * <p>Every method must be called in the order in which requests are delivered, so that every
+ * replica drops the same entries.
+ */
+class SessionTable implements Serializable {
+  /**
+   * The maximum number of pending requests and responses kept per session, which bounds the memory
+   * used by a client whose low watermark is held back by a request that never completes.
+   */
+  static final int MAX_ENTRIES_PER_SESSION = 4096;
+
+  private final LRUCache<Long, Session> sessions;
+
+  SessionTable(int capacity) {
+    this.sessions = new LRUCache<>(capacity);
+  }
+
+  Optional<Response> response(SessionID id) {
+    return Optional.ofNullable(sessions.get(id.clientID()))
+        .map(session -> session.responses.get(id.sequence()));
+  }
+
+  /**
+   * Whether a request is below the low watermark of its session and has no response, which means
+   * that its entries were dropped. Does not create the session if it does not exist.
+   */
+  boolean isExpired(SessionID id) {
+    var session = sessions.get(id.clientID());
+    return session != null
+        && id.sequence() < session.lowWatermark
+        && !session.responses.containsKey(id.sequence());
+  }
+
+  /**
+   * Whether a request is new to its session and the session already holds {@link
+   * #MAX_ENTRIES_PER_SESSION} entries at or above the low watermark carried by the request, in
+   * which case the request must be refused. Does not create the session if it does not exist.
+   *
+   * @param id The ID of the request.
+   * @param lowWatermark The low watermark carried by the request.
+   */
+  boolean isFull(SessionID id, long lowWatermark) {
+    var session = sessions.get(id.clientID());
+    if (session == null
+        || session.pending.containsKey(id.sequence())
+        || session.responses.containsKey(id.sequence())) {
+      return false;
+    }
+
+    var from = Math.max(lowWatermark, session.lowWatermark);
+    var entries = session.pending.tailMap(from).size() + session.responses.tailMap(from).size();
+    return entries >= MAX_ENTRIES_PER_SESSION;
+  }
+
+  /**
+   * Counts a received copy of a request, which must be neither {@linkplain #isExpired expired} nor
+   * {@linkplain #isFull refused for a full session}.
+   *
+   * @param id The ID of the request.
+   * @param lowWatermark The low watermark carried by the request.
+   * @return The number of copies of the request received so far.
+   */
+  int enqueue(SessionID id, long lowWatermark) {
+    var session = session(id.clientID(), lowWatermark);
+    return session.pending.merge(id.sequence(), 1, Integer::sum);
+  }
+
+  /**
+   * Stores the response to a request and stops counting its copies.
+   *
+   * @param id The ID of the request.
+   * @param lowWatermark The low watermark carried by the request.
+   * @param response The response to the request.
+   */
+  void cacheResponse(SessionID id, long lowWatermark, Response response) {
+    var session = session(id.clientID(), lowWatermark);
+    session.pending.remove(id.sequence());
+    if (id.sequence() >= session.lowWatermark) {
+      session.responses.put(id.sequence(), response);
+    }
+  }
+
+  private Session session(long clientID, long lowWatermark) {
+    var session = sessions.get(clientID);
+    if (session == null) {
+      session = new Session();
+      sessions.put(clientID, session);
+    }
+
+    if (lowWatermark > session.lowWatermark) {
+      session.lowWatermark = lowWatermark;
+      session.pending.headMap(lowWatermark).clear();
+      session.responses.headMap(lowWatermark).clear();
+    }
+    return session;
+  }
+
+  private static class Session implements Serializable {
+    /** The receive count of each pending request above the low watermark, by sequence number. */
+    private final TreeMap<Long, Integer> pending = new TreeMap<>();
+
+    /** The response of each completed request above the low watermark, by sequence number. */
+    private final TreeMap<Long, Response> responses = new TreeMap<>();
+
+    private long lowWatermark = 0;
+  }
+}
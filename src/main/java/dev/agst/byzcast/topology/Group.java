@@ -1,5 +1,6 @@
 package dev.agst.byzcast.topology;
 
+import java.io.Serializable;
 import java.util.List;
 
 /**
@@ -13,4 +14,4 @@ import java.util.List;
  * @param id The unique identifier of the group.
  * @param children A list of child {@code Group} instances.
  */
-public record Group(int id, List<Group> children) {}
+public record Group(int id, List<Group> children) implements Serializable {}
@@ -1,6 +1,8 @@
 package dev.agst.byzcast.topology;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -14,9 +16,13 @@ import java.util.TreeSet;
  * various methods to navigate and manipulate the network topology. This includes loading the
  * topology from a JSON file, finding paths between groups, calculating next steps towards target
  * groups, and determining the lowest common ancestor (LCA) of given group IDs.
+ *
+ * <p>A topology is a forest of one or more independent trees. Groups of different trees never
+ * share a multicast, so that each tree orders its own messages without involving the roots of the
+ * others. Target sets spanning more than one tree have no LCA.
  */
-public class Topology {
-  private Group root;
+public class Topology implements Serializable {
+  private List<Group> roots;
 
   /**
    * Initializes a {@code Topology} instance with a given root group.
@@ -24,7 +30,16 @@ public class Topology {
    * @param root The root group of the topology.
    */
   public Topology(Group root) {
-    this.root = root;
+    this(List.of(root));
+  }
+
+  /**
+   * Initializes a {@code Topology} instance with a forest of independent trees.
+   *
+   * @param roots The root group of each tree of the topology.
+   */
+  public Topology(List<Group> roots) {
+    this.roots = List.copyOf(roots);
   }
 
   /**
@@ -33,7 +48,36 @@ public class Topology {
    * @return A {@code Set<Integer>} containing all group IDs.
    */
   public Set<Integer> getGroupIDs() {
-    return getGroupIDs(root, new TreeSet<>());
+    var groupIDs = new TreeSet<Integer>();
+    for (var root : roots) {
+      getGroupIDs(root, groupIDs);
+    }
+    return groupIDs;
+  }
+
+  /**
+   * Retrieves the IDs of the roots of the trees of the topology.
+   *
+   * @return The IDs of the roots, in order of ID.
+   */
+  public List<Integer> getRootIDs() {
+    return roots.stream().map(Group::id).sorted().toList();
+  }
+
+  /**
+   * Retrieves the ID of the root of the tree that a group belongs to.
+   *
+   * @param groupID The ID of the group.
+   * @return An {@code Optional} containing the ID of the root, or an empty {@code Optional} if the
+   *     group is not present in the topology.
+   */
+  public Optional<Integer> getRootID(int groupID) {
+    for (var root : roots) {
+      if (findGroupByID(root, groupID).isPresent()) {
+        return Optional.of(root.id());
+      }
+    }
+    return Optional.empty();
   }
 
   private Set<Integer> getGroupIDs(Group current, Set<Integer> groupIDs) {
@@ -52,7 +96,7 @@ public class Topology {
    *     found, or an empty {@code Optional} if the group is not present in the topology.
    */
   public Optional<Set<Integer>> getChildrenIDs(int groupID) {
-    var optGroup = this.findGroupByID(root, groupID);
+    var optGroup = this.findGroupByID(groupID);
     if (optGroup.isEmpty()) {
       return Optional.empty();
     }
@@ -66,6 +110,62 @@ public class Topology {
     return Optional.of(childrenIDs);
   }
 
+  /**
+   * Retrieves the ID of the parent of a group identified by its ID.
+   *
+   * @param groupID The ID of the group whose parent is to be retrieved.
+   * @return An {@code Optional} containing the ID of the parent, or an empty {@code Optional} if
+   *     the group is a root or is not present in the topology.
+   */
+  public Optional<Integer> getParentID(int groupID) {
+    for (var root : roots) {
+      var optParent = findParent(root, groupID);
+      if (optParent.isPresent()) {
+        return optParent;
+      }
+    }
+    return Optional.empty();
+  }
+
+  private Optional<Integer> findParent(Group current, int groupID) {
+    for (var child : current.children()) {
+      if (child.id() == groupID) {
+        return Optional.of(current.id());
+      }
+      var found = findParent(child, groupID);
+      if (found.isPresent()) {
+        return found;
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Describes the topology in the JSON layout read by {@link TopologyLoader}, in which the list at
+   * index {@code i} holds the IDs of the children of group {@code i}.
+   *
+   * @return A list with one entry per group ID, from zero up to the highest ID in the topology.
+   */
+  public List<List<Integer>> toLayout() {
+    var maxID = Collections.max(getGroupIDs());
+    var layout = new ArrayList<List<Integer>>();
+    for (int groupID = 0; groupID <= maxID; groupID++) {
+      layout.add(new ArrayList<>());
+    }
+
+    for (var root : roots) {
+      fillLayout(root, layout);
+    }
+    return layout;
+  }
+
+  private void fillLayout(Group current, List<List<Integer>> layout) {
+    for (var child : current.children()) {
+      layout.get(current.id()).add(child.id());
+      fillLayout(child, layout);
+    }
+  }
+
   /**
    * Constructs a {@code Topology} by loading its structure from a JSON file located at the
    * specified path.
@@ -75,7 +175,23 @@ public class Topology {
    */
   public Topology(String path) throws TopologyLoadException {
     try {
-      this.root = TopologyLoader.loadFromJSON(path);
+      this.roots = TopologyLoader.loadFromJSON(path);
+    } catch (Exception e) {
+      throw new TopologyLoadException(e);
+    }
+  }
+
+  /**
+   * Constructs a {@code Topology} from the children of each group, in the same format as the JSON
+   * file read by {@link #Topology(String)}.
+   *
+   * @param layout The children of each group, indexed by group ID.
+   * @return The topology described by the layout.
+   * @throws TopologyLoadException If the layout does not describe a valid topology.
+   */
+  public static Topology fromLayout(List<List<Integer>> layout) throws TopologyLoadException {
+    try {
+      return new Topology(TopologyLoader.loadFromLayout(layout));
     } catch (Exception e) {
       throw new TopologyLoadException(e);
     }
@@ -140,14 +256,22 @@ public class Topology {
   }
 
   /**
-   * Finds the lowest common ancestor (LCA) of a set of groups identified by their IDs.
+   * Finds the lowest common ancestor (LCA) of a set of groups identified by their IDs. The LCA is
+   * searched for within the tree that the groups belong to.
    *
    * @param ids A list of integers representing the IDs of the groups for which to find the LCA.
    * @return An {@code Optional<Group>} containing the LCA group if found, or an empty {@code
-   *     Optional} if no common ancestor exists for the given IDs.
+   *     Optional} if no common ancestor exists for the given IDs, which is always the case if they
+   *     belong to different trees.
    */
   public Optional<Integer> findLCA(List<Integer> ids) {
-    var group = findLCAHelper(root, ids, new HashSet<>(ids));
+    var idSet = new HashSet<>(ids);
+    var trees = roots.stream().filter(root -> containsAny(root, idSet)).toList();
+    if (trees.size() != 1) {
+      return Optional.empty();
+    }
+
+    var group = findLCAHelper(trees.get(0), ids, idSet);
     if (group.isEmpty()) {
       return Optional.empty();
     }
@@ -155,9 +279,16 @@ public class Topology {
     return Optional.of(group.get().id());
   }
 
+  private static boolean containsAny(Group current, Set<Integer> ids) {
+    if (ids.contains(current.id())) {
+      return true;
+    }
+    return current.children().stream().anyMatch(child -> containsAny(child, ids));
+  }
+
   private Optional<List<Integer>> findPath(int startID, int targetID) {
     // Find the start node first
-    var startNode = findGroupByID(root, startID);
+    var startNode = findGroupByID(startID);
     if (startNode.isEmpty()) {
       return Optional.empty(); // Start node not found
     }
@@ -183,6 +314,17 @@ public class Topology {
     return false; // Target not found in this path
   }
 
+  // Helper method to find a group by its ID in any tree
+  private Optional<Group> findGroupByID(int id) {
+    for (var root : roots) {
+      var found = findGroupByID(root, id);
+      if (found.isPresent()) {
+        return found;
+      }
+    }
+    return Optional.empty();
+  }
+
   // Helper method to find a group by its ID
   private Optional<Group> findGroupByID(Group current, int id) {
     if (current.id() == id) {
@@ -5,22 +5,27 @@ import com.google.gson.reflect.TypeToken;
 import java.io.FileReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * The {@code TopologyLoader} class is responsible for loading the network topology from a JSON file
- * and constructing a {@code Group} hierarchy that represents the network structure. The JSON file
+ * and constructing the {@code Group} hierarchy that represents the network structure. The JSON file
  * should contain a list of lists, where each list represents a group and its children.
  *
  * <p>The class provides a static method {@code loadFromJSON} that reads the topology from a given
- * file path and constructs the {@code Group} hierarchy accordingly. It ensures that the topology is
- * a valid tree structure and throws an exception if any group attempts to have an ancestor as its
- * child, preventing circular dependencies.
+ * file path and constructs the {@code Group} hierarchy accordingly. The hierarchy may be a forest
+ * of independent trees: every group that is not the child of another group is the root of its own
+ * tree. The class ensures that every group has at most one parent and that no group is its own
+ * ancestor, and throws an exception otherwise.
  *
  * <p>Usage example:
  *
  * <pre>{@code
- * Group rootGroup = TopologyLoader.loadFromJSON("path/to/topology.json");
+ * List<Group> roots = TopologyLoader.loadFromJSON("path/to/topology.json");
  * }</pre>
  *
  * @see Group
@@ -41,52 +46,100 @@ class TopologyLoader {
    *   [1, 2], // Group 0 has children 1 and 2
    *   [3],    // Group 1 has child 3
    *   [],     // Group 2 has no children
-   *   []      // Group 3 has no children
+   *   [],     // Group 3 has no children
+   *   [5],    // Group 4 has child 5
+   *   []      // Group 5 has no children
    * ]
    * }</pre>
    *
-   * This represents a topology where group 0 is the root, having two children (groups 1 and 2), and
-   * group 1 further has one child (group 3).
+   * This represents a forest of two trees. In the first, group 0 is the root, having two children
+   * (groups 1 and 2), and group 1 further has one child (group 3). In the second, group 4 is the
+   * root, having one child (group 5).
    *
-   * <p>If the JSON structure implies a circular dependency, where a group attempts to have an
-   * ancestor as its child, the method throws an exception to prevent invalid topology
-   * configurations.
+   * <p>If the JSON structure gives a group more than one parent, or implies a circular dependency,
+   * where a group attempts to have an ancestor as its child, the method throws an exception to
+   * prevent invalid topology configurations.
    *
    * @param path The file path to the JSON file containing the topology data.
-   * @return The root {@code Group} of the constructed hierarchy.
+   * @return The root {@code Group} of each tree of the constructed hierarchy, in order of ID.
    * @throws Exception If there is an error reading the file, parsing the JSON, or if the JSON
-   *     structure implies a circular dependency.
+   *     structure does not describe a forest.
    */
-  public static Group loadFromJSON(String path) throws Exception {
+  public static List<Group> loadFromJSON(String path) throws Exception {
     var gson = new Gson();
     var type = new TypeToken<List<List<Integer>>>() {}.getType();
 
     try (var reader = new FileReader(path)) {
       List<List<Integer>> groups = gson.fromJson(reader, type);
+      return loadFromLayout(groups);
+    }
+  }
 
-      var rootGroup = new Group(0, new ArrayList<>());
-      var idToGroup = new HashMap<Integer, Group>();
-      idToGroup.put(0, rootGroup);
+  /**
+   * Constructs a {@code Group} hierarchy from a list of lists, in the same format as the JSON file
+   * read by {@link #loadFromJSON(String)}.
+   *
+   * @param groups The children of each group, indexed by group ID.
+   * @return The root {@code Group} of each tree of the constructed hierarchy, in order of ID.
+   * @throws Exception If the layout gives a group more than one parent or implies a circular
+   *     dependency.
+   */
+  public static List<Group> loadFromLayout(List<List<Integer>> groups) throws Exception {
+    var idToGroup = new TreeMap<Integer, Group>();
+    var parents = new HashMap<Integer, Integer>();
 
-      for (int currentGroupID = 0; currentGroupID < groups.size(); currentGroupID++) {
-        var group =
-            idToGroup.computeIfAbsent(currentGroupID, (id) -> new Group(id, new ArrayList<>()));
+    for (int currentGroupID = 0; currentGroupID < groups.size(); currentGroupID++) {
+      var group =
+          idToGroup.computeIfAbsent(currentGroupID, (id) -> new Group(id, new ArrayList<>()));
 
-        for (var childID : groups.get(currentGroupID)) {
-          if (childID <= currentGroupID) {
-            var error =
-                String.format(
-                    "Group %d attempted to have ancestor %d as child", currentGroupID, childID);
-            throw new Exception(error);
-          }
+      for (var childID : groups.get(currentGroupID)) {
+        if (childID < 0) {
+          var error = String.format("Group %d has invalid child %d", currentGroupID, childID);
+          throw new Exception(error);
+        }
 
-          var childGroup =
-              idToGroup.computeIfAbsent(childID, (id) -> new Group(id, new ArrayList<>()));
-          group.children().add(childGroup);
+        var previousParent = parents.putIfAbsent(childID, currentGroupID);
+        if (previousParent != null) {
+          var error =
+              String.format(
+                  "Group %d has more than one parent (%d and %d)",
+                  childID, previousParent, currentGroupID);
+          throw new Exception(error);
         }
+
+        var childGroup =
+            idToGroup.computeIfAbsent(childID, (id) -> new Group(id, new ArrayList<>()));
+        group.children().add(childGroup);
+      }
+    }
+
+    var roots = new ArrayList<Group>();
+    for (var group : idToGroup.values()) {
+      if (!parents.containsKey(group.id())) {
+        roots.add(group);
       }
+    }
+
+    // as every group has at most one parent, the groups that are not reachable from any root are
+    // exactly those that are their own ancestors
+    var reachable = new HashSet<Integer>();
+    for (var root : roots) {
+      collectIDs(root, reachable);
+    }
+    if (reachable.size() != idToGroup.size()) {
+      var cyclic = new TreeSet<>(idToGroup.keySet());
+      cyclic.removeAll(reachable);
+      var error = String.format("Groups %s attempted to have an ancestor as child", cyclic);
+      throw new Exception(error);
+    }
+
+    return roots;
+  }
 
-      return rootGroup;
+  private static void collectIDs(Group current, Set<Integer> ids) {
+    ids.add(current.id());
+    for (var child : current.children()) {
+      collectIDs(child, ids);
     }
   }
 }
@@ -0,0 +1,234 @@
+package dev.agst.byzcast.topology;
+
+import dev.agst.byzcast.topology.TopologyPlan.GroupLoad;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Searches for the topology that best fits a {@link WorkloadProfile}.
+ *
+ * <p>A multicast is ordered by its LCA and by every group on the paths from the LCA down to its
+ * targets, each of which runs one consensus instance for it. The load of a group is therefore the
+ * rate of the multicasts whose paths include it, and its utilization is that load divided by its
+ * capacity. Topologies are ranked by the utilization of their busiest group, which bounds the
+ * throughput of the system, and then by the average number of hops between the LCA and the
+ * farthest target, which adds to latency.
+ *
+ * <p>Only single trees are considered, as every multicast of the profile must have an LCA: group
+ * zero is the root and every group has a lower ID than its children, so the parent of group {@code
+ * i} is any group below {@code i}. When there are few enough such topologies they are all
+ * evaluated; otherwise, a hill climbing search that moves one group at a time is restarted from
+ * random topologies.
+ */
+public class TopologyOptimizer {
+  private static final long EXHAUSTIVE_LIMIT = 50_000;
+  private static final int RESTARTS = 32;
+  private static final double EPSILON = 1e-9;
+
+  private final int groupCount;
+  private final int[][] targetSets;
+  private final double[] weights;
+  private final double[] capacities;
+  private final double rate;
+
+  public TopologyOptimizer(WorkloadProfile profile) {
+    this.groupCount = profile.groupCount();
+    this.rate = profile.rate() > 0 ? profile.rate() : 1.0;
+
+    var total = profile.targetSets().stream().mapToDouble(set -> set.frequency()).sum();
+    if (total <= 0) {
+      throw new IllegalArgumentException("The profile has no multicasts");
+    }
+
+    this.targetSets = new int[profile.targetSets().size()][];
+    this.weights = new double[targetSets.length];
+    for (int i = 0; i < targetSets.length; i++) {
+      var set = profile.targetSets().get(i);
+      targetSets[i] = set.targets().stream().mapToInt(Integer::intValue).distinct().toArray();
+      weights[i] = set.frequency() / total;
+    }
+
+    this.capacities = new double[groupCount];
+    for (int groupID = 0; groupID < groupCount; groupID++) {
+      capacities[groupID] = profile.capacity(groupID);
+    }
+  }
+
+  /**
+   * Finds the best topology for the profile.
+   *
+   * @param seed The seed of the random restarts, which are only used for large topologies.
+   * @return The best topology found, which is the optimal one for small topologies.
+   */
+  public TopologyPlan optimize(long seed) {
+    var best = isExhaustive() ? searchExhaustively() : searchLocally(new Random(seed));
+    return toPlan(best);
+  }
+
+  private boolean isExhaustive() {
+    long count = 1;
+    for (int groupID = 2; groupID < groupCount; groupID++) {
+      count *= groupID;
+      if (count > EXHAUSTIVE_LIMIT) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Evaluates every topology, enumerating the parents of the groups like digits of a counter. */
+  private Candidate searchExhaustively() {
+    var parents = new int[groupCount];
+    parents[0] = -1;
+
+    var best = evaluate(parents);
+    while (true) {
+      int groupID = groupCount - 1;
+      while (groupID > 0 && parents[groupID] == groupID - 1) {
+        parents[groupID] = 0;
+        groupID--;
+      }
+      if (groupID <= 0) {
+        return best;
+      }
+
+      parents[groupID]++;
+      var candidate = evaluate(parents);
+      if (candidate.isBetterThan(best)) {
+        best = candidate;
+      }
+    }
+  }
+
+  private Candidate searchLocally(Random random) {
+    Candidate best = null;
+    for (int restart = 0; restart < RESTARTS; restart++) {
+      var parents = new int[groupCount];
+      parents[0] = -1;
+      // the first start is the flat topology, where every group is a child of the root
+      for (int groupID = 1; restart > 0 && groupID < groupCount; groupID++) {
+        parents[groupID] = random.nextInt(groupID);
+      }
+
+      var candidate = climb(evaluate(parents));
+      if (best == null || candidate.isBetterThan(best)) {
+        best = candidate;
+      }
+    }
+    return best;
+  }
+
+  /** Moves single groups to other parents for as long as that improves the topology. */
+  private Candidate climb(Candidate current) {
+    var improved = true;
+    while (improved) {
+      improved = false;
+      for (int groupID = 1; groupID < groupCount; groupID++) {
+        for (int parentID = 0; parentID < groupID; parentID++) {
+          if (parentID == current.parents[groupID]) {
+            continue;
+          }
+
+          var parents = current.parents.clone();
+          parents[groupID] = parentID;
+          var candidate = evaluate(parents);
+          if (candidate.isBetterThan(current)) {
+            current = candidate;
+            improved = true;
+          }
+        }
+      }
+    }
+    return current;
+  }
+
+  private Candidate evaluate(int[] parents) {
+    var depths = new int[groupCount];
+    for (int groupID = 1; groupID < groupCount; groupID++) {
+      depths[groupID] = depths[parents[groupID]] + 1;
+    }
+
+    var loads = new double[groupCount];
+    var visited = new int[groupCount];
+    var hops = 0.0;
+    for (int i = 0; i < targetSets.length; i++) {
+      var targets = targetSets[i];
+      var lca = targets[0];
+      var maxDepth = depths[lca];
+      for (var target : targets) {
+        lca = lca(parents, depths, lca, target);
+        maxDepth = Math.max(maxDepth, depths[target]);
+      }
+
+      // every group between the LCA and a target orders the multicast, once
+      var stamp = i + 1;
+      for (var target : targets) {
+        for (var groupID = target; visited[groupID] != stamp; groupID = parents[groupID]) {
+          visited[groupID] = stamp;
+          loads[groupID] += weights[i];
+          if (groupID == lca) {
+            break;
+          }
+        }
+      }
+      hops += weights[i] * (maxDepth - depths[lca]);
+    }
+
+    var maxUtilization = 0.0;
+    for (int groupID = 0; groupID < groupCount; groupID++) {
+      maxUtilization = Math.max(maxUtilization, loads[groupID] * rate / capacities[groupID]);
+    }
+    return new Candidate(parents.clone(), loads, maxUtilization, hops);
+  }
+
+  private static int lca(int[] parents, int[] depths, int a, int b) {
+    while (depths[a] > depths[b]) {
+      a = parents[a];
+    }
+    while (depths[b] > depths[a]) {
+      b = parents[b];
+    }
+    while (a != b) {
+      a = parents[a];
+      b = parents[b];
+    }
+    return a;
+  }
+
+  private TopologyPlan toPlan(Candidate candidate) {
+    var groups = new ArrayList<Group>();
+    for (int groupID = 0; groupID < groupCount; groupID++) {
+      groups.add(new Group(groupID, new ArrayList<>()));
+    }
+    for (int groupID = 1; groupID < groupCount; groupID++) {
+      groups.get(candidate.parents[groupID]).children().add(groups.get(groupID));
+    }
+
+    var loads = new TreeMap<Integer, GroupLoad>();
+    for (int groupID = 0; groupID < groupCount; groupID++) {
+      var groupRate = candidate.loads[groupID] * rate;
+      loads.put(groupID, new GroupLoad(groupRate, groupRate / capacities[groupID]));
+    }
+
+    return new TopologyPlan(
+        new Topology(groups.get(0)), candidate.maxUtilization, candidate.hops, loads);
+  }
+
+  /**
+   * A topology under evaluation, given by the parent of each group.
+   *
+   * @param parents The parent of each group, or -1 for the root.
+   * @param loads The fraction of all multicasts each group orders.
+   */
+  private static record Candidate(
+      int[] parents, double[] loads, double maxUtilization, double hops) {
+
+    boolean isBetterThan(Candidate other) {
+      if (Math.abs(maxUtilization - other.maxUtilization) > EPSILON) {
+        return maxUtilization < other.maxUtilization;
+      }
+      return hops < other.hops - EPSILON;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package dev.agst.byzcast.topology;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A topology chosen by the {@link TopologyOptimizer}, along with the load it is predicted to place
+ * on each group.
+ *
+ * @param topology The chosen topology.
+ * @param maxUtilization The utilization of the busiest group.
+ * @param averageHops The average number of tree edges between the LCA of a multicast and its
+ *     farthest target, weighted by frequency.
+ * @param loads The predicted load of each group.
+ */
+public record TopologyPlan(
+    Topology topology, double maxUtilization, double averageHops, Map<Integer, GroupLoad> loads) {
+
+  /**
+   * @param rate The number of requests per second the group orders, or the fraction of all
+   *     requests if the profile has no rate.
+   * @param utilization The rate divided by the capacity of the group.
+   */
+  public static record GroupLoad(double rate, double utilization) {}
+
+  /** Writes the topology in the format read by {@link Topology#Topology(String)}. */
+  public void writeTopology(Path path) throws IOException {
+    Files.writeString(path, new Gson().toJson(topology.toLayout()));
+  }
+
+  /** Writes the layout of the topology along with the predicted loads. */
+  public void writeReport(Path path) throws IOException {
+    var gson = new GsonBuilder().setPrettyPrinting().create();
+    var report = new LinkedHashMap<String, Object>();
+    report.put("topology", topology.toLayout());
+    report.put("maxUtilization", maxUtilization);
+    report.put("averageHops", averageHops);
+    report.put("loads", loads);
+    Files.writeString(path, gson.toJson(report));
+  }
+}
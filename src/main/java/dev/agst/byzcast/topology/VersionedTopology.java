@@ -0,0 +1,47 @@
+package dev.agst.byzcast.topology;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A topology along with its epoch. Every reconfiguration of the system replaces the topology and
+ * increments the epoch, starting from epoch zero for the topology the system was started with.
+ *
+ * @param epoch The number of reconfigurations that led to this topology.
+ * @param topology The topology of the epoch.
+ */
+public record VersionedTopology(long epoch, Topology topology) implements Serializable {
+
+  /** The JSON representation of a versioned topology. */
+  private static record Description(long epoch, List<List<Integer>> layout) {}
+
+  /**
+   * Returns the topology of the next epoch.
+   *
+   * @param next The topology that replaces the current one.
+   */
+  public VersionedTopology next(Topology next) {
+    return new VersionedTopology(epoch + 1, next);
+  }
+
+  public String toJSON() {
+    return new Gson().toJson(new Description(epoch, topology.toLayout()));
+  }
+
+  /**
+   * Parses a versioned topology written by {@link #toJSON()}.
+   *
+   * @throws TopologyLoadException If the JSON does not describe a valid topology.
+   */
+  public static VersionedTopology fromJSON(String json) throws TopologyLoadException {
+    Description description;
+    try {
+      description = new Gson().fromJson(json, Description.class);
+    } catch (JsonParseException e) {
+      throw new TopologyLoadException(e);
+    }
+    return new VersionedTopology(description.epoch(), Topology.fromLayout(description.layout()));
+  }
+}
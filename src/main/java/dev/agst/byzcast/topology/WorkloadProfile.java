@@ -0,0 +1,86 @@
+package dev.agst.byzcast.topology;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Describes the expected workload of a system, as input to the {@link TopologyOptimizer}.
+ *
+ * <p>Example:
+ *
+ * <pre>{@code
+ * {
+ *   "rate": 2000,
+ *   "defaultCapacity": 1500,
+ *   "capacities": {"0": 3000},
+ *   "targetSets": [
+ *     {"targets": [1], "frequency": 0.6},
+ *     {"targets": [1, 2], "frequency": 0.3},
+ *     {"targets": [2, 3, 4], "frequency": 0.1}
+ *   ]
+ * }
+ * }</pre>
+ *
+ * @param rate The total rate of multicasts, in requests per second. If zero, loads are expressed
+ *     as a fraction of the total rate.
+ * @param defaultCapacity The number of requests per second a group can order, for groups that are
+ *     not listed in {@code capacities}.
+ * @param capacities The number of requests per second each group can order.
+ * @param targetSets The sets of groups targeted by multicasts, along with their relative
+ *     frequencies, which need not sum to one.
+ */
+public record WorkloadProfile(
+    double rate,
+    double defaultCapacity,
+    Map<Integer, Double> capacities,
+    List<TargetSetFrequency> targetSets) {
+
+  public WorkloadProfile {
+    capacities = capacities == null ? Map.of() : Map.copyOf(capacities);
+    targetSets = targetSets == null ? List.of() : List.copyOf(targetSets);
+  }
+
+  /**
+   * @param targets The IDs of the targeted groups.
+   * @param frequency The relative frequency of multicasts to these groups.
+   */
+  public static record TargetSetFrequency(List<Integer> targets, double frequency) {}
+
+  public static WorkloadProfile load(Path path) throws IOException {
+    return new Gson().fromJson(Files.readString(path), WorkloadProfile.class);
+  }
+
+  /**
+   * Returns the IDs of the groups in the profile, which must be every integer from zero up to the
+   * highest one, as group zero is the root of every optimized topology and IDs index the topology
+   * file.
+   *
+   * @throws IllegalArgumentException If the IDs are not contiguous from zero.
+   */
+  public int groupCount() {
+    var ids = new TreeSet<Integer>(capacities.keySet());
+    targetSets.forEach(set -> ids.addAll(set.targets()));
+    if (ids.isEmpty() || ids.first() != 0 || ids.last() != ids.size() - 1) {
+      throw new IllegalArgumentException("Group IDs must range from 0 without gaps, got " + ids);
+    }
+    return ids.size();
+  }
+
+  /**
+   * Returns the capacity of a group.
+   *
+   * @throws IllegalArgumentException If the group has no positive capacity.
+   */
+  public double capacity(int groupID) {
+    var capacity = capacities.getOrDefault(groupID, defaultCapacity);
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Group " + groupID + " has no positive capacity");
+    }
+    return capacity;
+  }
+}
@@ -0,0 +1,292 @@
+package dev.agst.byzcast.verify;
+
+import dev.agst.byzcast.LRUCache;
+import dev.agst.byzcast.Logger;
+import dev.agst.byzcast.Logger.Attr;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Verifies the delivery order of a ByzCast run from a stream of {@link LogRecord}s, in time linear
+ * in the number of records and memory proportional to how far apart the streams are.
+ *
+ * <p>Within a group, every replica must deliver the same sequence of requests, which is checked by
+ * {@link GroupStream}. Across groups, the agreed sequences must be merged into a single global
+ * order, which exists if and only if their union is acyclic. The merge is greedy: a request is
+ * placed in the global order once it is the next unmerged request of every one of its target
+ * groups. Merging can only get stuck if the groups ordered some requests in a cycle, or if a target
+ * group never delivered some request. Both cases are told apart by following the chain of groups
+ * whose next requests block each other, which is done whenever a group falls {@code maxLag}
+ * requests behind, and for every remaining request once the logs are over.
+ *
+ * <p>The full set of targets of each request is learned from the {@link LogRecord.Ordered} record
+ * of the LCA group. If that record is missing, the groups that delivered the request are taken as
+ * its targets at the end of the verification. Relaxed multicasts have no LCA and are only ordered
+ * by each target among its own deliveries, so they are left out of the global order.
+ */
+public class DeliveryVerifier {
+  private static final int MAX_REPORTED_VIOLATIONS = 1000;
+
+  private final Logger logger = new Logger().with(new Attr("component", "verifier"));
+  private final int maxLag;
+
+  private final Map<Integer, GroupStream> groups = new TreeMap<>();
+  private final LRUCache<UUID, int[]> targets;
+
+  /** Groups whose next unmerged request may have become mergeable. */
+  private final Deque<Integer> work = new ArrayDeque<>();
+
+  private final List<Violation> violations = new ArrayList<>();
+  private long violationCount = 0;
+  private long records = 0;
+  private long merged = 0;
+
+  /**
+   * Creates a new verifier.
+   *
+   * @param maxLag The number of deliveries a stream may fall behind before being looked at, which
+   *     bounds the memory used when the logs are correct.
+   */
+  public DeliveryVerifier(int maxLag) {
+    this.maxLag = maxLag;
+    // the target sets of merged requests are kept for a while, as the LCA replicas that log them
+    // later than the first one would otherwise bring them back
+    this.targets = new LRUCache<>(4 * maxLag);
+  }
+
+  /** Processes the next record. Records of different replicas may be arbitrarily interleaved. */
+  public void accept(LogRecord record) {
+    records++;
+
+    switch (record) {
+      case LogRecord.Ordered ordered:
+        if (targets.containsKey(ordered.requestID())) {
+          return;
+        }
+        targets.put(ordered.requestID(), ordered.targets());
+        for (var groupID : ordered.targets()) {
+          work.push(groupID);
+        }
+        drain();
+        break;
+
+      case LogRecord.Delivered delivered:
+        var stream =
+            groups.computeIfAbsent(
+                delivered.groupID(), id -> new GroupStream(logger, id, maxLag, this::report));
+        if (!stream.deliver(delivered.serverID(), delivered.requestID(), delivered.relaxed())) {
+          return;
+        }
+        if (stream.unmerged.size() == 1) {
+          work.push(delivered.groupID());
+          drain();
+        }
+        while (stream.unmerged.size() > maxLag && diagnose(delivered.groupID(), false)) {}
+        break;
+    }
+  }
+
+  /**
+   * Finishes the verification, diagnosing every request that could not be merged.
+   *
+   * @return The outcome of the verification.
+   */
+  public VerificationResult finish() {
+    work.addAll(groups.keySet());
+    drain();
+
+    for (var groupID : groups.keySet()) {
+      while (!groups.get(groupID).unmerged.isEmpty() && diagnose(groupID, true)) {}
+    }
+
+    return new VerificationResult(records, merged, violationCount, List.copyOf(violations));
+  }
+
+  /** Merges every request that has become mergeable. */
+  private void drain() {
+    while (!work.isEmpty()) {
+      var groupID = work.pop();
+      var stream = groups.get(groupID);
+      if (stream == null || stream.unmerged.isEmpty()) {
+        continue;
+      }
+
+      var requestID = stream.unmerged.getFirst();
+      var requestTargets = targets.get(requestID);
+      if (requestTargets == null) {
+        continue;
+      }
+
+      if (Arrays.stream(requestTargets).noneMatch(id -> id == groupID)) {
+        report(
+            Violation.Kind.UNEXPECTED_DELIVERY,
+            "Group %d delivered %s, which targets groups %s",
+            groupID,
+            requestID,
+            Arrays.toString(requestTargets));
+        stream.unmerged.removeFirst();
+        work.push(groupID);
+        continue;
+      }
+
+      if (Arrays.stream(requestTargets).allMatch(id -> isHead(id, requestID))) {
+        merge(requestID, requestTargets);
+      }
+    }
+  }
+
+  /**
+   * Looks for the reason why the next request of a group cannot be merged, and resolves it by
+   * discarding the offending request. The chain of blocking groups is followed until it either
+   * loops back, which is a cycle, or reaches a group that has not delivered the request it is
+   * waiting on.
+   *
+   * @param startGroupID The group whose next request is stuck.
+   * @param complete Whether every record has been read, in which case requests that were not
+   *     delivered yet never will be.
+   * @return Whether some request was merged or discarded.
+   */
+  private boolean diagnose(int startGroupID, boolean complete) {
+    var chain = new LinkedHashMap<Integer, UUID>();
+    var groupID = startGroupID;
+
+    while (true) {
+      var stream = groups.get(groupID);
+      if (stream == null || stream.unmerged.isEmpty()) {
+        return false;
+      }
+
+      if (chain.containsKey(groupID)) {
+        reportCycle(chain, groupID);
+        discard(chain.get(groupID));
+        drain();
+        return true;
+      }
+
+      var requestID = stream.unmerged.getFirst();
+      var requestTargets = targetsOf(requestID, complete);
+      if (requestTargets == null) {
+        return false;
+      }
+      chain.put(groupID, requestID);
+
+      Integer blockingID = null;
+      for (var targetID : requestTargets) {
+        if (!isHead(targetID, requestID)) {
+          blockingID = targetID;
+          break;
+        }
+      }
+
+      if (blockingID == null) {
+        merge(requestID, requestTargets);
+        drain();
+        return true;
+      }
+
+      var blocking = groups.get(blockingID);
+      if (blocking == null || !blocking.unmerged.contains(requestID)) {
+        if (!complete) {
+          return false;
+        }
+
+        report(
+            Violation.Kind.MISSING_DELIVERY,
+            "%s was delivered by group %d but never by group %d",
+            requestID,
+            groupID,
+            blockingID);
+        discard(requestID);
+        drain();
+        return true;
+      }
+
+      groupID = blockingID;
+    }
+  }
+
+  /**
+   * Returns the targets of a request. Once the logs are over, requests whose targets are unknown
+   * are assumed to target every group that delivered them.
+   */
+  private int[] targetsOf(UUID requestID, boolean complete) {
+    var requestTargets = targets.get(requestID);
+    if (requestTargets != null || !complete) {
+      return requestTargets;
+    }
+
+    return groups.entrySet().stream()
+        .filter(entry -> entry.getValue().unmerged.contains(requestID))
+        .mapToInt(Map.Entry::getKey)
+        .toArray();
+  }
+
+  private boolean isHead(int groupID, UUID requestID) {
+    var stream = groups.get(groupID);
+    return stream != null && stream.isHead(requestID);
+  }
+
+  private void merge(UUID requestID, int[] requestTargets) {
+    for (var groupID : requestTargets) {
+      groups.get(groupID).unmerged.removeFirst();
+      work.push(groupID);
+    }
+    merged++;
+  }
+
+  /** Removes a request from every group, so that the merge can move past it. */
+  private void discard(UUID requestID) {
+    for (var entry : groups.entrySet()) {
+      if (entry.getValue().unmerged.remove(requestID)) {
+        work.push(entry.getKey());
+      }
+    }
+  }
+
+  /**
+   * Reports a cycle found while diagnosing. Each group in the chain is waiting for the next one to
+   * reach its request, which the next group delivers only after its own request.
+   */
+  private void reportCycle(Map<Integer, UUID> chain, int loopGroupID) {
+    var cycle = new ArrayList<Map.Entry<Integer, UUID>>();
+    var inCycle = false;
+    for (var entry : chain.entrySet()) {
+      inCycle |= entry.getKey() == loopGroupID;
+      if (inCycle) {
+        cycle.add(entry);
+      }
+    }
+
+    var description =
+        cycle.stream()
+            .map(
+                entry -> {
+                  var index = cycle.indexOf(entry);
+                  var previous = cycle.get((index + cycle.size() - 1) % cycle.size());
+                  return String.format(
+                      "group %d delivered %s before %s",
+                      entry.getKey(), entry.getValue(), previous.getValue());
+                })
+            .collect(Collectors.joining(", "));
+    report(Violation.Kind.CYCLE, "%s", description);
+  }
+
+  private void report(Violation.Kind kind, String format, Object... args) {
+    report(new Violation(kind, String.format(format, args)));
+  }
+
+  private void report(Violation violation) {
+    violationCount++;
+    if (violations.size() < MAX_REPORTED_VIOLATIONS) {
+      violations.add(violation);
+    }
+  }
+}
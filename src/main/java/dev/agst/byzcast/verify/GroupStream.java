@@ -0,0 +1,127 @@
+package dev.agst.byzcast.verify;
+
+import dev.agst.byzcast.Logger;
+import dev.agst.byzcast.Logger.Attr;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * The deliveries of a single group, as seen through the logs of its replicas.
+ *
+ * <p>The first replica to deliver a request at a given position defines the agreed sequence of the
+ * group, against which every other replica is compared as it catches up. Only the positions that
+ * some replica has yet to reach are kept, so a replica lagging more than {@code maxLag} deliveries
+ * behind the most advanced one is excluded from the comparison, as is a replica that diverged.
+ *
+ * <p>Agreed deliveries are also appended to {@link #unmerged}, from which {@link DeliveryVerifier}
+ * merges the sequences of every group into a global order. Relaxed multicasts are only checked
+ * for agreement within the group, as they are not ordered across groups.
+ */
+class GroupStream {
+  private final Logger logger;
+  private final int groupID;
+  private final int maxLag;
+  private final Consumer<Violation> reporter;
+
+  /** The agreed sequence, from position {@link #base} onwards. */
+  private final ArrayList<UUID> window = new ArrayList<>();
+
+  private long base = 0;
+
+  /** The position of the next delivery of each replica. */
+  private final Map<Integer, Long> positions = new HashMap<>();
+
+  private final Set<Integer> excluded = new HashSet<>();
+
+  /** The agreed deliveries not yet placed in the global order, in delivery order. */
+  final LinkedHashSet<UUID> unmerged = new LinkedHashSet<>();
+
+  GroupStream(Logger logger, int groupID, int maxLag, Consumer<Violation> reporter) {
+    this.logger = logger.with(new Attr("GID", groupID));
+    this.groupID = groupID;
+    this.maxLag = maxLag;
+    this.reporter = reporter;
+  }
+
+  /**
+   * Processes the next delivery of a replica.
+   *
+   * @param serverID The ID of the replica.
+   * @param requestID The ID of the delivered request.
+   * @param relaxed Whether the request is a relaxed multicast, which is not merged.
+   * @return Whether the delivery extended the agreed sequence of the group.
+   */
+  boolean deliver(int serverID, UUID requestID, boolean relaxed) {
+    if (excluded.contains(serverID)) {
+      return false;
+    }
+
+    long position = positions.getOrDefault(serverID, 0L);
+    if (position < base) {
+      exclude(serverID, "late-start");
+      return false;
+    }
+
+    positions.put(serverID, position + 1);
+    var length = base + window.size();
+    if (position < length) {
+      var agreed = window.get((int) (position - base));
+      if (!agreed.equals(requestID)) {
+        reporter.accept(
+            new Violation(
+                Violation.Kind.DIVERGENCE,
+                String.format(
+                    "Replica %d of group %d delivered %s at position %d, where %s was delivered",
+                    serverID, groupID, requestID, position, agreed)));
+        exclude(serverID, "diverged");
+      }
+      return false;
+    }
+
+    window.add(requestID);
+    if (!relaxed) {
+      unmerged.add(requestID);
+    }
+    if (window.size() > 2 * maxLag) {
+      trim();
+    }
+    return true;
+  }
+
+  /** Discards the positions every replica has gone through, excluding replicas left behind. */
+  private void trim() {
+    var length = base + window.size();
+    for (var entry : positions.entrySet()) {
+      if (!excluded.contains(entry.getKey()) && length - entry.getValue() > maxLag) {
+        exclude(entry.getKey(), "lagging");
+      }
+    }
+
+    long minPosition = length;
+    for (var entry : positions.entrySet()) {
+      if (!excluded.contains(entry.getKey())) {
+        minPosition = Math.min(minPosition, entry.getValue());
+      }
+    }
+
+    window.subList(0, (int) (minPosition - base)).clear();
+    base = minPosition;
+  }
+
+  private void exclude(int serverID, String reason) {
+    excluded.add(serverID);
+    logger.info(
+        "Replica excluded from comparison", new Attr("SID", serverID), new Attr("reason", reason));
+  }
+
+  /** Returns whether the given request is the next one to be merged from this group. */
+  boolean isHead(UUID requestID) {
+    return !unmerged.isEmpty() && unmerged.getFirst().equals(requestID);
+  }
+}
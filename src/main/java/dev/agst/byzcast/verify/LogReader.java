@@ -0,0 +1,96 @@
+package dev.agst.byzcast.verify;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/**
+ * Streams the {@link LogRecord}s of a set of log files. Files are read in turns of a fixed number
+ * of lines, so that the streams of different replicas advance together and the verifier does not
+ * need to hold a whole file in memory while waiting for the others.
+ */
+public class LogReader implements Iterator<LogRecord>, AutoCloseable {
+  private static final int LINES_PER_TURN = 1024;
+
+  private final List<BufferedReader> readers = new ArrayList<>();
+  private final Queue<BufferedReader> turns = new ArrayDeque<>();
+  private final Queue<LogRecord> buffer = new ArrayDeque<>();
+
+  /**
+   * Opens the given logs.
+   *
+   * @param paths Log files, or directories whose {@code .log} files are read.
+   */
+  public LogReader(List<Path> paths) throws IOException {
+    try {
+      for (var path : paths) {
+        for (var file : logFiles(path)) {
+          var reader = Files.newBufferedReader(file);
+          readers.add(reader);
+          turns.add(reader);
+        }
+      }
+    } catch (IOException e) {
+      for (var reader : readers) {
+        reader.close();
+      }
+      throw e;
+    }
+  }
+
+  private static List<Path> logFiles(Path path) throws IOException {
+    if (!Files.isDirectory(path)) {
+      return List.of(path);
+    }
+
+    try (var files = Files.list(path)) {
+      return files.filter(file -> file.toString().endsWith(".log")).sorted().toList();
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (buffer.isEmpty() && !turns.isEmpty()) {
+      readTurn(turns.poll());
+    }
+    return !buffer.isEmpty();
+  }
+
+  @Override
+  public LogRecord next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return buffer.poll();
+  }
+
+  private void readTurn(BufferedReader reader) {
+    try {
+      for (int i = 0; i < LINES_PER_TURN; i++) {
+        var line = reader.readLine();
+        if (line == null) {
+          return;
+        }
+        LogRecord.parse(line).ifPresent(buffer::add);
+      }
+      turns.add(reader);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read log", e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (var reader : readers) {
+      reader.close();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package dev.agst.byzcast.verify;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * A line of a replica log that is relevant to the verification of the delivery order. Only two
+ * kinds of lines are used: the reception of a client request by the LCA group, which is the only
+ * point where the full set of target groups is logged, and the local delivery of a request by a
+ * target group.
+ *
+ * <p>Lines marked with {@code class=RELAXED} belong to relaxed multicasts, which each target
+ * receives straight from the client. Their receptions are not ordered by an LCA, so they are
+ * ignored, and their deliveries are marked as relaxed.
+ */
+public sealed interface LogRecord {
+  int groupID();
+
+  int serverID();
+
+  UUID requestID();
+
+  /** A client request received by a replica of the LCA of its targets. */
+  record Ordered(int groupID, int serverID, UUID requestID, int[] targets) implements LogRecord {}
+
+  /**
+   * A request delivered by a replica of one of its target groups.
+   *
+   * @param relaxed Whether the request is a relaxed multicast, which is only ordered by each
+   *     target among its own deliveries.
+   */
+  record Delivered(int groupID, int serverID, UUID requestID, boolean relaxed)
+      implements LogRecord {}
+
+  /**
+   * Parses a line written by {@link dev.agst.byzcast.Logger}.
+   *
+   * @param line A line of a log, which may be written by any replica of any group.
+   * @return The record in the line, or an empty optional if the line is not relevant or lacks some
+   *     of the required attributes.
+   */
+  static Optional<LogRecord> parse(String line) {
+    var isOrdered = line.endsWith("Request is client request");
+    var isDelivered = line.endsWith("Request locally handled");
+    if (!isOrdered && !isDelivered) {
+      return Optional.empty();
+    }
+
+    Integer groupID = null;
+    Integer serverID = null;
+    UUID requestID = null;
+    int[] targets = null;
+    var relaxed = false;
+    try {
+      for (var token : line.split(" ")) {
+        var separator = token.indexOf('=');
+        if (separator < 0) {
+          continue;
+        }
+
+        var key = token.substring(0, separator);
+        var value = token.substring(separator + 1);
+        if (key.equals("GID")) {
+          groupID = Integer.parseInt(value);
+        } else if (key.equals("SID")) {
+          serverID = Integer.parseInt(value);
+        } else if (key.equals("RID")) {
+          requestID = UUID.fromString(value);
+        } else if (key.equals("targets")) {
+          targets = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+        } else if (key.equals("class")) {
+          relaxed = value.equals("RELAXED");
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      return Optional.empty();
+    }
+
+    if (groupID == null || serverID == null || requestID == null) {
+      return Optional.empty();
+    }
+    if (isDelivered) {
+      return Optional.of(new Delivered(groupID, serverID, requestID, relaxed));
+    }
+    if (targets == null || relaxed) {
+      return Optional.empty();
+    }
+    return Optional.of(new Ordered(groupID, serverID, requestID, targets));
+  }
+}
@@ -0,0 +1,19 @@
+package dev.agst.byzcast.verify;
+
+import java.util.List;
+
+/**
+ * The outcome of verifying a set of logs.
+ *
+ * @param records The number of relevant log records that were read.
+ * @param merged The number of requests placed in the global delivery order.
+ * @param violationCount The total number of violations found.
+ * @param violations The violations found, truncated to a maximum number of entries.
+ */
+public record VerificationResult(
+    long records, long merged, long violationCount, List<Violation> violations) {
+
+  public boolean isCorrect() {
+    return violationCount == 0;
+  }
+}
@@ -0,0 +1,25 @@
+package dev.agst.byzcast.verify;
+
+/**
+ * A violation of the atomic multicast properties found in the logs.
+ *
+ * @param kind The property that was violated.
+ * @param description A human-readable description, naming the groups and requests involved.
+ */
+public record Violation(Kind kind, String description) {
+  public enum Kind {
+    /** Two replicas of the same group delivered different requests at the same position. */
+    DIVERGENCE,
+    /** Groups delivered their common requests in orders that no global order satisfies. */
+    CYCLE,
+    /** A request was delivered by some of its target groups but never by another one. */
+    MISSING_DELIVERY,
+    /** A request was delivered by a group that it does not target. */
+    UNEXPECTED_DELIVERY,
+  }
+
+  @Override
+  public String toString() {
+    return kind + " " + description;
+  }
+}
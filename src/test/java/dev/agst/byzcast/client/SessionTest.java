@@ -0,0 +1,73 @@
+package dev.agst.byzcast.client;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import junit.framework.TestCase;
+
+public class SessionTest extends TestCase {
+  private static final long RETIRE_AFTER_MILLIS = 100;
+
+  private final AtomicLong now = new AtomicLong();
+  private final Session session = new Session(1, RETIRE_AFTER_MILLIS, now::get);
+
+  private void advance(long millis) {
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  public void testCompletedRequestsAdvanceTheWatermark() {
+    var first = session.nextID();
+    var second = session.nextID();
+
+    session.complete(second);
+    assertEquals(0, session.lowWatermark());
+
+    session.complete(first);
+    assertEquals(2, session.lowWatermark());
+  }
+
+  public void testAbandonedRequestIsRetiredAfterTheRetireTime() {
+    var timedOut = session.nextID();
+    for (int i = 0; i < 10; i++) {
+      session.complete(session.nextID());
+    }
+
+    session.abandon(timedOut);
+    assertEquals(0, session.lowWatermark());
+
+    advance(RETIRE_AFTER_MILLIS - 1);
+    assertEquals(0, session.lowWatermark());
+
+    advance(1);
+    assertEquals(11, session.lowWatermark());
+
+    session.complete(session.nextID());
+    assertEquals(12, session.lowWatermark());
+  }
+
+  public void testRequestsBelowTheWatermarkAreIgnored() {
+    var timedOut = session.nextID();
+    session.abandon(timedOut);
+    advance(RETIRE_AFTER_MILLIS);
+    assertEquals(1, session.lowWatermark());
+
+    // a late response to a retired request must not move the watermark
+    session.complete(timedOut);
+    session.complete(UUID.randomUUID());
+    assertEquals(1, session.lowWatermark());
+  }
+
+  public void testTooManyTrackedRequestsFail() {
+    session.nextID();
+    for (int i = 0; i < Session.MAX_TRACKED; i++) {
+      session.complete(session.nextID());
+    }
+
+    try {
+      session.nextID();
+      fail("Expected the session to refuse a new request");
+    } catch (IllegalStateException e) {
+      assertEquals(0, session.lowWatermark());
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package dev.agst.byzcast.replica;
+
+import dev.agst.byzcast.group.GroupConfigFinder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import junit.framework.TestCase;
+
+public class ReceiveThresholdsTest extends TestCase {
+  private Path configsHome;
+
+  @Override
+  protected void setUp() throws Exception {
+    configsHome = Files.createTempDirectory("thresholds");
+    writeConfig(0, 1, 0);
+    writeConfig(1, 4, 1);
+  }
+
+  private void writeConfig(int groupID, int n, int f) throws Exception {
+    var directory = Files.createDirectories(configsHome.resolve(String.format("g%02d", groupID)));
+    Files.writeString(
+        directory.resolve("system.config"),
+        String.format("system.servers.num = %d\nsystem.servers.f = %d\n", n, f));
+  }
+
+  public void testSingleReplicaParentHasThresholdOfOne() {
+    var thresholds = new ReceiveThresholds(new GroupConfigFinder(configsHome.toString()));
+    assertEquals(1, thresholds.of(0));
+    assertEquals(1, thresholds.sizeOf(0));
+    assertEquals(0, thresholds.faultsOf(0));
+  }
+
+  public void testThresholdIsNMinusF() {
+    var thresholds = new ReceiveThresholds(new GroupConfigFinder(configsHome.toString()));
+    assertEquals(3, thresholds.of(1));
+    assertEquals(4, thresholds.sizeOf(1));
+    assertEquals(1, thresholds.faultsOf(1));
+  }
+}
@@ -0,0 +1,65 @@
+package dev.agst.byzcast.replica;
+
+import bftsmart.tom.ReplicaContext;
+import bftsmart.tom.core.messages.TOMMessage;
+import dev.agst.byzcast.Serializer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import junit.framework.TestCase;
+
+public class ReplicaReplierTest extends TestCase {
+  /** A replier that keeps the messages it answers instead of sending their replies. */
+  private static class RecordingReplier extends ReplicaReplier {
+    private final List<TOMMessage> sent = new ArrayList<>();
+
+    RecordingReplier() {
+      super(new ReplicaInfo(1, 0));
+      setReplicaContext(new ReplicaContext(null, null));
+    }
+
+    @Override
+    void send(TOMMessage msg) {
+      sent.add(msg);
+    }
+  }
+
+  private static TOMMessage message(int sender, ReplicaReply reply) {
+    var msg = new TOMMessage(sender, 0, 0, new byte[0], 0);
+    msg.reply = new TOMMessage(sender, 0, 0, Serializer.toBytes(reply), 0);
+    return msg;
+  }
+
+  public void testCompletedWithoutPendingCopiesIsSent() {
+    // with a parent whose receive threshold is one, the first copy completes the request
+    var replier = new RecordingReplier();
+    var id = UUID.randomUUID();
+    var result = new byte[] {1, 2, 3};
+
+    var msg = message(7, new ReplicaReply.Completed(id, result));
+    replier.manageReply(msg, null);
+
+    assertEquals(List.of(msg), replier.sent);
+    assertTrue(Arrays.equals(result, msg.reply.getContent()));
+  }
+
+  public void testCompletedAnswersQueuedAndLaterCopies() {
+    var replier = new RecordingReplier();
+    var id = UUID.randomUUID();
+    var result = new byte[] {4, 5};
+
+    var first = message(1, new ReplicaReply.Pending(id));
+    replier.manageReply(first, null);
+    assertTrue(replier.sent.isEmpty());
+
+    var second = message(2, new ReplicaReply.Completed(id, result));
+    replier.manageReply(second, null);
+    assertEquals(List.of(first, second), replier.sent);
+
+    var late = message(3, new ReplicaReply.Pending(id));
+    replier.manageReply(late, null);
+    assertEquals(List.of(first, second, late), replier.sent);
+    assertTrue(Arrays.equals(result, late.reply.getContent()));
+  }
+}
@@ -0,0 +1,45 @@
+package dev.agst.byzcast.replica;
+
+import dev.agst.byzcast.message.Response;
+import dev.agst.byzcast.message.SessionID;
+import java.util.ArrayList;
+import junit.framework.TestCase;
+
+public class SessionTableTest extends TestCase {
+  private static final Response RESPONSE = new Response("HANDLED", new ArrayList<>());
+
+  private final SessionTable table = new SessionTable(16);
+
+  public void testFullSessionRefusesNewRequestsOnly() {
+    // the request with sequence zero never completes, so the watermark stays at zero
+    for (long sequence = 1; sequence <= SessionTable.MAX_ENTRIES_PER_SESSION; sequence++) {
+      var id = new SessionID(1, sequence);
+      table.enqueue(id, 0);
+      table.cacheResponse(id, 0, RESPONSE);
+    }
+
+    var next = new SessionID(1, SessionTable.MAX_ENTRIES_PER_SESSION + 1);
+    assertTrue(table.isFull(next, 0));
+    assertFalse(table.isFull(new SessionID(2, 0), 0));
+
+    // answered requests stay available above the watermark
+    var first = new SessionID(1, 1);
+    assertFalse(table.isFull(first, 0));
+    assertEquals(RESPONSE, table.response(first).orElseThrow());
+  }
+
+  public void testAdvancedWatermarkFreesTheSession() {
+    for (long sequence = 1; sequence <= SessionTable.MAX_ENTRIES_PER_SESSION; sequence++) {
+      var id = new SessionID(1, sequence);
+      table.enqueue(id, 0);
+      table.cacheResponse(id, 0, RESPONSE);
+    }
+
+    var next = new SessionID(1, SessionTable.MAX_ENTRIES_PER_SESSION + 1);
+    assertFalse(table.isFull(next, 2));
+
+    table.enqueue(next, 2);
+    assertTrue(table.isExpired(new SessionID(1, 1)));
+    assertFalse(table.isExpired(new SessionID(1, 2)));
+  }
+}